@@ -0,0 +1,40 @@
+package io.etcd.springi18n.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the lookup benchmarks once per thread count, reporting throughput, latency percentiles
+ * and the allocation rate of the gc profiler.
+ *
+ * <p>Any argument is passed to JMH as usual, e.g. {@code java -jar benchmarks.jar MessageLookup -p bundleSize=1000}.
+ * The thread counts can be overridden with {@code -Dthreads=1,8}.</p>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        for (String threads : System.getProperty("threads", "1,4,16").split(",")) {
+            run(commandLineOptions, Integer.parseInt(threads.trim()));
+        }
+    }
+
+    private static void run(CommandLineOptions commandLineOptions, int threads) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .mode(Mode.Throughput)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
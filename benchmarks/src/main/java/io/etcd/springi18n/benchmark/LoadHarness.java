@@ -0,0 +1,352 @@
+package io.etcd.springi18n.benchmark;
+
+import io.etcd.springi18n.service.EtcdMessageSource;
+import io.etcd.springi18n.service.EtcdTranslatorMetrics;
+import io.etcd.springi18n.service.impl.EtcdClientFactory;
+import io.etcd.springi18n.service.impl.InMemoryEtcdClient;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays load scenarios against a message source on an {@link InMemoryEtcdClient} while reader threads keep
+ * calling {@code getMessage}: steady reads, bulk imports, watch storms, watch reconnects with failing reads,
+ * compaction forcing a resync, and locales added at runtime.
+ *
+ * <p>Every second it prints the lookups per second, the lookup errors, the revision lag and the heap in use. After
+ * each phase it prints the lookup error rate, the full reloads with their latency, how long the message source took to
+ * catch up with the last write, and the peak heap. A lookup is an error if it throws or finds no message, the readers
+ * only look up codes that exist throughout.</p>
+ *
+ * <p>Run it from the benchmark jar, the defaults can be overridden with system properties:</p>
+ * <pre>
+ * java -Dreaders=16 -DbundleSize=5000 -Dlocales=5 -DphaseSeconds=10 -DreadLatencyMillis=2 -DwatchLatencyMillis=1 \
+ *     -cp benchmarks/target/benchmarks.jar io.etcd.springi18n.benchmark.LoadHarness
+ * </pre>
+ */
+public class LoadHarness {
+
+    private static final String BASE_DIR = "/messages";
+
+    /**
+     * Under the watched dir, so locales added at runtime are noticed.
+     */
+    private static final String LOCALES_KEY = BASE_DIR + "/locales";
+
+    private static final String[] LANGUAGES = Locale.getISOLanguages();
+
+    private final int readers = Integer.getInteger("readers", 16);
+
+    private final int bundleSize = Integer.getInteger("bundleSize", 5000);
+
+    private final int localeCount = Integer.getInteger("locales", 5);
+
+    private final long phaseMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger("phaseSeconds", 10));
+
+    private final InMemoryEtcdClient client = EtcdClientFactory.createInMemoryEtcdClient();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final List<String> localesValue = new ArrayList<>();
+
+    private final List<PhaseResult> results = new ArrayList<>();
+
+    private EtcdMessageSource messageSource;
+
+    private volatile String phase = "startup";
+
+    private volatile boolean running = true;
+
+    private long peakHeapBytes;
+
+    public static void main(String[] args) throws Exception {
+        new LoadHarness().run();
+    }
+
+    private void run() throws Exception {
+        client.setReadLatencyMillis(Long.getLong("readLatencyMillis", 2));
+        client.setWatchLatencyMillis(Long.getLong("watchLatencyMillis", 1));
+        for (int i = 0; i < localeCount; i++) {
+            client.putAll(bundle(LANGUAGES[i], bundleSize, "Message"));
+            localesValue.add(LANGUAGES[i]);
+        }
+        client.put(LOCALES_KEY, String.join(",", localesValue));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        messageSource = new EtcdMessageSource(client, BASE_DIR, LOCALES_KEY, BASE_DIR, executor, true);
+        messageSource.setMetrics(new EtcdTranslatorMetrics(registry));
+        messageSource.setWaitForInitialLoad(true);
+        messageSource.setFailOnMissingMessages(true);
+        messageSource.start();
+        System.out.printf("loaded %d locales of %d messages, %d readers%n", localeCount, bundleSize, readers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            threads.add(start("reader-" + i, this::read));
+        }
+        Thread sampler = start("sampler", this::sample);
+
+        phase("steady", () -> sleep(phaseMillis));
+        phase("bulk-import", this::bulkImport);
+        phase("watch-storm", this::watchStorm);
+        phase("reconnects", this::reconnects);
+        phase("compaction", this::compaction);
+        phase("locale-addition", this::localeAddition);
+        phase("recovery", () -> sleep(phaseMillis));
+
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        sampler.interrupt();
+        messageSource.stopWatching();
+        executor.shutdownNow();
+        report();
+    }
+
+    /**
+     * Looks up random existing codes of the initial locales until the harness stops.
+     */
+    private void read() {
+        Object[] args = {"world"};
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            Locale locale = new Locale(LANGUAGES[random.nextInt(localeCount)]);
+            try {
+                if (messageSource.getMessage(code(random.nextInt(bundleSize)), args, null, locale) == null) {
+                    errors.increment();
+                }
+            } catch (RuntimeException e) {
+                errors.increment();
+            }
+            lookups.increment();
+        }
+    }
+
+    /**
+     * Prints the lookups, errors, revision lag and heap of every second.
+     */
+    private void sample() {
+        System.out.printf("%-16s %12s %8s %8s %10s%n", "phase", "lookups/s", "errors", "lag", "heap MB");
+        long lastLookups = 0;
+        long lastErrors = 0;
+        while (running) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long totalLookups = lookups.sum();
+            long totalErrors = errors.sum();
+            long heap = memory.getHeapMemoryUsage().getUsed();
+            synchronized (this) {
+                peakHeapBytes = Math.max(peakHeapBytes, heap);
+            }
+            System.out.printf("%-16s %12d %8d %8d %10d%n", phase, totalLookups - lastLookups, totalErrors - lastErrors,
+                    Math.max(0, client.getRevision() - messageSource.getRevision()), heap >> 20);
+            lastLookups = totalLookups;
+            lastErrors = totalErrors;
+        }
+    }
+
+    private void phase(String name, Runnable scenario) {
+        phase = name;
+        long startLookups = lookups.sum();
+        long startErrors = errors.sum();
+        Timer reloads = registry.get("etcd.translator.reload").tag("result", "success").timer();
+        long startReloads = reloads.count();
+        double startReloadMillis = reloads.totalTime(TimeUnit.MILLISECONDS);
+        synchronized (this) {
+            peakHeapBytes = memory.getHeapMemoryUsage().getUsed();
+        }
+
+        scenario.run();
+        long catchUpMillis = awaitCaughtUp();
+
+        long phaseReloads = reloads.count() - startReloads;
+        double reloadMillis = reloads.totalTime(TimeUnit.MILLISECONDS) - startReloadMillis;
+        synchronized (this) {
+            results.add(new PhaseResult(name, lookups.sum() - startLookups, errors.sum() - startErrors, phaseReloads,
+                    phaseReloads > 0 ? reloadMillis / phaseReloads : 0, catchUpMillis, peakHeapBytes >> 20));
+        }
+    }
+
+    /**
+     * Rewrites a tenth of a locale's messages and adds as many new ones in one revision, five times a second.
+     */
+    private void bulkImport() {
+        long end = System.currentTimeMillis() + phaseMillis;
+        int batch = 0;
+        while (System.currentTimeMillis() < end) {
+            String language = LANGUAGES[batch % localeCount];
+            Map<String, String> values = new LinkedHashMap<>();
+            int offset = (batch * bundleSize / 10) % bundleSize;
+            for (int i = 0; i < bundleSize / 10; i++) {
+                values.put(key(language, code((offset + i) % bundleSize)), "Imported " + batch + " for {0}");
+                values.put(key(language, "service.import.batch" + batch + ".code" + i), "New " + i);
+            }
+            client.putAll(values);
+            batch++;
+            sleep(200);
+        }
+    }
+
+    /**
+     * Four writers update single messages as fast as they can.
+     */
+    private void watchStorm() {
+        long end = System.currentTimeMillis() + phaseMillis;
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            writers.add(start("writer-" + w, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.currentTimeMillis() < end) {
+                    String language = LANGUAGES[random.nextInt(localeCount)];
+                    client.put(key(language, code(random.nextInt(bundleSize))), "Stormed " + random.nextInt() + " for {0}");
+                }
+            }));
+        }
+        join(writers);
+    }
+
+    /**
+     * Breaks the watch connection every second while messages change and a fifth of the reads fail.
+     */
+    private void reconnects() {
+        client.setReadFailureRate(0.2);
+        long end = System.currentTimeMillis() + phaseMillis;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < 100; i++) {
+                String language = LANGUAGES[random.nextInt(localeCount)];
+                client.put(key(language, code(random.nextInt(bundleSize))), "Reconnected " + i + " for {0}");
+            }
+            client.disconnectWatches();
+            sleep(1000);
+        }
+        client.setReadFailureRate(0);
+    }
+
+    /**
+     * Breaks the watch and compacts away the revisions it would resume from, so the message source has to reload
+     * everything.
+     */
+    private void compaction() {
+        long end = System.currentTimeMillis() + phaseMillis;
+        while (System.currentTimeMillis() < end) {
+            client.disconnectWatches();
+            client.put(key(LANGUAGES[0], code(0)), "Compacted for {0}");
+            client.put(key(LANGUAGES[0], code(1)), "Compacted for {0}");
+            client.compact(client.getRevision());
+            sleep(Math.max(1000, phaseMillis / 3));
+        }
+    }
+
+    /**
+     * Adds a new locale with a full bundle every two seconds.
+     */
+    private void localeAddition() {
+        long end = System.currentTimeMillis() + phaseMillis;
+        int added = localeCount;
+        while (System.currentTimeMillis() < end && added < LANGUAGES.length) {
+            String language = LANGUAGES[added++];
+            client.putAll(bundle(language, bundleSize, "Added"));
+            localesValue.add(language);
+            client.put(LOCALES_KEY, String.join(",", localesValue));
+            sleep(2000);
+        }
+    }
+
+    /**
+     * @return the milliseconds until the message source applied the last write, {@code -1} if it didn't within a minute
+     */
+    private long awaitCaughtUp() {
+        long start = System.nanoTime();
+        long target = client.getRevision();
+        while (messageSource.getRevision() < target) {
+            if (System.nanoTime() - start > TimeUnit.MINUTES.toNanos(1)) {
+                return -1;
+            }
+            sleep(5);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private void report() {
+        System.out.println();
+        System.out.printf("%-16s %12s %8s %10s %8s %14s %12s %14s%n",
+                "phase", "lookups", "errors", "error rate", "reloads", "reload avg ms", "catch-up ms", "peak heap MB");
+        for (PhaseResult result : results) {
+            System.out.printf("%-16s %12d %8d %9.4f%% %8d %14.1f %12d %14d%n",
+                    result.name(), result.lookups(), result.errors(),
+                    result.lookups() > 0 ? 100.0 * result.errors() / result.lookups() : 0.0,
+                    result.reloads(), result.reloadAvgMillis(), result.catchUpMillis(), result.peakHeapMegabytes());
+        }
+        System.out.printf("%netcd reads: %d, failed: %d, keys: %d, revision: %d%n",
+                client.getReadCount(), client.getFailedReadCount(), client.getKeyCount(), client.getRevision());
+    }
+
+    private static Map<String, String> bundle(String language, int size, String text) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            values.put(key(language, code(i)), text + " " + i + " for {0} in " + language);
+        }
+        return values;
+    }
+
+    private static String key(String language, String code) {
+        return BASE_DIR + "/" + language + "/" + code;
+    }
+
+    private static String code(int i) {
+        return "service.load.code" + i;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void join(List<Thread> threads) {
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private record PhaseResult(String name, long lookups, long errors, long reloads, double reloadAvgMillis,
+                               long catchUpMillis, long peakHeapMegabytes) {
+    }
+}
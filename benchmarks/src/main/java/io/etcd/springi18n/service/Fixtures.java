@@ -0,0 +1,66 @@
+package io.etcd.springi18n.service;
+
+import io.etcd.springi18n.service.impl.InMemoryEtcdClient;
+
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Generates the translation bundles the benchmarks run against.
+ */
+final class Fixtures {
+
+    static final String BASE_DIR = "/messages";
+
+    static final String LOCALES_KEY = "/locales";
+
+    /**
+     * Language tags used for the generated locales, the first {@code localeCount} are used.
+     */
+    private static final String[] LANGUAGES = Locale.getISOLanguages();
+
+    private Fixtures() {
+    }
+
+    static void populate(InMemoryEtcdClient client, int bundleSize, int localeCount) {
+        StringJoiner localesValue = new StringJoiner(",");
+        for (Locale locale : locales(localeCount)) {
+            localesValue.add(locale.getLanguage());
+            for (int i = 0; i < bundleSize; i++) {
+                client.put(BASE_DIR + "/" + locale.getLanguage() + "/" + code(i),
+                        "Message " + i + " for {0} in " + locale.getLanguage());
+            }
+        }
+        client.put(LOCALES_KEY, localesValue.toString());
+    }
+
+    static String[] codes(int bundleSize) {
+        String[] codes = new String[bundleSize];
+        for (int i = 0; i < bundleSize; i++) {
+            codes[i] = code(i);
+        }
+        return codes;
+    }
+
+    static Locale[] locales(int localeCount) {
+        Locale[] locales = new Locale[localeCount];
+        for (int i = 0; i < localeCount; i++) {
+            locales[i] = new Locale(LANGUAGES[i]);
+        }
+        return locales;
+    }
+
+    static void awaitLoaded(EtcdMessageSource messageSource, int localeCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (messageSource.getAvailableLocales().size() < localeCount) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("messages were not loaded within 60 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static String code(int i) {
+        return "service.benchmark.code" + i;
+    }
+}
@@ -0,0 +1,122 @@
+package io.etcd.springi18n.service;
+
+import io.etcd.springi18n.service.impl.InMemoryEtcdClient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the lookup hot path of {@link EtcdMessageSource} against an {@link InMemoryEtcdClient}.
+ * Lives in the message source package to reach the protected {@link EtcdMessageSource#resolveCode}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageLookupBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Number of message codes per locale.
+     */
+    @Param({"100", "10000", "60000"})
+    int bundleSize;
+
+    /**
+     * Number of locales defined under the locales key.
+     */
+    @Param({"2", "10", "40"})
+    int localeCount;
+
+    /**
+     * Whether messages are stored off-heap, run with {@code -p offHeapStorage=true,false} to compare.
+     */
+    @Param({"false"})
+    boolean offHeapStorage;
+
+    EtcdMessageSource messageSource;
+
+    ExecutorService executor;
+
+    String[] codes;
+
+    Locale[] locales;
+
+    Object[] args = {"world"};
+
+    /**
+     * Codes resolved by one call of the batch benchmarks, like the messages of a page.
+     */
+    List<String> pageCodes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        InMemoryEtcdClient client = new InMemoryEtcdClient();
+        Fixtures.populate(client, bundleSize, localeCount);
+        codes = Fixtures.codes(bundleSize);
+        locales = Fixtures.locales(localeCount);
+        pageCodes = Arrays.asList(codes).subList(0, Math.min(PAGE_SIZE, codes.length));
+
+        executor = Executors.newFixedThreadPool(4);
+        messageSource = new EtcdMessageSource(client, Fixtures.BASE_DIR, Fixtures.LOCALES_KEY, Fixtures.BASE_DIR, executor, true);
+        messageSource.setOffHeapStorage(offHeapStorage);
+        messageSource.start();
+        Fixtures.awaitLoaded(messageSource, localeCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public String getMessageWithoutArguments() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return messageSource.getMessage(codes[random.nextInt(codes.length)], null, locales[random.nextInt(locales.length)]);
+    }
+
+    @Benchmark
+    public String getMessageWithArguments() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return messageSource.getMessage(codes[random.nextInt(codes.length)], args, locales[random.nextInt(locales.length)]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void getMessagesOneByOne(Blackhole blackhole) {
+        Locale locale = locales[ThreadLocalRandom.current().nextInt(locales.length)];
+        for (String code : pageCodes) {
+            blackhole.consume(messageSource.getMessage(code, null, locale));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public Map<String, String> getMessagesBatch() {
+        return messageSource.getMessages(pageCodes, locales[ThreadLocalRandom.current().nextInt(locales.length)]);
+    }
+
+    @Benchmark
+    public MessageFormat resolveCode() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return messageSource.resolveCode(codes[random.nextInt(codes.length)], locales[random.nextInt(locales.length)]);
+    }
+
+    @Benchmark
+    public void getMessageFormat(Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        blackhole.consume(messageSource.getMessageFormat(codes[random.nextInt(codes.length)], locales[random.nextInt(locales.length)]));
+    }
+}
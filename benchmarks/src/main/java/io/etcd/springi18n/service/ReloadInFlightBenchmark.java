@@ -0,0 +1,76 @@
+package io.etcd.springi18n.service;
+
+import io.etcd.springi18n.service.impl.InMemoryEtcdClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups while one thread keeps reloading every locale, so the cost readers pay
+ * for a reload in flight shows up next to the plain lookup numbers of {@link MessageLookupBenchmark}.
+ */
+@State(Scope.Group)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReloadInFlightBenchmark {
+
+    /**
+     * Number of message codes per locale.
+     */
+    @Param({"1000", "10000"})
+    int bundleSize;
+
+    /**
+     * Number of locales defined under the locales key.
+     */
+    @Param({"2", "10"})
+    int localeCount;
+
+    EtcdMessageSource messageSource;
+
+    ExecutorService executor;
+
+    String[] codes;
+
+    Locale[] locales;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        InMemoryEtcdClient client = new InMemoryEtcdClient();
+        Fixtures.populate(client, bundleSize, localeCount);
+        codes = Fixtures.codes(bundleSize);
+        locales = Fixtures.locales(localeCount);
+
+        executor = Executors.newFixedThreadPool(4);
+        messageSource = new EtcdMessageSource(client, Fixtures.BASE_DIR, Fixtures.LOCALES_KEY, Fixtures.BASE_DIR, executor, true);
+        messageSource.start();
+        Fixtures.awaitLoaded(messageSource, localeCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @Group("reloadInFlight")
+    @GroupThreads(3)
+    public String lookup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return messageSource.getMessage(codes[random.nextInt(codes.length)], null, locales[random.nextInt(locales.length)]);
+    }
+
+    @Benchmark
+    @Group("reloadInFlight")
+    @GroupThreads(1)
+    public void reload() {
+        messageSource.reloadMessages();
+    }
+}
@@ -0,0 +1,108 @@
+package io.etcd.springi18n.config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor service running every task on its own virtual thread, with the number of tasks running at the same time
+ * bounded by a semaphore instead of a pool size. Tasks over the bound wait on a parked virtual thread, so they are
+ * never rejected and cost no OS thread while waiting. A submitted task always runs, even if its thread is interrupted
+ * while waiting.
+ *
+ * <p>Virtual threads need Java 21 or newer, {@link #isSupported()} tells whether the running JVM has them.
+ * They are looked up reflectively so the library still compiles and runs on Java 17.</p>
+ */
+final class BoundedVirtualThreadExecutorService extends AbstractExecutorService {
+
+    /**
+     * Runs each task on a new virtual thread.
+     */
+    private final ExecutorService virtualThreadExecutor;
+
+    /**
+     * Permits for the tasks allowed to run at the same time.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Constructs an executor whose virtual threads are named with the given prefix and a counter.
+     *
+     * @param threadNamePrefix the prefix for thread names
+     * @param maxConcurrency   the maximum number of tasks running at the same time
+     */
+    BoundedVirtualThreadExecutorService(String threadNamePrefix, int maxConcurrency) {
+        this.virtualThreadExecutor = newVirtualThreadPerTaskExecutor(threadNamePrefix);
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Tells whether the running JVM supports virtual threads.
+     *
+     * @return true on Java 21 or newer
+     */
+    static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String threadNamePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 1L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not supported by this JVM, Java 21 or newer is needed", e);
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        virtualThreadExecutor.execute(() -> {
+            // uninterruptibly, a task dropped on shutdownNow() would leave the future its caller waits on incomplete,
+            // the interrupt stays set for the task to see
+            permits.acquireUninterruptibly();
+            try {
+                command.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        virtualThreadExecutor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return virtualThreadExecutor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return virtualThreadExecutor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return virtualThreadExecutor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return virtualThreadExecutor.awaitTermination(timeout, unit);
+    }
+}
@@ -1,5 +1,6 @@
 package io.etcd.springi18n.config;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,10 +10,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Configuration class for setting up thread pools for etcd operations.
+ *
+ * <p>With {@code etcd.server.connection.virtualThreads=true} both executors run each task on a virtual thread
+ * (Java 21+) and bound the tasks running at the same time with a semaphore instead of a pool size.
+ * On older JVMs the platform thread pools are used.</p>
  */
+@Slf4j
 @Configuration
 public class EtcdThreadPoolConfiguration {
 
+    /**
+     * Whether both etcd executors use virtual threads instead of platform thread pools.
+     */
+    @Value("${etcd.server.connection.virtualThreads:false}")
+    private boolean virtualThreads;
+
     /**
      * Core pool size for the main etcd thread pool.
      */
@@ -38,29 +50,54 @@ public class EtcdThreadPoolConfiguration {
     private String threadNamePrefix;
 
     /**
-     * Core pool size for the blocking etcd thread pool.
+     * Maximum number of tasks running at the same time on the main etcd executor in virtual thread mode.
+     */
+    @Value("${etcd.server.connection.maxConcurrency:${etcd.server.connection.maxPoolSize:3000}}")
+    private int maxConcurrency;
+
+    /**
+     * Core pool size for the blocking etcd thread pool. The blocking pool used to read the unprefixed keys of the main
+     * pool, they are still honoured when the {@code blocking*} keys are not set.
      */
-    @Value("${etcd.server.connection.corePoolSize:10}")
+    @Value("${etcd.server.connection.blockingCorePoolSize:${etcd.server.connection.corePoolSize:10}}")
     private int blockingCorePoolSize;
 
     /**
      * Maximum pool size for the blocking etcd thread pool.
      */
-    @Value("${etcd.server.connection.maxPoolSize:20}")
+    @Value("${etcd.server.connection.blockingMaxPoolSize:${etcd.server.connection.maxPoolSize:20}}")
     private int blockingMaxPoolSize;
 
     /**
      * Queue capacity for the blocking etcd thread pool.
      */
-    @Value("${etcd.server.connection.queueCapacity:20}")
+    @Value("${etcd.server.connection.blockingQueueCapacity:${etcd.server.connection.queueCapacity:20}}")
     private int blockingQueueCapacity;
 
     /**
      * Thread name prefix for the blocking etcd thread pool.
      */
-    @Value("${etcd.server.connection.threadNamePrefix:etcd-blocking-}")
+    @Value("${etcd.server.connection.blockingThreadNamePrefix:${etcd.server.connection.threadNamePrefix:etcd-blocking-}}")
     private String blockingThreadNamePrefix;
 
+    /**
+     * Maximum number of tasks running at the same time on the blocking etcd executor in virtual thread mode.
+     */
+    @Value("${etcd.server.connection.blockingMaxConcurrency:${etcd.server.connection.blockingMaxPoolSize:${etcd.server.connection.maxPoolSize:20}}}")
+    private int blockingMaxConcurrency;
+
+    /**
+     * Number of threads notifying the message change listeners.
+     */
+    @Value("${etcd.server.changes.listenerThreads:4}")
+    private int listenerThreads;
+
+    /**
+     * Thread name prefix for the message change listener thread pool.
+     */
+    @Value("${etcd.server.changes.listenerThreadNamePrefix:etcd-listener-}")
+    private String listenerThreadNamePrefix;
+
     /**
      * Creates a bean for the main etcd thread pool executor service.
      *
@@ -68,6 +105,9 @@ public class EtcdThreadPoolConfiguration {
      */
     @Bean(name = "etcdThreadPoolTaskExecutor")
     public ExecutorService etcdThreadPoolTaskExecutor() {
+        if (useVirtualThreads()) {
+            return new BoundedVirtualThreadExecutorService(threadNamePrefix, maxConcurrency);
+        }
         ThreadFactory threadFactory = new CustomThreadFactory(threadNamePrefix);
         return new ThreadPoolExecutor(
                 corePoolSize,
@@ -86,6 +126,9 @@ public class EtcdThreadPoolConfiguration {
      */
     @Bean(name = "etcdLongBlockingThreadPoolTaskExecutor")
     public ExecutorService etcdLongBlockingThreadPoolTaskExecutor() {
+        if (useVirtualThreads()) {
+            return new BoundedVirtualThreadExecutorService(blockingThreadNamePrefix, blockingMaxConcurrency);
+        }
         ThreadFactory threadFactory = new CustomThreadFactory(blockingThreadNamePrefix);
         return new ThreadPoolExecutor(
                 blockingCorePoolSize,
@@ -97,6 +140,38 @@ public class EtcdThreadPoolConfiguration {
         );
     }
 
+    /**
+     * Creates a bean for the executor the message change listeners are notified on, dedicated so slow listeners
+     * never hold up the etcd executors. Its queue is unbounded, each listener has at most one task queued.
+     *
+     * @return an {@link ExecutorService} for the message change listeners
+     */
+    @Bean(name = "etcdChangeListenerExecutor")
+    public ExecutorService etcdChangeListenerExecutor() {
+        if (useVirtualThreads()) {
+            return new BoundedVirtualThreadExecutorService(listenerThreadNamePrefix, listenerThreads);
+        }
+        ThreadFactory threadFactory = new CustomThreadFactory(listenerThreadNamePrefix);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                listenerThreads,
+                listenerThreads,
+                10L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private boolean useVirtualThreads() {
+        if (virtualThreads && !BoundedVirtualThreadExecutorService.isSupported()) {
+            log.warn("Virtual threads are configured for the etcd executors but need Java 21 or newer, will use platform thread pools");
+            return false;
+        }
+        return virtualThreads;
+    }
+
     /**
      * Custom thread factory for naming threads in the thread pool.
      */
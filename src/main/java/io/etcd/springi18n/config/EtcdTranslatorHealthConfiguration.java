@@ -0,0 +1,27 @@
+package io.etcd.springi18n.config;
+
+import io.etcd.springi18n.service.EtcdMessageSourceRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for the health indicator of the translations, only applied if Spring Boot Actuator is present.
+ */
+@Configuration
+@ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+public class EtcdTranslatorHealthConfiguration {
+
+    /**
+     * Creates the health indicator, named {@code etcdTranslator}, if one is not already defined.
+     *
+     * @param registry the message sources of all translation roots
+     * @return a new instance of EtcdTranslatorHealthIndicator
+     */
+    @Bean
+    @ConditionalOnMissingBean(EtcdTranslatorHealthIndicator.class)
+    public EtcdTranslatorHealthIndicator etcdTranslatorHealthIndicator(EtcdMessageSourceRegistry registry) {
+        return new EtcdTranslatorHealthIndicator(registry);
+    }
+}
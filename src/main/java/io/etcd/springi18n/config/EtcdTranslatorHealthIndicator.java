@@ -0,0 +1,48 @@
+package io.etcd.springi18n.config;
+
+import io.etcd.springi18n.service.EtcdMessageSource;
+import io.etcd.springi18n.service.EtcdMessageSourceRegistry;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports whether the messages of every translation root are loaded. The status is {@code OUT_OF_SERVICE} until the
+ * first load of every root is published with all locales, so a readiness probe including it only routes traffic to
+ * instances that can translate. Missing locales are reloaded in the background and the status turns {@code UP} once
+ * they are served.
+ */
+public class EtcdTranslatorHealthIndicator implements HealthIndicator {
+
+    private final EtcdMessageSourceRegistry registry;
+
+    /**
+     * Constructs the health indicator.
+     *
+     * @param registry the message sources of all translation roots
+     */
+    public EtcdTranslatorHealthIndicator(EtcdMessageSourceRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Health health() {
+        boolean ready = true;
+        Map<String, Object> roots = new LinkedHashMap<>();
+        for (String root : registry.getRootNames()) {
+            EtcdMessageSource messageSource = registry.get(root);
+            ready &= messageSource.isReady();
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("ready", messageSource.isReady());
+            details.put("revision", messageSource.getRevision());
+            details.put("locales", messageSource.getAvailableLocales().size());
+            if (!messageSource.getMissingLocales().isEmpty()) {
+                details.put("missingLocales", messageSource.getMissingLocales().stream().map(Object::toString).sorted().toList());
+            }
+            roots.put(root, details);
+        }
+        return (ready ? Health.up() : Health.outOfService()).withDetail("roots", roots).build();
+    }
+}
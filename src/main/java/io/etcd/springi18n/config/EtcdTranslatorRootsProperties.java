@@ -0,0 +1,89 @@
+package io.etcd.springi18n.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Additional translation roots, each served by its own message source over the shared etcd client and watch.
+ *
+ * <pre>
+ * etcd.server.roots.billing.baseDir=/translations/billing
+ * etcd.server.roots.billing.localesKey=/translations/billing/locales
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "etcd.server")
+public class EtcdTranslatorRootsProperties {
+
+    /**
+     * Translation roots by name, the name is used to look the message source up and as the {@code root} meter tag.
+     */
+    private Map<String, Root> roots = new LinkedHashMap<>();
+
+    public Map<String, Root> getRoots() {
+        return roots;
+    }
+
+    public void setRoots(Map<String, Root> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * A single translation root.
+     */
+    public static class Root {
+
+        /**
+         * Base directory of the messages of the root.
+         */
+        private String baseDir;
+
+        /**
+         * Key where the locales of the root are defined.
+         */
+        private String localesKey;
+
+        /**
+         * Key prefix to watch for changes, the base directory if not set.
+         */
+        private String baseDirToWatch;
+
+        /**
+         * Local file to keep the last loaded messages of the root in, empty to disable.
+         */
+        private String snapshotFile = "";
+
+        public String getBaseDir() {
+            return baseDir;
+        }
+
+        public void setBaseDir(String baseDir) {
+            this.baseDir = baseDir;
+        }
+
+        public String getLocalesKey() {
+            return localesKey;
+        }
+
+        public void setLocalesKey(String localesKey) {
+            this.localesKey = localesKey;
+        }
+
+        public String getBaseDirToWatch() {
+            return baseDirToWatch != null ? baseDirToWatch : baseDir;
+        }
+
+        public void setBaseDirToWatch(String baseDirToWatch) {
+            this.baseDirToWatch = baseDirToWatch;
+        }
+
+        public String getSnapshotFile() {
+            return snapshotFile;
+        }
+
+        public void setSnapshotFile(String snapshotFile) {
+            this.snapshotFile = snapshotFile;
+        }
+    }
+}
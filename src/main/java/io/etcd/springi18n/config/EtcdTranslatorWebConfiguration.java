@@ -0,0 +1,69 @@
+package io.etcd.springi18n.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.etcd.springi18n.controller.ChangeStreamController;
+import io.etcd.springi18n.controller.TranslatorController;
+import io.etcd.springi18n.service.EtcdMessageSourceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for the bundle export and change stream endpoints, only applied in servlet web applications.
+ * Each endpoint is enabled with its own property.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnClass(name = {"org.springframework.web.servlet.DispatcherServlet", "com.fasterxml.jackson.databind.ObjectMapper"})
+public class EtcdTranslatorWebConfiguration {
+
+    /**
+     * Creates the export controller if {@code etcd.server.export.enabled} is {@code true} and one is not already
+     * defined.
+     *
+     * @param registry     the message sources of all translation roots
+     * @param objectMapper the application's object mapper, a default one is used if there is none
+     * @param cacheSize    the maximum number of exported bundles kept
+     * @return a new instance of TranslatorController
+     */
+    @Bean
+    @ConditionalOnProperty(name = "etcd.server.export.enabled", havingValue = "true")
+    @ConditionalOnMissingBean(TranslatorController.class)
+    public TranslatorController translatorController(EtcdMessageSourceRegistry registry, ObjectProvider<ObjectMapper> objectMapper,
+                                                     @Value("${etcd.server.export.cacheSize:" + TranslatorController.DEFAULT_CACHE_SIZE + "}") int cacheSize) {
+        return new TranslatorController(registry, objectMapper.getIfAvailable(ObjectMapper::new), cacheSize);
+    }
+
+    /**
+     * Creates the change stream controller if {@code etcd.server.changes.enabled} is {@code true} and one is not
+     * already defined.
+     *
+     * @param registry           the message sources of all translation roots
+     * @param objectMapper       the application's object mapper, a default one is used if there is none
+     * @param historySize        the number of recent changes kept per root for clients to resume from
+     * @param bufferSize         the number of events queued per client before it is disconnected as too slow
+     * @param threads            the number of threads writing to the clients
+     * @param timeoutMillis      the time after which a stream is closed and the client reconnects
+     * @param writeTimeoutMillis the time a write to a client may block before the client is disconnected
+     * @param maxQueueAgeMillis  the time an event may wait in a client's queue before the client is disconnected
+     * @return a new instance of ChangeStreamController
+     */
+    @Bean
+    @ConditionalOnProperty(name = "etcd.server.changes.enabled", havingValue = "true")
+    @ConditionalOnMissingBean(ChangeStreamController.class)
+    public ChangeStreamController changeStreamController(EtcdMessageSourceRegistry registry, ObjectProvider<ObjectMapper> objectMapper,
+                                                         @Value("${etcd.server.changes.historySize:10000}") int historySize,
+                                                         @Value("${etcd.server.changes.bufferSize:256}") int bufferSize,
+                                                         @Value("${etcd.server.changes.threads:16}") int threads,
+                                                         @Value("${etcd.server.changes.timeoutMillis:1800000}") long timeoutMillis,
+                                                         @Value("${etcd.server.changes.writeTimeoutMillis:10000}") long writeTimeoutMillis,
+                                                         @Value("${etcd.server.changes.maxQueueAgeMillis:30000}") long maxQueueAgeMillis) {
+        return new ChangeStreamController(registry, objectMapper.getIfAvailable(ObjectMapper::new), historySize, bufferSize, threads,
+                timeoutMillis, writeTimeoutMillis, maxQueueAgeMillis);
+    }
+}
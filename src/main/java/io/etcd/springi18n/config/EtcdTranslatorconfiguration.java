@@ -3,20 +3,31 @@ package io.etcd.springi18n.config;
 import io.etcd.springi18n.service.EtcdClient;
 import io.etcd.springi18n.service.impl.EtcdClientFactory;
 import io.etcd.springi18n.service.EtcdMessageSource;
+import io.etcd.springi18n.service.EtcdMessageSourceRegistry;
+import io.etcd.springi18n.service.EtcdTranslatorMetrics;
+import io.etcd.springi18n.service.ReadConsistency;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 /**
  * Configuration class for setting up etcd client and message source beans.
  */
 @Configuration
-//@ConfigurationProperties(prefix = "etcd.server")
+@EnableConfigurationProperties(EtcdTranslatorRootsProperties.class)
 public class EtcdTranslatorconfiguration {
 
     /**
@@ -27,6 +38,18 @@ public class EtcdTranslatorconfiguration {
      * Executor service for regular etcd tasks.
      */
     private final ExecutorService etcdThreadPoolTaskExecutor;
+    /**
+     * Executor service the message change listeners are notified on.
+     */
+    private final ExecutorService etcdChangeListenerExecutor;
+    /**
+     * Registry for the translator meters, the global registry is used if the application has none.
+     */
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    /**
+     * Additional translation roots.
+     */
+    private final EtcdTranslatorRootsProperties rootsProperties;
     /**
      * List of etcd server hosts.
      */
@@ -52,6 +75,106 @@ public class EtcdTranslatorconfiguration {
      */
     @Value("${etcd.server.localesKey:/locales}")
     private String localesKey;
+    /**
+     * Whether watch events are applied key by key instead of reloading every locale.
+     */
+    @Value("${etcd.server.incrementalUpdates:true}")
+    private boolean incrementalUpdates;
+    /**
+     * Maximum number of keys per range request when loading a locale, 0 loads each locale in one request.
+     */
+    @Value("${etcd.server.loadPageSize:0}")
+    private int loadPageSize;
+    /**
+     * Whether messages are stored UTF-8 encoded outside the heap instead of as Java strings.
+     */
+    @Value("${etcd.server.offHeapStorage:false}")
+    private boolean offHeapStorage;
+    /**
+     * Whether a locale's messages are only loaded on its first lookup.
+     */
+    @Value("${etcd.server.lazyLocaleLoading:false}")
+    private boolean lazyLocaleLoading;
+    /**
+     * Maximum number of locales kept loaded with lazy locale loading, 0 for no limit.
+     */
+    @Value("${etcd.server.maxLoadedLocales:0}")
+    private int maxLoadedLocales;
+    /**
+     * Time in milliseconds a lookup waits for a locale loaded on first use before falling back to the parent source.
+     */
+    @Value("${etcd.server.firstUse.timeoutMillis:200}")
+    private long firstUseTimeoutMillis;
+    /**
+     * Maximum number of codes resolving to no message remembered per snapshot, 0, the default, to disable.
+     */
+    @Value("${etcd.server.missingCodes.cacheSize:0}")
+    private int missingCodeCacheSize;
+    /**
+     * One in this many lookups of missing codes is counted for the top missing codes.
+     */
+    @Value("${etcd.server.missingCodes.sampleEvery:16}")
+    private int missingCodeSampleEvery;
+    /**
+     * Whether codes missing in the loaded messages are read from etcd before falling back.
+     */
+    @Value("${etcd.server.readThrough.enabled:false}")
+    private boolean readThrough;
+    /**
+     * Time in milliseconds a lookup waits for the read of a missing code.
+     */
+    @Value("${etcd.server.readThrough.timeoutMillis:100}")
+    private long readThroughTimeoutMillis;
+    /**
+     * Maximum size in bytes of a single etcd response.
+     */
+    @Value("${etcd.server.maxInboundMessageSize:8388608}")
+    private int maxInboundMessageSize;
+    /**
+     * Consistency of the range reads that load messages, {@code linearizable} or {@code serializable}.
+     */
+    @Value("${etcd.server.read.consistency:linearizable}")
+    private String readConsistency;
+    /**
+     * Deadline in milliseconds of a single range read, {@code 0} for none.
+     */
+    @Value("${etcd.server.read.timeoutMillis:10000}")
+    private long readTimeoutMillis;
+    /**
+     * Time in milliseconds without further changes before a reload triggered by the watch starts.
+     */
+    @Value("${etcd.server.reload.quietPeriodMillis:500}")
+    private long reloadQuietPeriodMillis;
+    /**
+     * Upper bound in milliseconds for how long further changes delay a reload triggered by the watch.
+     */
+    @Value("${etcd.server.reload.maxDelayMillis:5000}")
+    private long reloadMaxDelayMillis;
+    /**
+     * Deadline in milliseconds of a full load, locales not read by then keep their previous messages.
+     */
+    @Value("${etcd.server.load.timeoutMillis:30000}")
+    private long loadTimeoutMillis;
+    /**
+     * Whether the message source blocks the startup until the first messages are loaded, at most for the load timeout.
+     */
+    @Value("${etcd.server.startup.waitForInitialLoad:false}")
+    private boolean waitForInitialLoad;
+    /**
+     * Whether the startup fails if not all locales are loaded after waiting for the initial load.
+     */
+    @Value("${etcd.server.startup.failOnMissingMessages:false}")
+    private boolean failOnMissingMessages;
+    /**
+     * Local file to keep the last loaded messages in for instant and offline startup, empty to disable.
+     */
+    @Value("${etcd.server.snapshotFile:}")
+    private String snapshotFile;
+    /**
+     * Time in milliseconds after a watch update before the snapshot file is rewritten, 0 to only write it after full loads.
+     */
+    @Value("${etcd.server.snapshotWriteIntervalMillis:60000}")
+    private long snapshotWriteIntervalMillis;
     /**
      * Core pool size for the etcd connection thread pool.
      */
@@ -78,28 +201,100 @@ public class EtcdTranslatorconfiguration {
      *
      * @param etcdLongBlockingThreadPoolTaskExecutor executor service for long-running blocking etcd tasks
      * @param etcdThreadPoolTaskExecutor             executor service for regular etcd tasks
+     * @param etcdChangeListenerExecutor             executor service the message change listeners are notified on
+     * @param meterRegistry                          registry for the translator meters, if the application has one
+     * @param rootsProperties                        additional translation roots
      */
-    public EtcdTranslatorconfiguration(ExecutorService etcdLongBlockingThreadPoolTaskExecutor, ExecutorService etcdThreadPoolTaskExecutor) {
+    public EtcdTranslatorconfiguration(ExecutorService etcdLongBlockingThreadPoolTaskExecutor, ExecutorService etcdThreadPoolTaskExecutor, ExecutorService etcdChangeListenerExecutor, ObjectProvider<MeterRegistry> meterRegistry, EtcdTranslatorRootsProperties rootsProperties) {
         this.etcdLongBlockingThreadPoolTaskExecutor = etcdLongBlockingThreadPoolTaskExecutor;
         this.etcdThreadPoolTaskExecutor = etcdThreadPoolTaskExecutor;
+        this.etcdChangeListenerExecutor = etcdChangeListenerExecutor;
+        this.meterRegistry = meterRegistry;
+        this.rootsProperties = rootsProperties;
     }
 
     /**
-     * Creates a bean for the EtcdMessageSource if one is not already defined.
+     * Creates a bean for the EtcdTranslatorMetrics if one is not already defined.
+     *
+     * @return the meters of the etcd client and message source
+     */
+    @Bean
+    @ConditionalOnMissingBean(EtcdTranslatorMetrics.class)
+    public EtcdTranslatorMetrics etcdTranslatorMetrics() {
+        return new EtcdTranslatorMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    /**
+     * Creates a bean for the EtcdMessageSource if one is not already defined. If additional roots are configured,
+     * its meters are tagged with {@code root=default}.
      *
      * @return a new instance of EtcdMessageSource
      */
     @Bean
     @ConditionalOnMissingBean(EtcdMessageSource.class)
     public EtcdMessageSource etcdMessageSource() {
-        return new EtcdMessageSource(
+        EtcdTranslatorMetrics metrics = rootsProperties.getRoots().isEmpty()
+                ? etcdTranslatorMetrics()
+                : etcdTranslatorMetrics().forRoot(EtcdMessageSourceRegistry.DEFAULT_ROOT);
+        return createMessageSource(baseDir, localesKey, baseDirTowatch, snapshotFile, metrics);
+    }
+
+    /**
+     * Creates a bean for the EtcdMessageSourceRegistry if one is not already defined, with a message source
+     * per configured root. All roots share the etcd client and one watch of their common prefix.
+     *
+     * @param etcdMessageSource the message source of the default root
+     * @return a new instance of EtcdMessageSourceRegistry
+     */
+    @Bean
+    @ConditionalOnMissingBean(EtcdMessageSourceRegistry.class)
+    public EtcdMessageSourceRegistry etcdMessageSourceRegistry(EtcdMessageSource etcdMessageSource) {
+        Map<String, EtcdMessageSource> rootMessageSources = new LinkedHashMap<>();
+        rootsProperties.getRoots().forEach((name, root) -> {
+            if (root.getBaseDir() == null || root.getLocalesKey() == null) {
+                throw new IllegalStateException("etcd.server.roots." + name + ".baseDir and .localesKey must be set");
+            }
+            rootMessageSources.put(name, createMessageSource(
+                    root.getBaseDir(),
+                    root.getLocalesKey(),
+                    root.getBaseDirToWatch(),
+                    root.getSnapshotFile(),
+                    etcdTranslatorMetrics().forRoot(name)
+            ));
+        });
+        return new EtcdMessageSourceRegistry(etcdMessageSource, rootMessageSources);
+    }
+
+    private EtcdMessageSource createMessageSource(String baseDir, String localesKey, String baseDirToWatch, String snapshotFile, EtcdTranslatorMetrics metrics) {
+        EtcdMessageSource etcdMessageSource = new EtcdMessageSource(
                 etcdClient(),
                 baseDir,
                 localesKey,
-                baseDirTowatch,
+                baseDirToWatch,
                 etcdLongBlockingThreadPoolTaskExecutor,
                 true
         );
+        etcdMessageSource.setMetrics(metrics);
+        etcdMessageSource.setApplyWatchEventsIncrementally(incrementalUpdates);
+        etcdMessageSource.setLoadPageSize(loadPageSize);
+        etcdMessageSource.setOffHeapStorage(offHeapStorage);
+        etcdMessageSource.setLazyLocaleLoading(lazyLocaleLoading);
+        etcdMessageSource.setMaxLoadedLocales(maxLoadedLocales);
+        etcdMessageSource.setFirstUseTimeout(firstUseTimeoutMillis);
+        etcdMessageSource.setMissingCodeCacheSize(missingCodeCacheSize);
+        etcdMessageSource.setMissingCodeSampling(missingCodeSampleEvery);
+        etcdMessageSource.setReadThrough(readThrough);
+        etcdMessageSource.setReadThroughTimeout(readThroughTimeoutMillis);
+        etcdMessageSource.setChangeListenerExecutor(etcdChangeListenerExecutor);
+        etcdMessageSource.setReloadDebounce(reloadQuietPeriodMillis, reloadMaxDelayMillis);
+        etcdMessageSource.setLoadTimeout(loadTimeoutMillis);
+        etcdMessageSource.setWaitForInitialLoad(waitForInitialLoad);
+        etcdMessageSource.setFailOnMissingMessages(failOnMissingMessages);
+        if (snapshotFile != null && !snapshotFile.isBlank()) {
+            etcdMessageSource.setSnapshotFile(Path.of(snapshotFile));
+            etcdMessageSource.setSnapshotFileWriteInterval(snapshotWriteIntervalMillis);
+        }
+        return etcdMessageSource;
     }
 
     /**
@@ -113,8 +308,12 @@ public class EtcdTranslatorconfiguration {
         return EtcdClientFactory.createEtcdClient(
                 hosts.toArray(new String[0]),
                 port,
+                maxInboundMessageSize,
                 etcdThreadPoolTaskExecutor,
-                etcdLongBlockingThreadPoolTaskExecutor
+                etcdLongBlockingThreadPoolTaskExecutor,
+                etcdTranslatorMetrics(),
+                ReadConsistency.valueOf(readConsistency.trim().toUpperCase(Locale.ROOT)),
+                readTimeoutMillis
         );
 //        return new EtcdClientImpl(
 //                hosts.toArray(new String[0]),
@@ -0,0 +1,141 @@
+package io.etcd.springi18n.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.etcd.springi18n.service.EtcdMessageSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exported bundles serialized to JSON and gzip-compressed once per revision of their message source, so repeated
+ * requests for an unchanged bundle are served from the same byte arrays.
+ *
+ * <p>A bundle is rebuilt on the first request after the revision of its message source changed. It is stored under
+ * the revision read before its messages were, so a change in between only causes one more rebuild and never serves
+ * older messages under a newer revision. At most {@code maxEntries} bundles are kept, bundles of older revisions are
+ * dropped first and further bundles are built per request.</p>
+ *
+ * <p>Bundles are keyed by the locale whose messages are served and the prefix without surrounding whitespace, so
+ * {@code en-US} and {@code en-GB} share the bundle of {@code en}. The entity tag only depends on the exported JSON: a
+ * revision that changes other messages keeps it, and clients revalidating it get a {@code 304} without the bundle
+ * being compressed again.</p>
+ */
+final class BundleExportCache {
+
+    private final ObjectMapper objectMapper;
+
+    private final int maxEntries;
+
+    private final ConcurrentMap<Key, ExportedBundle> bundles = new ConcurrentHashMap<>();
+
+    BundleExportCache(ObjectMapper objectMapper, int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the exported messages of a locale whose code starts with the given prefix.
+     *
+     * @param root          the name of the translation root
+     * @param messageSource the message source of the root
+     * @param locale        the requested locale
+     * @param prefix        the code prefix, the empty string exports all messages of the locale
+     * @return the exported bundle of the current revision
+     */
+    ExportedBundle get(String root, EtcdMessageSource messageSource, Locale locale, String prefix) {
+        long revision = messageSource.getRevision();
+        Locale servedLocale = messageSource.getServedLocale(locale);
+        String normalizedPrefix = prefix.strip();
+        Key key = new Key(root, servedLocale, normalizedPrefix);
+        ExportedBundle cached = bundles.get(key);
+        if (cached != null && cached.revision() == revision) {
+            return cached;
+        }
+        Map<String, String> messages = servedLocale != null
+                ? messageSource.getMessagesByPrefix(normalizedPrefix, servedLocale)
+                : Map.of();
+        byte[] json = serialize(messages);
+        ExportedBundle bundle = cached != null && Arrays.equals(cached.json(), json)
+                ? cached.atRevision(revision)
+                : ExportedBundle.of(revision, json);
+        // an empty bundle may be a locale still loading on first use, it is cheap to build again
+        if (!messages.isEmpty() && hasRoomFor(key, revision)) {
+            bundles.put(key, bundle);
+        }
+        return bundle;
+    }
+
+    private boolean hasRoomFor(Key key, long revision) {
+        if (bundles.size() < maxEntries || bundles.containsKey(key)) {
+            return true;
+        }
+        bundles.values().removeIf(bundle -> bundle.revision() != revision);
+        return bundles.size() < maxEntries;
+    }
+
+    private byte[] serialize(Map<String, String> messages) {
+        try {
+            return objectMapper.writeValueAsBytes(messages);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize messages", e);
+        }
+    }
+
+    private record Key(String root, Locale locale, String prefix) {
+    }
+
+    /**
+     * A bundle serialized once, with its gzip-compressed form and an entity tag identifying its content.
+     *
+     * @param revision the revision of the message source the bundle was built at
+     * @param json     the messages by code as UTF-8 encoded JSON
+     * @param gzipped  the JSON compressed with gzip
+     * @param etag     a weak entity tag of the SHA-256 digest of the JSON
+     */
+    record ExportedBundle(long revision, byte[] json, byte[] gzipped, String etag) {
+
+        static ExportedBundle of(long revision, byte[] json) {
+            return new ExportedBundle(revision, json, gzip(json), etagOf(json));
+        }
+
+        /**
+         * @return this bundle at a newer revision that left its messages unchanged, sharing the arrays
+         */
+        ExportedBundle atRevision(long newRevision) {
+            return new ExportedBundle(newRevision, json, gzipped, etag);
+        }
+
+        /**
+         * @return a weak entity tag of the first 128 bits of the SHA-256 digest of the JSON
+         */
+        static String etagOf(byte[] json) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+                return "W/\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package io.etcd.springi18n.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.etcd.springi18n.service.MessageChange;
+import io.etcd.springi18n.service.MessageChanges;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans the message changes of one translation root out to the server-sent event streams of many clients.
+ *
+ * <p>The changes of a revision are grouped per locale into one {@code change} event whose id is the revision.
+ * Publishing never blocks: every subscriber has a bounded queue of events, drained by a task on the executor that
+ * writes them to its stream. A subscriber whose queue is full is disconnected, so a slow client costs at most its
+ * queue, and reconnects to resume where it left off.</p>
+ *
+ * <p>A client that stopped reading may never fill its queue, so {@link #disconnectSlowSubscribers()} also
+ * disconnects a subscriber whose write is blocked past the write timeout, interrupting the writer, or whose oldest
+ * queued event waits longer than the maximum queue age. A stalled socket thus holds a shared writer thread at most
+ * for the write timeout instead of until its stream times out.</p>
+ *
+ * <p>The most recent changes are kept so clients can resume from a revision, e.g. the {@code Last-Event-ID} a
+ * browser sends when it reconnects. A client whose revision is older than the kept history, or that the stream
+ * can't tell anything about, gets a {@code reset} event telling it to fetch the bundle again instead.</p>
+ */
+final class ChangeStream {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStream.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final Executor executor;
+
+    private final int historySize;
+
+    private final int bufferSize;
+
+    private final long writeTimeoutNanos;
+
+    private final long maxQueueAgeNanos;
+
+    /**
+     * The most recent change events in revision order, holding at most {@link #historySize} changes.
+     * Guarded by {@code this}.
+     */
+    private final ArrayDeque<ChangeEvent> history = new ArrayDeque<>();
+
+    private int historyChanges;
+
+    /**
+     * The history holds every change after this revision, {@link Long#MAX_VALUE} until the first published changes.
+     * Guarded by {@code this}.
+     */
+    private long resumableFrom = Long.MAX_VALUE;
+
+    /**
+     * The revision of the last published changes, {@code -1} before the first. Guarded by {@code this}.
+     */
+    private long revision = -1;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    ChangeStream(ObjectMapper objectMapper, Executor executor, int historySize, int bufferSize,
+                 long writeTimeoutMillis, long maxQueueAgeMillis) {
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.historySize = historySize;
+        this.bufferSize = bufferSize;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        this.maxQueueAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueAgeMillis);
+    }
+
+    /**
+     * Starts the history at the revision the stream's change listener was added at, unless changes were published
+     * already.
+     *
+     * @param currentRevision the start revision of the listener's subscription
+     */
+    synchronized void startAt(long currentRevision) {
+        if (revision == -1 && currentRevision > 0) {
+            revision = currentRevision;
+            resumableFrom = currentRevision;
+        }
+    }
+
+    /**
+     * Publishes changes to the history and all subscribers, called as change listener of the root's message source.
+     * Changes that don't follow the last published revision, e.g. of a first load, clear the history, as the changes
+     * in between are unknown.
+     *
+     * @param changes the changes
+     */
+    synchronized void publish(MessageChanges changes) {
+        if (changes.previousRevision() == 0 || changes.previousRevision() != revision) {
+            history.clear();
+            historyChanges = 0;
+            resumableFrom = changes.revision();
+        }
+        revision = changes.revision();
+        List<ChangeEvent> events = ChangeEvent.of(changes.changes());
+        for (ChangeEvent event : events) {
+            history.addLast(event);
+            historyChanges += event.changes.size();
+        }
+        while (historyChanges > historySize && !history.isEmpty()) {
+            ChangeEvent evicted = history.removeFirst();
+            historyChanges -= evicted.changes.size();
+            resumableFrom = Math.max(resumableFrom, evicted.revision);
+        }
+        for (ChangeEvent event : events) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Subscribes a client to the changes of a locale.
+     *
+     * @param locale       the locale of the messages the client shows
+     * @param prefix       the code prefix of the changes to send, the empty string sends all
+     * @param fromRevision the last revision the client has seen, the changes after it are sent first, or
+     *                     {@code -1} to only send new changes
+     * @param emitter      the stream of the client
+     */
+    synchronized void subscribe(Locale locale, String prefix, long fromRevision, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(locale, prefix, emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(throwable -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        if (fromRevision >= 0 && fromRevision < resumableFrom) {
+            subscriber.offer(ChangeEvent.reset(Math.max(revision, 0)));
+        } else if (fromRevision >= 0) {
+            for (ChangeEvent event : history) {
+                if (event.revision > fromRevision) {
+                    subscriber.offer(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of connected clients
+     */
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Disconnects the clients whose write is blocked longer than the write timeout, or whose oldest queued event
+     * waits longer than the maximum queue age. Called periodically, never blocks on a client's stream.
+     */
+    void disconnectSlowSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long sendStarted = subscriber.sendStartedNanos;
+            if (sendStarted != 0 && now - sendStarted > writeTimeoutNanos) {
+                log.info("disconnecting stalled change stream client of locale: " + subscriber.locale
+                        + ", write blocked for " + TimeUnit.NANOSECONDS.toMillis(now - sendStarted) + "ms");
+                subscriber.disconnect();
+                continue;
+            }
+            QueuedEvent oldest = subscriber.queue.peek();
+            if (oldest != null && now - oldest.queuedNanos > maxQueueAgeNanos) {
+                log.info("disconnecting slow change stream client of locale: " + subscriber.locale
+                        + ", event queued for " + TimeUnit.NANOSECONDS.toMillis(now - oldest.queuedNanos) + "ms");
+                subscriber.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Completes the streams of all clients.
+     */
+    void close() {
+        subscribers.forEach(Subscriber::disconnect);
+        subscribers.clear();
+    }
+
+    /**
+     * An event waiting in a subscriber's queue since {@link #queuedNanos}.
+     */
+    private record QueuedEvent(ChangeEvent event, long queuedNanos) {
+    }
+
+    /**
+     * The changes of one locale at one revision. The JSON is built on first use and shared by all clients that
+     * receive the event unfiltered, racing writers build the same string.
+     */
+    private static final class ChangeEvent {
+
+        private final long revision;
+
+        /**
+         * The locale, {@code null} for a reset event.
+         */
+        private final Locale locale;
+
+        /**
+         * The new messages by code, {@code null} for removed ones.
+         */
+        private final Map<String, String> changes;
+
+        private String json;
+
+        private ChangeEvent(long revision, Locale locale, Map<String, String> changes) {
+            this.revision = revision;
+            this.locale = locale;
+            this.changes = changes;
+        }
+
+        static ChangeEvent reset(long revision) {
+            return new ChangeEvent(revision, null, Map.of());
+        }
+
+        /**
+         * Groups changes in revision order into one event per revision and locale.
+         */
+        static List<ChangeEvent> of(List<MessageChange> changes) {
+            List<ChangeEvent> events = new ArrayList<>();
+            Map<Locale, Map<String, String>> byLocale = new LinkedHashMap<>();
+            long revision = -1;
+            for (MessageChange change : changes) {
+                if (change.revision() != revision) {
+                    addAll(events, revision, byLocale);
+                    byLocale = new LinkedHashMap<>();
+                    revision = change.revision();
+                }
+                byLocale.computeIfAbsent(change.locale(), l -> new LinkedHashMap<>()).put(change.code(), change.message());
+            }
+            addAll(events, revision, byLocale);
+            return events;
+        }
+
+        private static void addAll(List<ChangeEvent> events, long revision, Map<Locale, Map<String, String>> byLocale) {
+            byLocale.forEach((locale, changes) -> events.add(new ChangeEvent(revision, locale, changes)));
+        }
+
+        boolean isReset() {
+            return locale == null;
+        }
+
+        /**
+         * @return this event with only the changes of codes starting with the prefix, {@code null} if there are none
+         */
+        ChangeEvent withPrefix(String prefix) {
+            if (prefix.isEmpty() || isReset()) {
+                return this;
+            }
+            Map<String, String> filtered = new LinkedHashMap<>();
+            changes.forEach((code, message) -> {
+                if (code.startsWith(prefix)) {
+                    filtered.put(code, message);
+                }
+            });
+            if (filtered.isEmpty()) {
+                return null;
+            }
+            return filtered.size() == changes.size() ? this : new ChangeEvent(revision, locale, filtered);
+        }
+
+        String toJson(ObjectMapper objectMapper) {
+            String result = json;
+            if (result == null) {
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("revision", revision);
+                if (!isReset()) {
+                    data.put("locale", locale.toLanguageTag());
+                    data.put("changes", changes);
+                }
+                try {
+                    result = objectMapper.writeValueAsString(data);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Could not serialize changes", e);
+                }
+                json = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A connected client with its queue of events not written yet.
+     */
+    private final class Subscriber {
+
+        private final Locale locale;
+
+        private final String prefix;
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<QueuedEvent> queue = new ArrayBlockingQueue<>(bufferSize);
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        /**
+         * The thread writing to the stream, {@code null} between writes. Guarded by {@code this}.
+         */
+        private Thread writer;
+
+        /**
+         * When the write in progress started, {@code 0} between writes.
+         */
+        private volatile long sendStartedNanos;
+
+        private Subscriber(Locale locale, String prefix, SseEmitter emitter) {
+            this.locale = locale;
+            this.prefix = prefix;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues an event if it concerns the client and schedules writing it, disconnects the client if its queue
+         * is full.
+         */
+        void offer(ChangeEvent event) {
+            if (closed || (!event.isReset() && !event.locale.equals(locale))) {
+                return;
+            }
+            ChangeEvent filtered = event.withPrefix(prefix);
+            if (filtered == null) {
+                return;
+            }
+            if (!queue.offer(new QueuedEvent(filtered, System.nanoTime()))) {
+                log.info("disconnecting slow change stream client of locale: " + locale + ", " + bufferSize + " events queued");
+                disconnect();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                QueuedEvent queued;
+                while (!closed && (queued = queue.poll()) != null) {
+                    if (!send(queued.event)) {
+                        return;
+                    }
+                }
+                draining.set(false);
+            } while (!closed && !queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        /**
+         * Writes an event, completes the stream if the write fails or the client was disconnected while it blocked.
+         *
+         * @return whether the event was written
+         */
+        private boolean send(ChangeEvent event) {
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                writer = Thread.currentThread();
+                sendStartedNanos = System.nanoTime();
+            }
+            Exception failure = null;
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(Long.toString(event.revision))
+                        .name(event.isReset() ? "reset" : "change")
+                        .data(event.toJson(objectMapper)));
+            } catch (IOException | IllegalStateException e) {
+                failure = e;
+            } finally {
+                synchronized (this) {
+                    writer = null;
+                    sendStartedNanos = 0;
+                }
+                // a disconnect may have interrupted the write, the pool thread goes on with other clients
+                Thread.interrupted();
+            }
+            if (failure != null || closed) {
+                close();
+                if (failure != null) {
+                    emitter.completeWithError(failure);
+                } else {
+                    emitter.complete();
+                }
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Disconnects the client. A blocked write is interrupted and its writer completes the stream, as completing
+         * it here would wait for the write; otherwise the stream is completed right away.
+         */
+        private void disconnect() {
+            Thread blockedWriter;
+            synchronized (this) {
+                close();
+                blockedWriter = writer;
+                if (blockedWriter != null) {
+                    blockedWriter.interrupt();
+                }
+            }
+            if (blockedWriter == null) {
+                emitter.complete();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+        }
+    }
+}
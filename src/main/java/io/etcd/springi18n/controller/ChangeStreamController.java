@@ -0,0 +1,160 @@
+package io.etcd.springi18n.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.etcd.springi18n.service.EtcdMessageSource;
+import io.etcd.springi18n.service.EtcdMessageSourceRegistry;
+import io.etcd.springi18n.service.MessageChangeFilter;
+import io.etcd.springi18n.service.MessageChangeSubscription;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the message changes of a locale to clients as server-sent events, so front ends don't need to poll
+ * their bundles.
+ *
+ * <p>{@code GET /translations/{locale}/changes} sends a {@code change} event for every revision that changed
+ * messages of the locale, with the revision as its id and the new messages by code as data, {@code null} for removed
+ * ones. {@code ?prefix=} and {@code ?root=} select a namespace and a translation root like the export does. All
+ * clients share the one etcd watch and change listener of their root, see {@link ChangeStream} for how they are
+ * fanned out.</p>
+ *
+ * <p>A browser reconnecting with {@code Last-Event-ID}, or a client passing {@code ?fromRevision=}, first gets the
+ * changes it missed. If they are no longer kept, it gets a {@code reset} event and should fetch the bundle again.
+ * A client without a revision subscribes first and then fetches the bundle, so no change in between is lost.</p>
+ *
+ * <p>Only served if {@code etcd.server.changes.enabled} is {@code true}.</p>
+ */
+@RestController
+@ConditionalOnProperty(name = "etcd.server.changes.enabled", havingValue = "true")
+public class ChangeStreamController {
+
+    private final EtcdMessageSourceRegistry registry;
+
+    private final Map<String, ChangeStream> streams = new LinkedHashMap<>();
+
+    private final List<MessageChangeSubscription> subscriptions = new ArrayList<>();
+
+    private final ExecutorService executor;
+
+    /**
+     * Periodically disconnects stalled clients of all roots, see {@link ChangeStream#disconnectSlowSubscribers()}.
+     */
+    private final ScheduledExecutorService watchdog;
+
+    private final long timeoutMillis;
+
+    /**
+     * Constructs the controller and registers a change stream as change listener of the message source of every root.
+     *
+     * @param registry           the message sources of all translation roots
+     * @param objectMapper       serializes the changes
+     * @param historySize        the number of recent changes kept per root for clients to resume from
+     * @param bufferSize         the number of events queued per client before it is disconnected as too slow
+     * @param threads            the number of threads writing to the clients
+     * @param timeoutMillis      the time after which a stream is closed and the client reconnects, {@code 0} for none
+     * @param writeTimeoutMillis the time a write to a client may block before the client is disconnected
+     * @param maxQueueAgeMillis  the time an event may wait in a client's queue before the client is disconnected
+     */
+    public ChangeStreamController(EtcdMessageSourceRegistry registry, ObjectMapper objectMapper,
+                                  @Value("${etcd.server.changes.historySize:10000}") int historySize,
+                                  @Value("${etcd.server.changes.bufferSize:256}") int bufferSize,
+                                  @Value("${etcd.server.changes.threads:16}") int threads,
+                                  @Value("${etcd.server.changes.timeoutMillis:1800000}") long timeoutMillis,
+                                  @Value("${etcd.server.changes.writeTimeoutMillis:10000}") long writeTimeoutMillis,
+                                  @Value("${etcd.server.changes.maxQueueAgeMillis:30000}") long maxQueueAgeMillis) {
+        this.registry = registry;
+        this.timeoutMillis = timeoutMillis;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("etcd-changes-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+        CustomizableThreadFactory watchdogThreadFactory = new CustomizableThreadFactory("etcd-changes-watchdog-");
+        watchdogThreadFactory.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogThreadFactory);
+        for (String root : registry.getRootNames()) {
+            EtcdMessageSource messageSource = registry.get(root);
+            ChangeStream stream = new ChangeStream(objectMapper, executor, historySize, bufferSize,
+                    writeTimeoutMillis, maxQueueAgeMillis);
+            MessageChangeSubscription subscription = messageSource.addChangeListener(MessageChangeFilter.all(), stream::publish);
+            stream.startAt(subscription.getStartRevision());
+            streams.put(root, stream);
+            subscriptions.add(subscription);
+        }
+        long checkIntervalMillis = Math.max(10, Math.min(writeTimeoutMillis, maxQueueAgeMillis) / 4);
+        watchdog.scheduleWithFixedDelay(() -> streams.values().forEach(ChangeStream::disconnectSlowSubscribers),
+                checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @GetMapping(path = "${etcd.server.export.path:/translations}/{locale}/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @PathVariable(name = "locale") String locale,
+            @RequestParam(name = "prefix", defaultValue = "") String prefix,
+            @RequestParam(name = "root", defaultValue = EtcdMessageSourceRegistry.DEFAULT_ROOT) String root,
+            @RequestParam(name = "fromRevision", defaultValue = "-1") long fromRevision,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        EtcdMessageSource messageSource = registry.get(root);
+        ChangeStream stream = streams.get(root);
+        if (messageSource == null || stream == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown translation root: " + root);
+        }
+        Locale requestedLocale;
+        try {
+            requestedLocale = StringUtils.parseLocale(locale);
+        } catch (IllegalArgumentException e) {
+            requestedLocale = null;
+        }
+        if (requestedLocale == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid locale: " + locale);
+        }
+        if (StringUtils.hasText(lastEventId)) {
+            try {
+                fromRevision = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Last-Event-ID: " + lastEventId);
+            }
+        }
+        Locale servedLocale = messageSource.getServedLocale(requestedLocale);
+        SseEmitter emitter = new SseEmitter(timeoutMillis > 0 ? timeoutMillis : -1);
+        stream.subscribe(servedLocale != null ? servedLocale : requestedLocale, prefix, fromRevision, emitter);
+        return emitter;
+    }
+
+    /**
+     * @param root the name of the translation root
+     * @return the number of clients streaming changes of the root
+     */
+    public int getSubscriberCount(String root) {
+        ChangeStream stream = streams.get(root);
+        return stream != null ? stream.getSubscriberCount() : 0;
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscriptions.forEach(MessageChangeSubscription::close);
+        watchdog.shutdownNow();
+        streams.values().forEach(ChangeStream::close);
+        executor.shutdown();
+    }
+}
@@ -1,33 +1,124 @@
-//package io.etcd.springi18n.controller;
-//
-//import io.etcd.springi18n.service.EtcdClient;
-//import io.etcd.springi18n.service.EtcdMessageSource;
-//import org.slf4j.Logger;
-//import org.slf4j.LoggerFactory;
-//import org.springframework.beans.factory.annotation.Autowired;
-//import org.springframework.web.bind.annotation.*;
-//
-//import java.util.List;
-//import java.util.Locale;
-//
-//@RestController
-//public class TranslatorController {
-//    private final Logger log = LoggerFactory.getLogger(TranslatorController.class);
-//
-//    @Autowired
-//    private EtcdMessageSource etcdMessageSource;
-//
-//    @GetMapping("/translate/{key}")
-//    public String viewProperties(
-//            @PathVariable(name = "key") String key,
-//            @RequestParam(name = "args", defaultValue = "") List<String> args
-//    ) throws Exception {
-//
-//        String message = "";
-//
-//        log.info("Got request for sending message to: ");
-//        message = etcdMessageSource.getMessage("service.greet.hello", null, new Locale("en"));
-//        log.info("got localized message: " + message);
-//        return message;
-//    }
-//}
+package io.etcd.springi18n.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.etcd.springi18n.service.EtcdMessageSource;
+import io.etcd.springi18n.service.EtcdMessageSourceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Locale;
+
+/**
+ * Exports the messages of a locale as a JSON object of messages by code, e.g. for a single page application.
+ *
+ * <p>{@code GET /translations/{locale}} returns all messages of the locale, {@code ?prefix=service.greet.} only a
+ * namespace of it and {@code ?root=billing} those of another translation root. The locale is matched like a lookup
+ * matches it, so {@code en-US} falls back to {@code en}. The messages are returned as stored, without formatting.</p>
+ *
+ * <p>The JSON and its gzip-compressed form are built once per revision, see {@link BundleExportCache}. Responses
+ * carry a weak ETag of the exported JSON and must be revalidated, a request with a matching {@code If-None-Match}
+ * is answered with {@code 304 Not Modified} from the cached bundle, also after revisions that changed other
+ * messages.</p>
+ *
+ * <p>Only served if {@code etcd.server.export.enabled} is {@code true}.</p>
+ */
+@RestController
+@ConditionalOnProperty(name = "etcd.server.export.enabled", havingValue = "true")
+public class TranslatorController {
+
+    /**
+     * Default maximum number of exported bundles kept.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final EtcdMessageSourceRegistry registry;
+
+    private final BundleExportCache cache;
+
+    /**
+     * Constructs the controller.
+     *
+     * @param registry     the message sources of all translation roots
+     * @param objectMapper serializes the messages
+     * @param cacheSize    the maximum number of exported bundles kept
+     */
+    public TranslatorController(EtcdMessageSourceRegistry registry, ObjectMapper objectMapper,
+                                @Value("${etcd.server.export.cacheSize:" + DEFAULT_CACHE_SIZE + "}") int cacheSize) {
+        this.registry = registry;
+        this.cache = new BundleExportCache(objectMapper, cacheSize);
+    }
+
+    @GetMapping("${etcd.server.export.path:/translations}/{locale}")
+    public ResponseEntity<byte[]> exportMessages(
+            @PathVariable(name = "locale") String locale,
+            @RequestParam(name = "prefix", defaultValue = "") String prefix,
+            @RequestParam(name = "root", defaultValue = EtcdMessageSourceRegistry.DEFAULT_ROOT) String root,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request
+    ) {
+        EtcdMessageSource messageSource = registry.get(root);
+        if (messageSource == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        Locale parsedLocale;
+        try {
+            parsedLocale = StringUtils.parseLocale(locale);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (parsedLocale == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        BundleExportCache.ExportedBundle bundle = cache.get(root, messageSource, parsedLocale, prefix);
+        if (request.checkNotModified(bundle.etag())) {
+            return null;
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(bundle.etag())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? bundle.gzipped() : bundle.json());
+    }
+
+    /**
+     * @return whether the {@code Accept-Encoding} header allows gzip, i.e. lists it without {@code q=0}
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") && parameter.substring(2).trim().matches("0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,252 @@
+package io.etcd.springi18n.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable mapping of message codes to dense ordinals, shared by all heap-stored locales of a {@link MessageSnapshot}.
+ * Every code String is held once per snapshot instead of once per locale, and a lookup hashes the code once and then
+ * indexes the arrays of the locale.
+ *
+ * <p>Ordinals are only ever appended: a dictionary extended with new codes by a {@link Builder} keeps the ordinals of
+ * its base, so arrays indexed by the base's ordinals stay valid. Codes that are no longer used by any locale stay in
+ * the dictionary until the next full reload builds a new one, or until {@link MessageSnapshot#withEvents} compacts it
+ * after enough removals.</p>
+ *
+ * <p>Dictionaries extended one from the other share a lineage, the size of its largest dictionary. Only a dictionary
+ * at the tip of its lineage passes it on, one extended from an older dictionary starts a lineage of its own, so a
+ * lineage is a single chain and {@link #extendsDictionary} is a size comparison. Such a branch isn't recognised as
+ * extending its base, which only costs the bundles moving to it a copy of their arrays.</p>
+ *
+ * <p>The ordinals sorted by code are computed once per dictionary for prefix queries. An extended dictionary merges
+ * its added codes into the sorted ordinals of its base instead of sorting all codes again.</p>
+ */
+final class CodeDictionary {
+
+    static final CodeDictionary EMPTY = new CodeDictionary(new String[0], 0, newTable(0), null, new AtomicInteger());
+
+    private static final int EMPTY_SLOT = -1;
+
+    /**
+     * Codes by ordinal, only the first {@link #size} entries are used.
+     */
+    private final String[] codes;
+
+    private final int size;
+
+    /**
+     * Open-addressing hash table of ordinals, {@link #EMPTY_SLOT} for free slots, the length is a power of two.
+     */
+    private final int[] table;
+
+    /**
+     * Size of the largest dictionary of this lineage, shared by all dictionaries of the lineage.
+     */
+    private final AtomicInteger lineage;
+
+    /**
+     * The dictionary this one was extended from, dropped once {@link #sortedOrdinals} is computed.
+     */
+    private volatile CodeDictionary base;
+
+    /**
+     * Ordinals in the order of their codes, computed on first use. Racing threads compute the same result.
+     */
+    private volatile int[] sortedOrdinals;
+
+    private CodeDictionary(String[] codes, int size, int[] table, CodeDictionary base, AtomicInteger lineage) {
+        this.codes = codes;
+        this.size = size;
+        this.table = table;
+        this.base = base;
+        this.lineage = lineage;
+    }
+
+    /**
+     * Creates a dictionary of the given codes, ordinals are assigned in iteration order.
+     *
+     * @param codes the codes, duplicates are added once
+     * @return the dictionary
+     */
+    static CodeDictionary of(Collection<String> codes) {
+        Builder builder = new Builder(EMPTY, codes.size());
+        codes.forEach(builder::add);
+        return builder.build();
+    }
+
+    private static int[] newTable(int expectedSize) {
+        int[] table = new int[Integer.highestOneBit(Math.max(2, expectedSize * 2 - 1)) << 1];
+        Arrays.fill(table, EMPTY_SLOT);
+        return table;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @param code the message code
+     * @return the ordinal of the code, or {@code -1} if it is unknown
+     */
+    int ordinalOf(String code) {
+        int mask = table.length - 1;
+        for (int slot = spread(code.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int ordinal = table[slot];
+            if (ordinal == EMPTY_SLOT || codes[ordinal].equals(code)) {
+                return ordinal;
+            }
+        }
+    }
+
+    String codeAt(int ordinal) {
+        return codes[ordinal];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Calls {@code action} with the ordinal of every code starting with {@code prefix}, in the order of the codes.
+     * Takes a binary search plus the number of matching codes.
+     *
+     * @param prefix the code prefix, the empty string matches every code
+     * @param action receives the ordinals
+     */
+    void forEachOrdinalWithPrefix(String prefix, IntConsumer action) {
+        int[] sorted = sortedOrdinals();
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (codes[sorted[middle]].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < sorted.length && codes[sorted[i]].startsWith(prefix); i++) {
+            action.accept(sorted[i]);
+        }
+    }
+
+    /**
+     * @return the ordinals in the order of their codes
+     */
+    int[] sortedOrdinals() {
+        int[] result = sortedOrdinals;
+        if (result == null) {
+            result = sortOrdinals();
+            sortedOrdinals = result;
+            base = null;
+        }
+        return result;
+    }
+
+    private int[] sortOrdinals() {
+        CodeDictionary from = base;
+        int[] baseSorted = from != null ? from.sortedOrdinals : null;
+        int sortedCount = baseSorted != null ? baseSorted.length : 0;
+
+        String[] added = Arrays.copyOfRange(codes, sortedCount, size);
+        Arrays.sort(added);
+        int[] result = new int[size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            if (j == added.length || (i < sortedCount && codes[baseSorted[i]].compareTo(added[j]) < 0)) {
+                result[k] = baseSorted[i++];
+            } else {
+                result[k] = ordinalOf(added[j++]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether this dictionary assigns the same ordinals to all codes of {@code base}, i.e. it was built by extending it,
+     * directly or over several steps. Dictionaries with equal codes that were built independently don't extend each
+     * other.
+     *
+     * @param base the dictionary to compare with
+     * @return {@code true} if arrays indexed by the ordinals of {@code base} are valid for this dictionary
+     */
+    boolean extendsDictionary(CodeDictionary base) {
+        return base == this || base.size == 0 || (base.lineage == lineage && base.size <= size);
+    }
+
+    /**
+     * Builds a dictionary extending a base dictionary. Not thread-safe.
+     */
+    static final class Builder {
+
+        private final CodeDictionary base;
+
+        private String[] codes;
+
+        private int size;
+
+        private int[] table;
+
+        Builder(CodeDictionary base, int expectedAdditions) {
+            this.base = base;
+            this.size = base.size;
+            this.codes = Arrays.copyOf(base.codes, Math.max(base.size + expectedAdditions, 1));
+            this.table = base.table.length >= 2 * (base.size + expectedAdditions) ? base.table.clone() : null;
+            if (table == null) {
+                rehash(base.size + expectedAdditions);
+            }
+        }
+
+        /**
+         * Adds a code unless it is known already.
+         *
+         * @param code the code
+         * @return the ordinal of the code
+         */
+        int add(String code) {
+            int mask = table.length - 1;
+            int slot = spread(code.hashCode()) & mask;
+            for (int ordinal = table[slot]; ordinal != EMPTY_SLOT; ordinal = table[slot]) {
+                if (codes[ordinal].equals(code)) {
+                    return ordinal;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            codes[size] = code;
+            table[slot] = size;
+            if (++size * 2 > table.length) {
+                rehash(size);
+            }
+            return size - 1;
+        }
+
+        private void rehash(int expectedSize) {
+            table = newTable(expectedSize);
+            int mask = table.length - 1;
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                int slot = spread(codes[ordinal].hashCode()) & mask;
+                while (table[slot] != EMPTY_SLOT) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = ordinal;
+            }
+        }
+
+        /**
+         * @return the dictionary, the base itself if no code was added
+         */
+        CodeDictionary build() {
+            if (size == base.size) {
+                return base;
+            }
+            AtomicInteger lineage = base.lineage.compareAndSet(base.size, size) ? base.lineage : new AtomicInteger(size);
+            return new CodeDictionary(codes, size, table, base, lineage);
+        }
+    }
+}
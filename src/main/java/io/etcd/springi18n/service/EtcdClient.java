@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public interface EtcdClient {
@@ -29,6 +30,37 @@ public interface EtcdClient {
      */
     CompletableFuture<Map<String, String>> getByKeyAsync(String key, boolean isPrefix);
 
+    /**
+     * Retrieves the key-value pairs associated with the specified key asynchronously, together with the
+     * revision they were read at. Unlike {@link #getByKeyAsync(String, boolean)} errors are not swallowed.
+     *
+     * @param key      the key whose associated key-value pairs are to be returned
+     * @param isPrefix whether the key is a prefix
+     * @param revision the revision to read at, or {@code 0} for the latest revision
+     * @return a {@link CompletableFuture} that will be completed with the key-value pairs and their revision
+     */
+    CompletableFuture<EtcdKeyValues> getByKeyWithRevisionAsync(String key, boolean isPrefix, long revision);
+
+    /**
+     * Streams the key-value pairs under the specified key prefix in key order, reading at most {@code pageSize}
+     * pairs per range request. Every page is read at the same revision and handed to {@code kvConsumer} before the
+     * next one is requested, so the pairs are never held all at once.
+     *
+     * <p>The default implementation reads the whole prefix in one request.</p>
+     *
+     * @param key        the key prefix whose key-value pairs are to be streamed
+     * @param revision   the revision to read at, or {@code 0} for the latest revision
+     * @param pageSize   the maximum number of pairs per range request
+     * @param kvConsumer the consumer of every key and value, called from one thread at a time in key order
+     * @return a {@link CompletableFuture} that will be completed with the revision the pairs were read at
+     */
+    default CompletableFuture<Long> getByKeyPrefixPagedAsync(String key, long revision, int pageSize, BiConsumer<String, String> kvConsumer) {
+        return getByKeyWithRevisionAsync(key, true, revision).thenApply(keyValues -> {
+            keyValues.kvPairs().forEach(kvConsumer);
+            return keyValues.revision();
+        });
+    }
+
     /**
      * Retrieves the key-value pairs associated with the specified key prefix asynchronously.
      *
@@ -45,7 +77,40 @@ public interface EtcdClient {
      */
     void watchByKeyPrefix(String keyToWatch, Consumer<WatchResponse> consumer);
 
+    /**
+     * Watches for changes on the specified key prefix starting at the given revision, replacing an earlier watch
+     * of the same prefix. Watches of different prefixes are independent of each other, even if they share one
+     * etcd watch.
+     * Errors the underlying client can't recover from itself, e.g. a compacted start revision, are passed to
+     * {@code onError} and end the watch.
+     *
+     * @param keyToWatch   the key prefix to watch
+     * @param fromRevision the first revision to receive events for, or {@code 0} to start at the current revision
+     * @param consumer     the consumer to process the watch response
+     * @param onError      the consumer to handle the error that ended the watch
+     */
+    void watchByKeyPrefix(String keyToWatch, long fromRevision, Consumer<WatchResponse> consumer, Consumer<Throwable> onError);
+
     void testWatchAndGet();
 
+    /**
+     * Stops all watches.
+     */
     void stopWatcher();
+
+    /**
+     * Stops the watch of the specified key prefix, watches of other prefixes keep running.
+     *
+     * @param keyToWatch the key prefix the watch was started for
+     */
+    default void stopWatcher(String keyToWatch) {
+        stopWatcher();
+    }
+
+    /**
+     * Stops all watches and releases the connections to etcd. Called by Spring on shutdown of a client bean.
+     */
+    default void close() {
+        stopWatcher();
+    }
 }
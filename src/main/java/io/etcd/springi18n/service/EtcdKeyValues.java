@@ -0,0 +1,12 @@
+package io.etcd.springi18n.service;
+
+import java.util.Map;
+
+/**
+ * Key-value pairs read from etcd together with the header revision of the response they were read at.
+ *
+ * @param revision the etcd header revision of the range response
+ * @param kvPairs  the key-value pairs found under the requested key
+ */
+public record EtcdKeyValues(long revision, Map<String, String> kvPairs) {
+}
@@ -1,17 +1,29 @@
 package io.etcd.springi18n.service;
 
 import io.etcd.springi18n.service.EtcdClient;
+import io.etcd.jetcd.common.exception.CompactedException;
 import io.etcd.jetcd.watch.WatchEvent;
 import io.etcd.jetcd.watch.WatchResponse;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.MessageSource;
+import org.springframework.context.MessageSourceResolvable;
 import org.springframework.context.support.AbstractMessageSource;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -19,9 +31,68 @@ import java.util.stream.Collectors;
  * EtcdMessageSource is responsible for managing translation resources
  * fetched from an etcd key-value store. It watches for changes in the
  * translation keys and updates the translation cache accordingly.
+ *
+ * <p>All loaded messages live in an immutable {@link MessageSnapshot} which is replaced as a whole on every reload
+ * or batch of watch events. Lookups read the current snapshot once and never take a lock.</p>
  */
 @Slf4j
 public class EtcdMessageSource extends AbstractMessageSource {
+    /**
+     * Delay before the first attempt to re-establish a failed watch or resync, doubled on every further attempt.
+     */
+    private static final long WATCH_RETRY_INITIAL_DELAY_MILLIS = 500;
+
+    /**
+     * Upper bound of the delay between attempts to re-establish a failed watch or resync.
+     */
+    private static final long WATCH_RETRY_MAX_DELAY_MILLIS = 30_000;
+
+    /**
+     * Default time without further changes before a reload triggered by the watch starts.
+     */
+    private static final long DEFAULT_RELOAD_QUIET_PERIOD_MILLIS = 500;
+
+    /**
+     * Default upper bound for how long a reload triggered by the watch is delayed by further changes.
+     */
+    private static final long DEFAULT_RELOAD_MAX_DELAY_MILLIS = 5_000;
+
+    /**
+     * Default deadline of a full load, from reading the locales key until every locale dir is read.
+     */
+    private static final long DEFAULT_LOAD_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Default time after a watch update before the snapshot file is rewritten, further updates meanwhile join it.
+     */
+    private static final long DEFAULT_SNAPSHOT_FILE_WRITE_INTERVAL_MILLIS = 60_000;
+
+    /**
+     * Default time a lookup waits for the messages of a locale loaded on first use before falling back.
+     */
+    private static final long DEFAULT_FIRST_USE_TIMEOUT_MILLIS = 200;
+
+    /**
+     * Time a failed load of a locale on first use is remembered, lookups in between fail fast instead of
+     * each waiting for another attempt.
+     */
+    private static final long LOCALE_LOAD_RETRY_DELAY_MILLIS = 1_000;
+
+    /**
+     * Default sampling of the missing code counts, one in this many misses is counted.
+     */
+    private static final int DEFAULT_MISSING_CODE_SAMPLE_EVERY = 16;
+
+    /**
+     * Default time a lookup waits for the single-key read of a missing code.
+     */
+    private static final long DEFAULT_READ_THROUGH_TIMEOUT_MILLIS = 100;
+
+    /**
+     * Maximum number of missing codes read from etcd per snapshot.
+     */
+    private static final int READ_THROUGH_MAX_CODES = 10_000;
+
     /**
      * Executor service for long-running etcd tasks.
      */
@@ -33,24 +104,35 @@ public class EtcdMessageSource extends AbstractMessageSource {
     private final EtcdClient client;
 
     /**
-     * Set of available locales for translations.
+     * The currently published messages, replaced with a single volatile write.
+     */
+    private volatile MessageSnapshot snapshot = MessageSnapshot.EMPTY;
+
+    /**
+     * Guards writers of {@link #snapshot}, readers never take it.
      */
-    private final Set<Locale> availableLocales = new HashSet<>();
+    private final Object snapshotWriteLock = new Object();
 
     /**
-     * Map for storing base directories for each locale.
+     * Number of reloads started but not yet published, guarded by {@link #snapshotWriteLock}.
      */
-    private final Map<Locale, String> localeWiseBaseDirs = new ConcurrentHashMap<>();
+    private int reloadsInFlight;
 
     /**
-     * Cache for storing translation messages, organized by locale.
+     * Revision of the last published full load, guarded by {@link #snapshotWriteLock}.
      */
-    private final Map<Locale, Map<String, String>> messagesCache = new ConcurrentHashMap<>();
+    private long lastLoadedRevision;
+
+    /**
+     * Watch events applied while a reload was in flight, replayed on top of the reloaded snapshot
+     * so they are not lost when it is published. Guarded by {@link #snapshotWriteLock}.
+     */
+    private final List<WatchEvent> eventsDuringReload = new ArrayList<>();
+
     /**
-     * Cache to hold already generated MessageFormats per message code.
+     * Creates the cached MessageFormats, kept in a field so lookups don't allocate a method reference per call.
      */
-    private final ConcurrentMap<String, Map<Locale, MessageFormat>> cachedMessageFormats =
-            new ConcurrentHashMap<>();
+    private final BiFunction<String, Locale, MessageFormat> messageFormatFactory = this::createMessageFormat;
 
     /**
      * Root directory for messages or translations.
@@ -71,17 +153,202 @@ public class EtcdMessageSource extends AbstractMessageSource {
      * Default locales string, used if localesKey is not set.
      */
     private final String defaultLocalesStr = "bn,en";
-    //for demo purposes
-    AtomicInteger atomicInteger = new AtomicInteger(0);
     /**
      * Flag indicating whether to use an asynchronous approach for loading messages.
      */
     private boolean loadMessageWithAsyncApproach = true;
 
+    /**
+     * Flag indicating whether watch events are applied one key at a time instead of reloading every locale.
+     * A full reload is still triggered when the locales key itself changes.
+     */
+    private boolean applyWatchEventsIncrementally = true;
+
+    /**
+     * Maximum number of keys per range request when loading a locale dir, {@code 0} reads each dir in one request.
+     */
+    private volatile int loadPageSize;
+
+    /**
+     * Flag indicating whether loaded messages are stored UTF-8 encoded outside the heap instead of as Java strings.
+     */
+    private volatile boolean offHeapStorage;
+
+    /**
+     * Coalesces the full reloads triggered by the watch, so a burst of changes causes at most one reload in flight
+     * and one pending behind it.
+     */
+    private volatile ReloadScheduler reloadScheduler;
+
+    /**
+     * Meters of lookups, reloads and the watch, records nothing until {@link #setMetrics} is called.
+     */
+    private EtcdTranslatorMetrics metrics = EtcdTranslatorMetrics.noop();
+
+    /**
+     * Locales a message count gauge is registered for.
+     */
+    private final Set<Locale> meteredLocales = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Highest etcd revision seen in any load or watch response, the revision lag is measured against it.
+     */
+    private final AtomicLong latestEtcdRevision = new AtomicLong();
+
+    /**
+     * Local file the last loaded snapshot is written to and restored from on start, {@code null} if disabled.
+     */
+    private volatile Path snapshotFile;
+
+    /**
+     * Guards writes of {@link #snapshotFile}.
+     */
+    private final Object snapshotFileLock = new Object();
+
+    /**
+     * Revision of the last snapshot written to {@link #snapshotFile}, guarded by {@link #snapshotFileLock}.
+     */
+    private long snapshotFileRevision;
+
+    /**
+     * Time in milliseconds after a watch update before the snapshot file is rewritten, {@code 0} to only write it
+     * after full loads and on shutdown.
+     */
+    private volatile long snapshotFileWriteIntervalMillis = DEFAULT_SNAPSHOT_FILE_WRITE_INTERVAL_MILLIS;
+
+    /**
+     * Set while a write of the snapshot file after watch updates is scheduled.
+     */
+    private final AtomicBoolean snapshotFileWriteScheduled = new AtomicBoolean();
+
+    /**
+     * Set once {@link #start()} was called, so the initial load and watch are only started once.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Consumer of the watch responses, shared by every re-established watch.
+     */
+    private final Consumer<WatchResponse> watchConsumer = generateConsumer();
+
+    /**
+     * Number of consecutive failed attempts to watch or resync, drives the retry backoff.
+     */
+    private final AtomicInteger watchRetryAttempts = new AtomicInteger();
+
+    /**
+     * Set once the watcher is stopped, so a pending retry doesn't start it again.
+     */
+    private volatile boolean watchStopped;
+
+    /**
+     * Deadline of a full load in milliseconds, locales not read by then keep the messages they had before.
+     */
+    private volatile long loadTimeoutMillis = DEFAULT_LOAD_TIMEOUT_MILLIS;
+
+    /**
+     * Time in milliseconds a lookup waits for the messages of a locale loaded on first use.
+     */
+    private volatile long firstUseTimeoutMillis = DEFAULT_FIRST_USE_TIMEOUT_MILLIS;
+
+    /**
+     * Whether {@link #start()} blocks until the first messages are published or the load timeout passed.
+     */
+    private boolean waitForInitialLoad;
+
+    /**
+     * Whether {@link #start()} fails if not all locales are loaded by the end of the wait for the initial load.
+     */
+    private boolean failOnMissingMessages;
+
+    /**
+     * Completed once the first snapshot is published, restored from the snapshot file or loaded from etcd.
+     */
+    private final CompletableFuture<Void> initialLoad = new CompletableFuture<>();
+
+    /**
+     * Locales the last published full load could not read and that have no earlier messages either,
+     * so they are served empty. Replaced under {@link #snapshotWriteLock}.
+     */
+    private volatile Set<Locale> missingLocales = Set.of();
+
+    /**
+     * Number of consecutive loads with missing locales, drives the backoff of reloading them.
+     */
+    private final AtomicInteger missingLocalesRetryAttempts = new AtomicInteger();
+
+    /**
+     * Whether a locale's messages are only loaded on its first lookup instead of with every full load.
+     */
+    private volatile boolean lazyLocaleLoading;
+
+    /**
+     * Maximum number of locales kept loaded with lazy locale loading, {@code 0} for no limit.
+     */
+    private volatile int maxLoadedLocales;
+
+    /**
+     * In-flight and recently failed loads of locales on first use, so concurrent first lookups share one fetch.
+     */
+    private final ConcurrentMap<Locale, CompletableFuture<LocaleBundle>> localeLoads = new ConcurrentHashMap<>();
+
+    /**
+     * Maximum number of missing codes remembered per snapshot, {@code 0}, the default, disables the cache.
+     */
+    private volatile int missingCodeCacheSize;
+
+    /**
+     * Codes of the current snapshot that resolved to no message, replaced on the first miss after the snapshot changed.
+     */
+    private volatile MissingCodeCache missingCodeCache = new MissingCodeCache(MessageSnapshot.EMPTY, 0);
+
+    /**
+     * Sampled counts of the lookups of missing codes.
+     */
+    private volatile MissingCodeTracker missingCodeTracker = new MissingCodeTracker(DEFAULT_MISSING_CODE_SAMPLE_EVERY);
+
+    /**
+     * Whether codes missing in the snapshot are read from etcd, see {@link #setReadThrough(boolean)}.
+     */
+    private volatile boolean readThrough;
+
+    private volatile long readThroughTimeoutMillis = DEFAULT_READ_THROUGH_TIMEOUT_MILLIS;
+
+    /**
+     * Single-key reads of the codes missing in the current snapshot, replaced on the first read after the snapshot
+     * changed.
+     */
+    private volatile ReadThroughCache readThroughCache = new ReadThroughCache(MessageSnapshot.EMPTY, 0);
+
+    /**
+     * The registered change listeners. Changes are only computed while there is one, and published to them under
+     * {@link #snapshotWriteLock}, so they are queued in revision order.
+     */
+    private final List<MessageChangeSubscription> changeSubscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Runs the change listeners, {@code null} until set or the first listener is added without one.
+     * Written under {@link #snapshotWriteLock}.
+     */
+    private volatile Executor changeListenerExecutor;
+
+    /**
+     * The cached pool of daemon threads created for the listeners if no executor was set, shut down with the watcher.
+     * Guarded by {@link #snapshotWriteLock}.
+     */
+    private ExecutorService defaultChangeListenerExecutor;
+
+    /**
+     * Advanced on every load of a locale on first use, lookups mark their bundle with it. The loaded locale used
+     * in the oldest epoch is evicted first. Written under {@link #snapshotWriteLock}.
+     */
+    private volatile long usageEpoch;
+
     /**
      * Constructs an instance of EtcdMessageSource.
      *
-     * <p>This constructor initializes the EtcdMessageSource with the specified parameters to fetch and watch translation resources from an etcd key-value store.</p>
+     * <p>This constructor initializes the EtcdMessageSource with the specified parameters to fetch and watch translation resources from an etcd key-value store.
+     * Nothing is fetched until {@link #start()} is called.</p>
      *
      * @param client                                 the {@link EtcdClient} interface to interact with etcd for key-value fetching and watching through a watcher
      * @param baseDir                                the root directory in etcd where message or translation resources are stored
@@ -97,187 +364,1385 @@ public class EtcdMessageSource extends AbstractMessageSource {
         this.baseDir = baseDir;
         this.etcdLongBlockingThreadPoolTaskExecutor = etcdLongBlockingThreadPoolTaskExecutor;
         this.loadMessageWithAsyncApproach = loadMessageWithAsyncApproach;
-
-        initiateLoadingMessagesAsync();
+        setReloadDebounce(DEFAULT_RELOAD_QUIET_PERIOD_MILLIS, DEFAULT_RELOAD_MAX_DELAY_MILLIS);
     }
 
+    /**
+     * Starts loading the messages and watches for changes once the initial load is done. Called by Spring after
+     * all setters are applied, call it yourself when creating the message source outside a Spring context.
+     *
+     * <p>Returns right away unless {@link #setWaitForInitialLoad(boolean) waitForInitialLoad} is set, use
+     * {@link #isReady()} to tell when all locales are served then.</p>
+     *
+     * @throws IllegalStateException if {@link #setFailOnMissingMessages(boolean) failOnMissingMessages} is set and not
+     *                               all locales were loaded within the load timeout
+     */
     @PostConstruct
-    private void startWatching() {
-        final Consumer<WatchResponse> consumer = generateConsumer();
-        log.info("Will start the watcher on dir: " + baseDirToWatch);
-        client.watchByKeyPrefix(baseDirToWatch, consumer);
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        if (restoreSnapshotFile()) {
+            log.info("Will catch up from the snapshot file through the watcher on dir: " + baseDirToWatch);
+            watchFromAppliedRevision();
+            return;
+        }
+        log.info("Will start the watcher on dir: " + baseDirToWatch + " once the initial load is done");
+        reloadScheduler.reloadNow().whenComplete((published, throwable) -> {
+            if (Boolean.TRUE.equals(published)) {
+                watchFromAppliedRevision();
+            } else {
+                scheduleWatchRetry(this::resync);
+            }
+        });
+        if (waitForInitialLoad) {
+            awaitInitialLoad();
+        }
         //for demo purposes
 //        client.testWatchAndGet();
     }
 
-    private Consumer<WatchResponse> generateConsumer() {
-        return watchResponse -> {
-            boolean anyMatch = watchResponse.getEvents()
-                    .stream()
-                    .anyMatch(watchEvent -> Objects.equals(watchEvent.getEventType(), WatchEvent.EventType.PUT)
-                            || Objects.equals(watchEvent.getEventType(), WatchEvent.EventType.DELETE));
-
-            if (anyMatch) {
-                log.info("reloading messages for");
-                if (loadMessageWithAsyncApproach) {
-                    reloadMessagesAsync();
-                } else {
-                    CompletableFuture.runAsync(this::reloadMessages, etcdLongBlockingThreadPoolTaskExecutor);
-                }
-
-            }
-        };
+    /**
+     * Waits up to the load timeout for the first snapshot to be published, failing if configured so and
+     * not all locales are served by then.
+     */
+    private void awaitInitialLoad() {
+        try {
+            initialLoad.get(loadTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.warn("Messages of dir: " + baseDir + " were not loaded within " + loadTimeoutMillis + " ms, will keep loading in the background");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (isReady() || !failOnMissingMessages) {
+            return;
+        }
+        stopWatching();
+        throw new IllegalStateException(initialLoad.isDone()
+                ? "Messages of dir: " + baseDir + " are missing for locales: " + missingLocales
+                : "Messages of dir: " + baseDir + " were not loaded within " + loadTimeoutMillis + " ms");
     }
 
-    @PreDestroy
-    private void stopWatching() {
-        log.info("Will stop the watcher on dir: " + baseDir);
-        client.stopWatcher();
+    /**
+     * Whether the messages of every locale are served: the first load is published and no locale is missing.
+     * Locales missing from a load are reloaded with backoff until they are read.
+     *
+     * @return {@code true} once every locale has messages
+     */
+    public boolean isReady() {
+        return initialLoad.isDone() && missingLocales.isEmpty();
     }
 
-    public void reloadMessagesAsync() {
-        log.info("Reloading messages with async approach will clear all cache first");
-        availableLocales.clear();
-        localeWiseBaseDirs.clear();
-        cachedMessageFormats.clear();
-        initiateLoadingMessagesAsync();
+    /**
+     * Returns the locales the last full load could not read that have no earlier messages to serve either.
+     *
+     * @return an unmodifiable set of locales, empty before the first load is published
+     */
+    public Set<Locale> getMissingLocales() {
+        return missingLocales;
     }
 
-    public void reloadMessages() {
-        log.info("Reloading messages with synch approach will clear all cache first");
-        availableLocales.clear();
-        localeWiseBaseDirs.clear();
-        cachedMessageFormats.clear();
-        initiateLoadingMessages();
-    }
-
-    private void initiateLoadingMessagesAsync() {
-        loadAvailableLocalsAsync()
-                .thenRunAsync(this::loadLocalWiseBaseDirs, etcdLongBlockingThreadPoolTaskExecutor)
-                .whenCompleteAsync((unused, throwable) -> {
-                    if (throwable == null) {
-                        loadMessagesAsync();
-//                        loadMessages();
-                    }
-                }, etcdLongBlockingThreadPoolTaskExecutor);
+    /**
+     * Publishes the snapshot stored in {@link #snapshotFile}, if there is a usable one.
+     *
+     * @return whether a snapshot was restored
+     */
+    private boolean restoreSnapshotFile() {
+        Path path = snapshotFile;
+        if (path == null) {
+            return false;
+        }
+        try {
+            MessageSnapshot restored = SnapshotFile.read(path, baseDir, localesKey, offHeapStorage);
+            if (restored == null) {
+                return false;
+            }
+            if (!lazyLocaleLoading && restored.getBundles().values().stream().anyMatch(bundle -> !bundle.isLoaded())) {
+                log.info("snapshot file: " + path + " was written with lazy locale loading, will load all locales from etcd");
+                return false;
+            }
+            beginReload();
+            if (publishReload(restored)) {
+                synchronized (snapshotFileLock) {
+                    snapshotFileRevision = restored.getRevision();
+                }
+                log.info("restored messages from snapshot file: " + path + " at revision: " + restored.getRevision());
+                return true;
+            }
+        } catch (IOException e) {
+            log.warn("Could not restore messages from snapshot file: " + path + ", will load them from etcd", e);
+        }
+        return false;
     }
 
-    private CompletableFuture<Void> loadAvailableLocalsAsync() {
-        return client.getByKeyAsync(localesKey, false)
-                .thenAcceptAsync(this::loadLocales, etcdLongBlockingThreadPoolTaskExecutor);
+    /**
+     * Writes the given snapshot to {@link #snapshotFile} unless a newer one was written already.
+     *
+     * @param toWrite the snapshot to write
+     */
+    private void writeSnapshotFile(MessageSnapshot toWrite) {
+        Path path = snapshotFile;
+        if (path == null) {
+            return;
+        }
+        synchronized (snapshotFileLock) {
+            if (toWrite.getRevision() <= snapshotFileRevision) {
+                return;
+            }
+            try {
+                SnapshotFile.write(path, toWrite, baseDir, localesKey);
+                snapshotFileRevision = toWrite.getRevision();
+                log.info("wrote messages at revision: " + toWrite.getRevision() + " to snapshot file: " + path);
+            } catch (IOException e) {
+                log.warn("Could not write messages to snapshot file: " + path, e);
+            }
+        }
     }
 
-    private void loadMessagesAsync() {
-        localeWiseBaseDirs.forEach((locale, dir) -> {
-            client.getByKeyAsync(dir, true).whenCompleteAsync((kvPairs, throwable) -> {
-
-                if (!kvPairs.isEmpty()) {
-                    //first find the correct referenced local set as the key.
-                    final var l = messagesCache.keySet()
-                            .stream()
-                            .filter(cachedLocale -> Objects.equals(locale.getLanguage(), cachedLocale.getLanguage()))
-                            .findFirst()
-                            .orElse(null);
-
-                    if (l != null) {
-                        messagesCache.remove(l);
-                    }
-                    processAndSaveMessagesToCache(kvPairs, locale, dir);
-                    log.info("successfully loaded translations for locale: " + locale.getLanguage());
-                }
-            }, etcdLongBlockingThreadPoolTaskExecutor);
-        });
+    /**
+     * (Re-)establishes the watch right after the last applied revision, so nothing between the loaded
+     * snapshot or the last received event and the new watch is missed.
+     */
+    private void watchFromAppliedRevision() {
+        if (watchStopped) {
+            return;
+        }
+        long fromRevision = snapshot.getRevision() + 1;
+        log.info("Will start the watcher on dir: " + baseDirToWatch + " from revision: " + fromRevision);
+        client.watchByKeyPrefix(baseDirToWatch, fromRevision, watchConsumer, this::onWatchError);
     }
 
-    private void initiateLoadingMessages() {
-        loadAvailableLocales();
-        loadLocalWiseBaseDirs();
-        loadMessages();
+    /**
+     * Re-establishes a failed watch from the last applied revision with backoff. Only if etcd reports that
+     * revision as compacted the missed events are lost and a full resync is needed.
+     *
+     * @param throwable the error that ended the watch
+     */
+    private void onWatchError(Throwable throwable) {
+        if (watchStopped) {
+            return;
+        }
+        if (isCompacted(throwable)) {
+            log.warn("Revision " + (snapshot.getRevision() + 1) + " of dir: " + baseDirToWatch + " is compacted, will resync all messages");
+            resync();
+        } else {
+            log.warn("Watcher on dir: " + baseDirToWatch + " failed, will resume from revision: " + (snapshot.getRevision() + 1), throwable);
+            scheduleWatchRetry(this::watchFromAppliedRevision);
+        }
     }
 
-    private void loadAvailableLocales() {
-        Map<String, String> kvPairs = Map.of();
-
-        try {
-            kvPairs = client.getByKeyAsync(localesKey, false).get();
-        } catch (InterruptedException | ExecutionException e) {
-            errorMessageOnGettingKeyValue(localesKey, false, e);
+    private boolean isCompacted(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CompactedException) {
+                return true;
+            }
         }
-        loadLocales(kvPairs);
+        return false;
     }
 
-    private void loadLocales(Map<String, String> kvPairs) {
-        String locales = kvPairs.values().stream().findFirst().orElse(defaultLocalesStr);
-        Arrays.stream(locales.split(",")).forEach(lang -> availableLocales.add(new Locale(lang)));
+    /**
+     * Reloads every locale and watches from the reloaded revision, retried with backoff until a load succeeds.
+     */
+    private void resync() {
+        reloadScheduler.reloadNow().whenComplete((published, throwable) -> {
+            if (Boolean.TRUE.equals(published)) {
+                watchRetryAttempts.set(0);
+                watchFromAppliedRevision();
+            } else {
+                scheduleWatchRetry(this::resync);
+            }
+        });
     }
 
-    private void loadLocalWiseBaseDirs() {
-        availableLocales.forEach(locale -> {
-            String localeBase = baseDir + "/" + locale.getLanguage() + "/";
-            localeWiseBaseDirs.put(locale, localeBase);
-        });
+    private void scheduleWatchRetry(Runnable retry) {
+        int attempt = watchRetryAttempts.getAndIncrement();
+        long delay = Math.min(WATCH_RETRY_MAX_DELAY_MILLIS, WATCH_RETRY_INITIAL_DELAY_MILLIS << Math.min(attempt, 16));
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        log.info("Will retry watching dir: " + baseDirToWatch + " in " + delay + " ms");
+        CompletableFuture.runAsync(retry, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, etcdLongBlockingThreadPoolTaskExecutor));
     }
 
-    private void loadMessages() {
-        localeWiseBaseDirs.forEach((locale, dir) -> {
-            Map<String, String> kvPairs = Map.of();
-            try {
-                kvPairs = client.getByKeyAsync(dir, true).get();
-            } catch (InterruptedException | ExecutionException e) {
-                errorMessageOnGettingKeyValue(dir, true, e);
+    /**
+     * Carries the locales loaded on first use while a full load was in flight over to its snapshot, together with
+     * the last use of every loaded locale. Such a locale's bundle is at the revision of the previous snapshot,
+     * which the full load catches up to by replaying the events received in the meantime.
+     *
+     * @param previous the snapshot served so far
+     * @param reloaded the snapshot of the full load
+     * @return the snapshot to publish
+     */
+    private MessageSnapshot keepLoadedLocales(MessageSnapshot previous, MessageSnapshot reloaded) {
+        if (!lazyLocaleLoading) {
+            return reloaded;
+        }
+        Map<Locale, LocaleBundle> loadedMeanwhile = new HashMap<>();
+        reloaded.getBundles().forEach((locale, bundle) -> {
+            LocaleBundle previousBundle = previous.getBundles().get(locale);
+            if (previousBundle == null || !previousBundle.isLoaded()) {
+                return;
+            }
+            if (bundle.isLoaded()) {
+                bundle.markUsed(previousBundle.getLastUsed());
+            } else if (previousBundle.getDir().equals(bundle.getDir())) {
+                loadedMeanwhile.put(locale, previousBundle);
             }
-            processAndSaveMessagesToCache(kvPairs, locale, dir);
         });
-        log.info("successfully loaded translations");
+        return loadedMeanwhile.isEmpty() ? reloaded : reloaded.withBundles(loadedMeanwhile);
     }
 
-    private void processAndSaveMessagesToCache(Map<String, String> kvPairs, Locale locale, String dir) {
-
-        kvPairs = kvPairs.entrySet()
-                .stream()
-                .filter(entry -> (!(entry.getValue().isBlank() || Objects.equals("\'\'", entry.getValue()))))
-                .collect(Collectors.toMap(entry -> entry.getKey().replaceFirst(dir, ""), Map.Entry::getValue));
-        messagesCache.put(locale, kvPairs);
+    /**
+     * Schedules a full reload with backoff to load the locales the last load missed.
+     */
+    private void scheduleMissingLocalesReload() {
+        int attempt = missingLocalesRetryAttempts.getAndIncrement();
+        long delay = Math.min(WATCH_RETRY_MAX_DELAY_MILLIS, WATCH_RETRY_INITIAL_DELAY_MILLIS << Math.min(attempt, 16));
+        log.warn("no messages loaded for locales: " + missingLocales + " of dir: " + baseDir + ", will reload in " + delay + " ms");
+        CompletableFuture.runAsync(() -> {
+            if (!watchStopped) {
+                reloadScheduler.requestReload();
+            }
+        }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, etcdLongBlockingThreadPoolTaskExecutor));
     }
 
-    @Override
-    protected MessageFormat resolveCode(String code, Locale locale) {
-        Locale messageLocale = availableLocales.stream().filter(al -> Objects.equals(al.getLanguage(), locale.getLanguage())).findFirst().get();
+    private Consumer<WatchResponse> generateConsumer() {
+        return watchResponse -> {
+            watchRetryAttempts.set(0);
+            long responseRevision = watchResponse.getHeader().getRevision();
+            latestEtcdRevision.accumulateAndGet(responseRevision, Math::max);
+            List<WatchEvent> events = watchResponse.getEvents()
+                    .stream()
+                    .filter(watchEvent -> Objects.equals(watchEvent.getEventType(), WatchEvent.EventType.PUT)
+                            || Objects.equals(watchEvent.getEventType(), WatchEvent.EventType.DELETE))
+                    .toList();
+            events.forEach(watchEvent -> metrics.watchEvent(Objects.equals(watchEvent.getEventType(), WatchEvent.EventType.DELETE)));
+
+            if (events.isEmpty()) {
+                applyWatchEvents(events, responseRevision);
+                return;
+            }
 
-        String message = messagesCache.get(messageLocale).get(code);
+            if (applyWatchEventsIncrementally && events.stream().noneMatch(this::isLocalesKeyEvent)) {
+                applyWatchEvents(events, responseRevision);
+                return;
+            }
 
-        return message != null ? getMessageFormat(code, locale) : null;
+            log.info("scheduling reload of messages for dir: " + baseDirToWatch);
+            reloadScheduler.requestReload();
+        };
     }
 
+    /**
+     * Starts a full reload with the configured approach.
+     *
+     * @return a future completed once the reload is done
+     */
+    private CompletableFuture<Boolean> reloadWithConfiguredApproach() {
+        log.info("reloading messages for dir: " + baseDirToWatch);
+        if (loadMessageWithAsyncApproach) {
+            return initiateLoadingMessagesAsync();
+        }
+        return CompletableFuture.supplyAsync(this::initiateLoadingMessages, etcdLongBlockingThreadPoolTaskExecutor);
+    }
 
-    public MessageFormat getMessageFormat(String code, Locale locale) {
+    private boolean isLocalesKeyEvent(WatchEvent watchEvent) {
+        return Objects.equals(localesKey, watchEvent.getKeyValue().getKey().toString());
+    }
 
-        Map<Locale, MessageFormat> localeMap = this.cachedMessageFormats.get(code);
-        if (localeMap != null) {
-            MessageFormat result = localeMap.get(locale);
-            if (result != null) {
-                return result;
+    /**
+     * Applies PUT and DELETE events to the caches of the locales whose base dir contains the event keys
+     * and publishes the result as a new snapshot. Keys outside every known locale dir are ignored,
+     * new locales only show up after the locales key changes.
+     *
+     * The applied revision then advances to the revision of the watch response, as no event up to it is missing.
+     *
+     * @param events           the events to apply
+     * @param responseRevision the header revision of the watch response the events came with
+     */
+    private void applyWatchEvents(List<WatchEvent> events, long responseRevision) {
+        synchronized (snapshotWriteLock) {
+            MessageSnapshot previous = snapshot;
+            snapshot = previous.withEvents(events).advancedTo(responseRevision);
+            if (reloadsInFlight > 0) {
+                eventsDuringReload.addAll(events);
+            }
+            if (!changeSubscriptions.isEmpty() && snapshot.getRevision() > previous.getRevision()) {
+                publishChanges(new MessageChanges(previous.getRevision(), snapshot.getRevision(), previous.changesOf(events)));
             }
         }
-
-        Map<String, String> msgMap = messagesCache.get(locale);
-        final var msg = msgMap.get(code);
-        if (msg != null) {
-            if (localeMap == null) {
-                localeMap = new ConcurrentHashMap<>();
-                Map<Locale, MessageFormat> existing = this.cachedMessageFormats.putIfAbsent(code, localeMap);
-                if (existing != null) {
-                    localeMap = existing;
+        if (!events.isEmpty()) {
+            log.debug("applied " + events.size() + " watch events, revision: " + snapshot.getRevision());
+            scheduleSnapshotFileWrite();
+        }
+    }
+
+    /**
+     * Schedules writing the current snapshot to {@link #snapshotFile} after the write interval, unless a write is
+     * scheduled already. A restart then replays at most the updates of one interval instead of all since the last
+     * full load.
+     */
+    private void scheduleSnapshotFileWrite() {
+        long interval = snapshotFileWriteIntervalMillis;
+        if (snapshotFile == null || interval <= 0 || !snapshotFileWriteScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            snapshotFileWriteScheduled.set(false);
+            writeSnapshotFile(snapshot);
+        }, CompletableFuture.delayedExecutor(interval, TimeUnit.MILLISECONDS, etcdLongBlockingThreadPoolTaskExecutor));
+    }
+
+    /**
+     * Sets whether watch events are applied incrementally, see {@link #applyWatchEventsIncrementally}.
+     *
+     * @param applyWatchEventsIncrementally true to apply events key by key, false to reload every locale on each change
+     */
+    public void setApplyWatchEventsIncrementally(boolean applyWatchEventsIncrementally) {
+        this.applyWatchEventsIncrementally = applyWatchEventsIncrementally;
+    }
+
+    /**
+     * Sets how full reloads triggered by the watch are debounced. A reload starts once no change came in for the
+     * quiet period, but no later than the max delay after the first change of a burst. Call it before {@link #start()}.
+     *
+     * @param quietPeriodMillis how long no change must come in before a reload starts
+     * @param maxDelayMillis    how long a reload is delayed at most after the first change
+     */
+    public void setReloadDebounce(long quietPeriodMillis, long maxDelayMillis) {
+        this.reloadScheduler = new ReloadScheduler(this::reloadWithConfiguredApproach, etcdLongBlockingThreadPoolTaskExecutor,
+                quietPeriodMillis, maxDelayMillis);
+    }
+
+    /**
+     * Sets the page size of locale dir reads, see {@link #loadPageSize}. Paging bounds the size of each etcd
+     * response and the heap used during a load by the page size instead of the bundle size.
+     *
+     * @param loadPageSize the maximum number of keys per range request, {@code 0} to read each dir in one request
+     */
+    public void setLoadPageSize(int loadPageSize) {
+        this.loadPageSize = loadPageSize;
+    }
+
+    /**
+     * Sets whether messages are stored off-heap, see {@link OffHeapMessageStore}. This keeps the heap footprint and
+     * GC cost of very large catalogues independent of their size, at the cost of decoding a message on every lookup.
+     * Applies to every locale loaded afterwards.
+     *
+     * @param offHeapStorage {@code true} to store messages off-heap
+     */
+    public void setOffHeapStorage(boolean offHeapStorage) {
+        this.offHeapStorage = offHeapStorage;
+    }
+
+    /**
+     * Sets whether the messages of a locale are only loaded on its first lookup. A full load then only reads the
+     * locales key and the locales loaded already, the first lookup of another locale waits for its messages up to
+     * the {@link #setFirstUseTimeout(long) first use timeout}. Saves startup work and memory if instances only serve a
+     * few of many configured locales.
+     *
+     * @param lazyLocaleLoading {@code true} to load locales on first use
+     */
+    public void setLazyLocaleLoading(boolean lazyLocaleLoading) {
+        this.lazyLocaleLoading = lazyLocaleLoading;
+    }
+
+    /**
+     * Sets how long a lookup waits for the messages of a locale loaded on first use. A lookup waiting longer falls
+     * back to the common messages and the parent message source, the load goes on in the background under the load
+     * timeout and later lookups find its messages.
+     *
+     * @param firstUseTimeoutMillis the time in milliseconds
+     */
+    public void setFirstUseTimeout(long firstUseTimeoutMillis) {
+        this.firstUseTimeoutMillis = firstUseTimeoutMillis;
+    }
+
+    /**
+     * Sets how many locales stay loaded with {@link #setLazyLocaleLoading(boolean) lazy locale loading}. Loading one
+     * more evicts the locale whose last lookup is the oldest, it is loaded again on its next lookup.
+     *
+     * @param maxLoadedLocales the maximum number of loaded locales, {@code 0} for no limit
+     */
+    public void setMaxLoadedLocales(int maxLoadedLocales) {
+        this.maxLoadedLocales = maxLoadedLocales;
+    }
+
+    /**
+     * Sets how many codes that resolved to no message are remembered per snapshot, see {@link MissingCodeCache}.
+     * Their repeated lookups then skip the common messages and the parent message source until the snapshot changes, so
+     * messages added to those fallbacks meanwhile are not seen. Off by default.
+     *
+     * @param missingCodeCacheSize the maximum number of codes, {@code 0} to always ask the fallbacks
+     */
+    public void setMissingCodeCacheSize(int missingCodeCacheSize) {
+        this.missingCodeCacheSize = missingCodeCacheSize;
+    }
+
+    /**
+     * Drops the remembered missing codes, so codes of the new parent are found right away.
+     */
+    @Override
+    public void setParentMessageSource(MessageSource parent) {
+        super.setParentMessageSource(parent);
+        missingCodeCache = new MissingCodeCache(MessageSnapshot.EMPTY, 0);
+    }
+
+    /**
+     * Drops the remembered missing codes, so the new common messages are found right away.
+     */
+    @Override
+    public void setCommonMessages(Properties commonMessages) {
+        super.setCommonMessages(commonMessages);
+        missingCodeCache = new MissingCodeCache(MessageSnapshot.EMPTY, 0);
+    }
+
+    /**
+     * Registers a listener for the message changes its filter matches, e.g. to invalidate caches derived from
+     * messages. The listener is notified after every watch update or reload is published, in revision order, on the
+     * listener executor, see {@link MessageChangeSubscription}. Changes of a reload are found by comparing all loaded
+     * messages, which costs a pass over every locale while there is a listener. Locales loaded on first use or
+     * evicted don't cause notifications, as their messages didn't change.
+     *
+     * @param filter   selects the changes to be notified about
+     * @param listener the listener
+     * @return the subscription, close it to remove the listener
+     */
+    public MessageChangeSubscription addChangeListener(MessageChangeFilter filter, MessageChangeListener listener) {
+        synchronized (snapshotWriteLock) {
+            if (changeListenerExecutor == null) {
+                defaultChangeListenerExecutor = Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "etcd-listener");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                changeListenerExecutor = defaultChangeListenerExecutor;
+            }
+            MessageChangeSubscription subscription = new MessageChangeSubscription(filter, listener, changeListenerExecutor,
+                    snapshot.getRevision(), changeSubscriptions);
+            changeSubscriptions.add(subscription);
+            return subscription;
+        }
+    }
+
+    /**
+     * Sets the executor the change listeners are notified on. Every listener occupies at most one thread at a time.
+     * Without one, a cached pool is created for the first listener and shut down by {@link #stopWatching()}.
+     * A set executor is left to its owner to shut down.
+     *
+     * @param changeListenerExecutor the executor, used for listeners added afterwards
+     */
+    public void setChangeListenerExecutor(Executor changeListenerExecutor) {
+        synchronized (snapshotWriteLock) {
+            this.changeListenerExecutor = changeListenerExecutor;
+        }
+    }
+
+    /**
+     * Queues the changes of a published snapshot for every listener, called under {@link #snapshotWriteLock}.
+     */
+    private void publishChanges(MessageChanges changes) {
+        for (MessageChangeSubscription subscription : changeSubscriptions) {
+            subscription.publish(changes);
+        }
+    }
+
+    /**
+     * Returns the locale whose messages a lookup in the given locale is served from, e.g. {@code en} for
+     * {@code en_US} if there are no messages for {@code en_US}. Loads the locale if it is loaded on first use.
+     *
+     * @param locale the requested locale
+     * @return the locale of the served messages, or {@code null} if no messages match the locale
+     */
+    public Locale getServedLocale(Locale locale) {
+        LocaleBundle bundle = findBundle(locale);
+        return bundle != null ? bundle.getLocale() : null;
+    }
+
+    /**
+     * Sets whether a code missing in the messages of a loaded locale is read from etcd before falling back to the
+     * common messages and the parent message source. A message written moments ago is then found before its watch
+     * event arrives, or while a reload holds it back. Each code is read once per revision, concurrent lookups share
+     * the read and wait at most the {@link #setReadThroughTimeout(long) read-through timeout}, see
+     * {@link ReadThroughCache}.
+     *
+     * @param readThrough {@code true} to read missing codes from etcd
+     */
+    public void setReadThrough(boolean readThrough) {
+        this.readThrough = readThrough;
+    }
+
+    /**
+     * Sets how long a lookup waits for the read of a missing code, see {@link #setReadThrough(boolean)}. A read
+     * taking longer still completes and serves the lookups after it.
+     *
+     * @param readThroughTimeoutMillis the time in milliseconds
+     */
+    public void setReadThroughTimeout(long readThroughTimeoutMillis) {
+        this.readThroughTimeoutMillis = readThroughTimeoutMillis;
+    }
+
+    /**
+     * Sets how the lookups of missing codes are sampled for {@link #getTopMissingCodes}, resetting the counts.
+     *
+     * @param sampleEvery count one in this many misses, {@code 1} counts every miss
+     */
+    public void setMissingCodeSampling(int sampleEvery) {
+        this.missingCodeTracker = new MissingCodeTracker(sampleEvery);
+    }
+
+    /**
+     * Sets the deadline of a full load. All locale dirs are read in parallel, locales not read within the deadline
+     * keep the messages they had or are missing if they had none, see {@link #getMissingLocales()}.
+     *
+     * @param loadTimeoutMillis the deadline in milliseconds from reading the locales key on
+     */
+    public void setLoadTimeout(long loadTimeoutMillis) {
+        this.loadTimeoutMillis = loadTimeoutMillis;
+    }
+
+    /**
+     * Sets whether {@link #start()} blocks until the first messages are published, at most for the load timeout.
+     * This keeps the application from reporting ready before it can translate.
+     *
+     * @param waitForInitialLoad {@code true} to block on start
+     */
+    public void setWaitForInitialLoad(boolean waitForInitialLoad) {
+        this.waitForInitialLoad = waitForInitialLoad;
+    }
+
+    /**
+     * Sets whether {@link #start()} fails with an {@link IllegalStateException} if, after waiting for the initial load,
+     * not all locales are served. Only applies if {@link #setWaitForInitialLoad(boolean) waitForInitialLoad} is set.
+     *
+     * @param failOnMissingMessages {@code true} to fail the start on missing locales
+     */
+    public void setFailOnMissingMessages(boolean failOnMissingMessages) {
+        this.failOnMissingMessages = failOnMissingMessages;
+    }
+
+    /**
+     * Sets the meters to record lookups, reloads and the watch with and registers the gauges of this message source:
+     * cached MessageFormats, messages per locale, the applied revision and its lag behind the latest etcd revision.
+     *
+     * @param metrics the meters to record with
+     */
+    public void setMetrics(EtcdTranslatorMetrics metrics) {
+        this.metrics = metrics;
+        MeterRegistry registry = metrics.getRegistry();
+        Gauge.builder("etcd.translator.message.formats", this, messageSource -> messageSource.snapshot.getMessageFormatCacheSize())
+                .description("MessageFormats cached over all locales")
+                .tags(metrics.getTags())
+                .register(registry);
+        Gauge.builder("etcd.translator.revision.applied", this, messageSource -> messageSource.snapshot.getRevision())
+                .description("The etcd revision the served messages reflect")
+                .tags(metrics.getTags())
+                .register(registry);
+        Gauge.builder("etcd.translator.revision.lag", this,
+                        messageSource -> Math.max(0, messageSource.latestEtcdRevision.get() - messageSource.snapshot.getRevision()))
+                .description("Revisions the served messages are behind the latest revision seen from etcd")
+                .tags(metrics.getTags())
+                .register(registry);
+        Gauge.builder("etcd.translator.messages.offheap.bytes", this, messageSource -> messageSource.snapshot.getOffHeapBytes())
+                .description("Bytes of messages stored off-heap over all locales")
+                .tags(metrics.getTags())
+                .baseUnit("bytes")
+                .register(registry);
+        meteredLocales.clear();
+        registerLocaleGauges(snapshot);
+    }
+
+    /**
+     * Registers the message count gauge of every locale of the snapshot that doesn't have one yet.
+     *
+     * @param published the published snapshot
+     */
+    private void registerLocaleGauges(MessageSnapshot published) {
+        for (Locale locale : published.getLocales()) {
+            if (meteredLocales.add(locale)) {
+                Gauge.builder("etcd.translator.messages", this, messageSource -> {
+                            LocaleBundle bundle = messageSource.snapshot.getBundles().get(locale);
+                            return bundle != null ? bundle.size() : 0;
+                        })
+                        .description("Messages loaded per locale")
+                        .tag("locale", locale.toString())
+                        .tags(metrics.getTags())
+                        .register(metrics.getRegistry());
+            }
+        }
+    }
+
+    /**
+     * Sets the local file the last loaded messages are written to after every successful load, after watch updates
+     * and on shutdown. On {@link #start()} a snapshot in this file is served right away and the watcher catches up
+     * from its revision, so no full load from etcd is needed and the messages are available even if etcd is not.
+     *
+     * @param snapshotFile the file, or {@code null} to disable the snapshot file
+     */
+    public void setSnapshotFile(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Sets how long after a watch update the snapshot file is rewritten. Updates arriving meanwhile are written with
+     * it, so a busy watch costs at most one write per interval.
+     *
+     * @param snapshotFileWriteIntervalMillis the time in milliseconds, {@code 0} to only write the file after full
+     *                                        loads and on shutdown
+     */
+    public void setSnapshotFileWriteInterval(long snapshotFileWriteIntervalMillis) {
+        this.snapshotFileWriteIntervalMillis = snapshotFileWriteIntervalMillis;
+    }
+
+    /**
+     * Returns the etcd revision the currently served messages reflect.
+     *
+     * @return the revision, {@code 0} until the first load has finished
+     */
+    public long getRevision() {
+        return snapshot.getRevision();
+    }
+
+    /**
+     * Returns the locales of the currently served messages.
+     *
+     * @return an unmodifiable set of locales
+     */
+    public Set<Locale> getAvailableLocales() {
+        return snapshot.getLocales();
+    }
+
+    /**
+     * Stops watching for changes, writes the snapshot file and shuts down the default change listener executor.
+     * Called by Spring on shutdown, call it yourself when the message source was created outside a Spring context.
+     * Watches of other message sources sharing the client keep running.
+     */
+    @PreDestroy
+    public void stopWatching() {
+        log.info("Will stop the watcher on dir: " + baseDirToWatch);
+        watchStopped = true;
+        client.stopWatcher(baseDirToWatch);
+        writeSnapshotFile(snapshot);
+        synchronized (snapshotWriteLock) {
+            if (defaultChangeListenerExecutor != null) {
+                // notifications already queued still run, later ones are dropped by the subscriptions
+                defaultChangeListenerExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Starts a full reload without waiting for it. It runs after the reload in flight, if any, and also serves the
+     * reloads the watch requested meanwhile.
+     */
+    public void reloadMessagesAsync() {
+        log.info("Reloading messages with async approach, current messages are served until the reload is done");
+        reloadScheduler.reloadNow();
+    }
+
+    /**
+     * Runs a full reload and waits until it is done. It runs after the reload in flight, if any, and also serves the
+     * reloads the watch requested meanwhile.
+     */
+    public void reloadMessages() {
+        log.info("Reloading messages with synch approach, current messages are served until the reload is done");
+        reloadScheduler.reloadNow().join();
+    }
+
+    /**
+     * Reads the locales key and then every locale dir pinned to the revision of that first read,
+     * so the published snapshot is consistent at a single revision.
+     *
+     * @return a future completed with whether the new snapshot was published
+     */
+    private CompletableFuture<Boolean> initiateLoadingMessagesAsync() {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(loadTimeoutMillis);
+        Set<Locale> failedLocales = ConcurrentHashMap.newKeySet();
+        beginReload();
+        return client.getByKeyWithRevisionAsync(localesKey, false, 0)
+                .orTimeout(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS)
+                .thenComposeAsync(locales -> loadMessagesAsync(locales, deadlineNanos, failedLocales), etcdLongBlockingThreadPoolTaskExecutor)
+                .handle((loaded, throwable) -> {
+                    if (throwable != null) {
+                        errorMessageOnGettingKeyValue(localesKey, false, throwable);
+                    }
+                    boolean published = publishReload(loaded, failedLocales);
+                    metrics.recordReload(System.nanoTime() - startNanos, published);
+                    return published;
+                });
+    }
+
+    private static long remainingNanos(long deadlineNanos) {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * Reads every locale dir in parallel and joins them under the deadline of the load.
+     *
+     * @param locales       the locales key as read, with the revision to pin the dir reads to
+     * @param deadlineNanos the {@link System#nanoTime()} by which the dirs must be read, later ones count as failed
+     * @param failedLocales receives the locales whose dir could not be read
+     * @return a future completed with the loaded snapshot
+     */
+    private CompletableFuture<MessageSnapshot> loadMessagesAsync(EtcdKeyValues locales, long deadlineNanos, Set<Locale> failedLocales) {
+        Map<Locale, String> localeWiseBaseDirs = loadLocalWiseBaseDirs(loadLocales(locales.kvPairs()));
+        Map<Locale, CompletableFuture<LocaleBundle>> bundleFutures = new LinkedHashMap<>();
+
+        localeWiseBaseDirs.forEach((locale, dir) -> bundleFutures.put(locale, !isResident(locale)
+                ? CompletableFuture.completedFuture(LocaleBundle.unloaded(locale, dir))
+                : loadBundleAsync(locale, dir, locales.revision())
+                .orTimeout(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS)
+                .thenApply(bundle -> {
+                    log.info("successfully loaded translations for locale: " + locale);
+                    return bundle;
+                })
+                .exceptionally(throwable -> {
+                    errorMessageOnGettingKeyValue(dir, true, throwable);
+                    return null;
+                })));
+
+        return CompletableFuture.allOf(bundleFutures.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(unused -> {
+                    Map<Locale, LocaleBundle> bundles = new LinkedHashMap<>();
+                    bundleFutures.forEach((locale, future) -> bundles.put(locale, future.join()));
+                    return buildSnapshot(locales.revision(), localeWiseBaseDirs, bundles, failedLocales);
+                });
+    }
+
+    /**
+     * Reads a locale dir at the given revision, page by page straight into the bundle if paging is enabled.
+     *
+     * @param locale   the locale of the dir
+     * @param dir      the locale dir
+     * @param revision the revision to read at
+     * @return a future completed with the loaded bundle
+     */
+    private CompletableFuture<LocaleBundle> loadBundleAsync(Locale locale, String dir, long revision) {
+        int pageSize = loadPageSize;
+        boolean offHeap = offHeapStorage;
+        if (pageSize <= 0) {
+            return client.getByKeyWithRevisionAsync(dir, true, revision)
+                    .thenApplyAsync(kvPairs -> LocaleBundle.of(locale, dir, kvPairs.kvPairs(), offHeap), etcdLongBlockingThreadPoolTaskExecutor);
+        }
+        LocaleBundle.Builder builder = new LocaleBundle.Builder(locale, dir, pageSize, offHeap);
+        return client.getByKeyPrefixPagedAsync(dir, revision, pageSize, builder::add)
+                .thenApply(readRevision -> builder.build());
+    }
+
+    /**
+     * Whether a full load reads the messages of a locale: always, unless they are loaded on first use and
+     * the locale isn't loaded yet.
+     */
+    private boolean isResident(Locale locale) {
+        if (!lazyLocaleLoading) {
+            return true;
+        }
+        LocaleBundle current = snapshot.getBundles().get(locale);
+        return current != null && current.isLoaded();
+    }
+
+    /**
+     * Loads all messages on the calling thread, see {@link #initiateLoadingMessagesAsync()}.
+     *
+     * @return whether the new snapshot was published
+     */
+    private boolean initiateLoadingMessages() {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(loadTimeoutMillis);
+        beginReload();
+        MessageSnapshot loaded = null;
+        Set<Locale> failedLocales = new HashSet<>();
+        boolean published = false;
+        try {
+            EtcdKeyValues locales = client.getByKeyWithRevisionAsync(localesKey, false, 0).get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+            Map<Locale, String> localeWiseBaseDirs = loadLocalWiseBaseDirs(loadLocales(locales.kvPairs()));
+            loaded = buildSnapshot(locales.revision(), localeWiseBaseDirs, loadMessages(localeWiseBaseDirs, locales.revision(), deadlineNanos), failedLocales);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            errorMessageOnGettingKeyValue(localesKey, false, e);
+        } finally {
+            published = publishReload(loaded, failedLocales);
+            metrics.recordReload(System.nanoTime() - startNanos, published);
+        }
+        log.info("successfully loaded translations");
+        return published;
+    }
+
+    /**
+     * Parses the comma-separated locales, each one as written in etcd, e.g. {@code en}, {@code en_US} or {@code en-US}.
+     *
+     * @param kvPairs the pairs read from the locales key
+     * @return the locale tags as written in etcd by their parsed locale
+     */
+    private Map<Locale, String> loadLocales(Map<String, String> kvPairs) {
+        String locales = kvPairs.values().stream().findFirst().orElse(defaultLocalesStr);
+        Map<Locale, String> availableLocales = new LinkedHashMap<>();
+        Arrays.stream(locales.split(","))
+                .map(String::trim)
+                .filter(tag -> !tag.isEmpty())
+                .forEach(tag -> availableLocales.putIfAbsent(StringUtils.parseLocale(tag), tag));
+        return availableLocales;
+    }
+
+    private Map<Locale, String> loadLocalWiseBaseDirs(Map<Locale, String> availableLocales) {
+        Map<Locale, String> localeWiseBaseDirs = new LinkedHashMap<>();
+        availableLocales.forEach((locale, tag) -> {
+            String localeBase = baseDir + "/" + tag + "/";
+            localeWiseBaseDirs.put(locale, localeBase);
+        });
+        return localeWiseBaseDirs;
+    }
+
+    private Map<Locale, LocaleBundle> loadMessages(Map<Locale, String> localeWiseBaseDirs, long revision, long deadlineNanos) {
+        Map<Locale, LocaleBundle> bundles = new LinkedHashMap<>();
+        localeWiseBaseDirs.forEach((locale, dir) -> {
+            if (!isResident(locale)) {
+                bundles.put(locale, LocaleBundle.unloaded(locale, dir));
+                return;
+            }
+            LocaleBundle bundle = null;
+            try {
+                bundle = loadBundleAsync(locale, dir, revision).get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                errorMessageOnGettingKeyValue(dir, true, e);
+            }
+            bundles.put(locale, bundle);
+        });
+        return bundles;
+    }
+
+    /**
+     * Builds the snapshot of a full load. A locale whose dir could not be read keeps the bundle of the
+     * currently served snapshot, or starts empty if it is new.
+     *
+     * @param revision           the revision all dirs were read at
+     * @param localeWiseBaseDirs the dir of every configured locale
+     * @param bundles            the loaded bundles, {@code null} for failed reads
+     * @param failedLocales      receives the locales whose dir could not be read
+     * @return the new snapshot
+     */
+    private MessageSnapshot buildSnapshot(long revision, Map<Locale, String> localeWiseBaseDirs, Map<Locale, LocaleBundle> bundles, Set<Locale> failedLocales) {
+        MessageSnapshot current = snapshot;
+        Map<Locale, LocaleBundle> result = new LinkedHashMap<>();
+        localeWiseBaseDirs.forEach((locale, dir) -> {
+            LocaleBundle bundle = bundles.get(locale);
+            if (bundle == null) {
+                failedLocales.add(locale);
+                bundle = current.getBundles().getOrDefault(locale, LocaleBundle.of(locale, dir, Map.of()));
+            }
+            result.put(locale, bundle);
+        });
+        return new MessageSnapshot(revision, result);
+    }
+
+    private void beginReload() {
+        synchronized (snapshotWriteLock) {
+            reloadsInFlight++;
+        }
+    }
+
+    private boolean publishReload(MessageSnapshot loaded) {
+        return publishReload(loaded, Set.of());
+    }
+
+    /**
+     * Publishes a reloaded snapshot, replaying the watch events that arrived while it was loading.
+     * A load older than the last published one is dropped.
+     *
+     * @param loaded        the reloaded snapshot, or {@code null} if the reload failed
+     * @param failedLocales the locales whose dir could not be read, they are missing unless served before
+     * @return whether the snapshot was published
+     */
+    private boolean publishReload(MessageSnapshot loaded, Set<Locale> failedLocales) {
+        synchronized (snapshotWriteLock) {
+            boolean published = loaded != null && loaded.getRevision() >= lastLoadedRevision;
+            if (published) {
+                Set<Locale> previouslyServed = snapshot.getBundles().keySet();
+                Set<Locale> previouslyMissing = missingLocales;
+                missingLocales = failedLocales.stream()
+                        .filter(locale -> !previouslyServed.contains(locale) || previouslyMissing.contains(locale))
+                        .collect(Collectors.toUnmodifiableSet());
+                if (missingLocales.isEmpty()) {
+                    missingLocalesRetryAttempts.set(0);
+                } else {
+                    scheduleMissingLocalesReload();
+                }
+                lastLoadedRevision = loaded.getRevision();
+                latestEtcdRevision.accumulateAndGet(loaded.getRevision(), Math::max);
+                MessageSnapshot previous = snapshot;
+                snapshot = keepLoadedLocales(previous, loaded.withEvents(eventsDuringReload));
+                registerLocaleGauges(snapshot);
+                if (!changeSubscriptions.isEmpty()) {
+                    List<MessageChange> changes = previous.getRevision() > 0 ? previous.changesTo(snapshot) : List.of();
+                    publishChanges(new MessageChanges(previous.getRevision(), snapshot.getRevision(), changes));
+                }
+                log.info("published messages at revision: " + snapshot.getRevision());
+                initialLoad.complete(null);
+                if (snapshotFile != null) {
+                    MessageSnapshot toWrite = snapshot;
+                    CompletableFuture.runAsync(() -> writeSnapshotFile(toWrite), etcdLongBlockingThreadPoolTaskExecutor);
+                }
+            }
+            if (--reloadsInFlight == 0) {
+                eventsDuringReload.clear();
+            }
+            return published;
+        }
+    }
+
+    /**
+     * Resolves messages from the current snapshot with their precompiled {@link MessageTemplate}s, so rendering never
+     * synchronizes on a shared {@link MessageFormat}. Messages without arguments are returned as they are unless
+     * {@link #setAlwaysUseMessageFormat(boolean) alwaysUseMessageFormat} is set. Codes not found fall back to the
+     * common messages and the parent message source like {@link AbstractMessageSource} does.
+     */
+    @Override
+    protected String getMessageInternal(String code, Object[] args, Locale locale) {
+        if (code == null) {
+            return null;
+        }
+        if (locale == null) {
+            locale = Locale.getDefault();
+        }
+        boolean withoutArguments = ObjectUtils.isEmpty(args) && !isAlwaysUseMessageFormat();
+        Object[] argsToUse = withoutArguments ? args : resolveArgumentsIfNeeded(args, locale);
+        long startNanos = System.nanoTime();
+        MessageSnapshot current = snapshot;
+        LocaleBundle bundle = findBundle(locale);
+        String message = null;
+        if (bundle != null) {
+            message = withoutArguments ? bundle.getMessage(code) : bundle.format(code, argsToUse);
+        }
+        metrics.lookupMeters(bundle != null ? bundle.getLocale() : null).record(startNanos, message != null);
+        if (message == null) {
+            String stored = awaitReadThrough(startReadThrough(current, bundle, code));
+            if (stored != null) {
+                return formatMessage(stored, argsToUse, locale);
+            }
+        }
+        return message != null ? message : getFallbackMessage(current, bundle, code, args, argsToUse, locale);
+    }
+
+    /**
+     * Starts the single-key read of a code missing in the snapshot, if read-through is enabled and the locale is
+     * loaded.
+     *
+     * @param current the snapshot the code was looked up in
+     * @param bundle  the bundle the code was looked up in, {@code null} if no bundle matched the locale
+     * @return the read, completed with the message as stored or {@code null}, or {@code null} if nothing is read
+     */
+    private CompletableFuture<String> startReadThrough(MessageSnapshot current, LocaleBundle bundle, String code) {
+        if (!readThrough || bundle == null || !bundle.isLoaded() || current.getRevision() == 0) {
+            return null;
+        }
+        ReadThroughCache cache = readThroughCache;
+        if (!cache.isFor(current)) {
+            cache = new ReadThroughCache(current, READ_THROUGH_MAX_CODES);
+            readThroughCache = cache;
+        }
+        String key = bundle.getDir() + code;
+        return cache.read(bundle.getLocale(), code, () -> client.getByKeyWithRevisionAsync(key, false, 0)
+                .thenApply(keyValues -> {
+                    String message = keyValues.kvPairs().get(key);
+                    return LocaleBundle.isBlankMessage(message) ? null : message;
+                }));
+    }
+
+    /**
+     * Waits for a read of a missing code up to the read-through timeout.
+     *
+     * @param read the read, {@code null} if none was started
+     * @return the message as stored, or {@code null} if there is none or it wasn't read in time
+     */
+    private String awaitReadThrough(CompletableFuture<String> read) {
+        if (read == null) {
+            return null;
+        }
+        if (read.isDone()) {
+            return read.getNow(null);
+        }
+        try {
+            return read.get(readThroughTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Finds the bundle of the requested locale in the current snapshot, loading its messages first if they are
+     * loaded on first use and not loaded yet.
+     *
+     * @param locale the requested locale
+     * @return the matching bundle, or {@code null} if no configured locale matches
+     */
+    private LocaleBundle findBundle(Locale locale) {
+        LocaleBundle bundle = snapshot.findBundle(locale);
+        if (bundle == null || !lazyLocaleLoading) {
+            return bundle;
+        }
+        if (!bundle.isLoaded()) {
+            return loadOnFirstUse(bundle);
+        }
+        bundle.markUsed(usageEpoch);
+        return bundle;
+    }
+
+    /**
+     * Loads the messages of a locale on its first lookup and waits for them up to the first use timeout. Concurrent
+     * lookups share one fetch, which keeps going after they stopped waiting.
+     *
+     * @param unloaded the placeholder bundle of the locale
+     * @return the loaded bundle, or the placeholder if the load failed or timed out
+     */
+    private LocaleBundle loadOnFirstUse(LocaleBundle unloaded) {
+        Locale locale = unloaded.getLocale();
+        CompletableFuture<LocaleBundle> created = new CompletableFuture<>();
+        CompletableFuture<LocaleBundle> load = localeLoads.putIfAbsent(locale, created);
+        if (load == null) {
+            load = created;
+            startLoadOnFirstUse(unloaded, created);
+        }
+        try {
+            return load.get(firstUseTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.debug("messages of locale: " + locale + " are not loaded, serving none", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return unloaded;
+    }
+
+    /**
+     * Reads the dir of a locale at the revision of the current snapshot and publishes it. Watch events received
+     * while reading are replayed on top, so the locale catches up with the snapshot it joins.
+     *
+     * @param unloaded the placeholder bundle of the locale
+     * @param result   completed with the published bundle
+     */
+    private void startLoadOnFirstUse(LocaleBundle unloaded, CompletableFuture<LocaleBundle> result) {
+        Locale locale = unloaded.getLocale();
+        String dir = unloaded.getDir();
+        long fromRevision;
+        synchronized (snapshotWriteLock) {
+            reloadsInFlight++;
+            fromRevision = snapshot.getRevision();
+        }
+        log.info("loading messages of locale: " + locale + " on first use at revision: " + fromRevision);
+        loadBundleAsync(locale, dir, fromRevision)
+                .orTimeout(loadTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((bundle, throwable) -> {
+                    if (throwable != null) {
+                        errorMessageOnGettingKeyValue(dir, true, throwable);
+                    }
+                    return publishLoadedLocale(bundle, fromRevision);
+                })
+                .whenComplete((published, throwable) -> {
+                    if (published != null) {
+                        localeLoads.remove(locale, result);
+                        result.complete(published);
+                        return;
+                    }
+                    result.completeExceptionally(throwable != null ? throwable : new IllegalStateException("messages of locale: " + locale + " could not be loaded"));
+                    CompletableFuture.runAsync(() -> localeLoads.remove(locale, result),
+                            CompletableFuture.delayedExecutor(LOCALE_LOAD_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS, etcdLongBlockingThreadPoolTaskExecutor));
+                });
+    }
+
+    /**
+     * Publishes a locale loaded on first use, evicting the least recently used loaded locales beyond
+     * {@link #maxLoadedLocales}.
+     *
+     * @param bundle       the loaded bundle, or {@code null} if the load failed
+     * @param fromRevision the revision the bundle was read at
+     * @return the published bundle, or {@code null} if the load failed
+     */
+    private LocaleBundle publishLoadedLocale(LocaleBundle bundle, long fromRevision) {
+        synchronized (snapshotWriteLock) {
+            try {
+                if (bundle == null) {
+                    return null;
+                }
+                Locale locale = bundle.getLocale();
+                LocaleBundle current = snapshot.getBundles().get(locale);
+                if (current == null || !current.getDir().equals(bundle.getDir())) {
+                    // the locale was removed by a full load in the meantime, serve the result to the waiting lookups only
+                    return bundle;
                 }
+                if (current.isLoaded()) {
+                    return current;
+                }
+                LocaleBundle caughtUp = new MessageSnapshot(fromRevision, Map.of(locale, bundle))
+                        .withEvents(eventsDuringReload)
+                        .getBundles()
+                        .get(locale);
+                caughtUp.markUsed(++usageEpoch);
+                // lookups from now on mark a newer epoch, so locales used after this load count as more recent
+                usageEpoch++;
+                Map<Locale, LocaleBundle> replacements = new HashMap<>();
+                replacements.put(locale, caughtUp);
+                evictColdLocales(locale, replacements);
+                snapshot = snapshot.withBundles(replacements);
+                log.info("loaded " + caughtUp.size() + " messages of locale: " + locale + " on first use");
+                return snapshot.getBundles().get(locale);
+            } finally {
+                if (--reloadsInFlight == 0) {
+                    eventsDuringReload.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds placeholders for the least recently used loaded locales to {@code replacements} until at most
+     * {@link #maxLoadedLocales} stay loaded. Their watch events are ignored until they are used again.
+     *
+     * @param loadedLocale the locale being loaded, never evicted
+     * @param replacements the bundles to replace, receives the placeholders
+     */
+    private void evictColdLocales(Locale loadedLocale, Map<Locale, LocaleBundle> replacements) {
+        int limit = maxLoadedLocales;
+        if (limit <= 0) {
+            return;
+        }
+        List<LocaleBundle> loaded = snapshot.getBundles().values().stream()
+                .filter(bundle -> bundle.isLoaded() && !bundle.getLocale().equals(loadedLocale))
+                .sorted(Comparator.comparingLong(LocaleBundle::getLastUsed))
+                .toList();
+        for (int i = 0; i < loaded.size() + 1 - limit; i++) {
+            LocaleBundle evicted = loaded.get(i);
+            log.info("evicting messages of locale: " + evicted.getLocale() + ", last used in epoch: " + evicted.getLastUsed());
+            replacements.put(evicted.getLocale(), LocaleBundle.unloaded(evicted.getLocale(), evicted.getDir()));
+        }
+    }
+
+    /**
+     * Resolves a code not found in the snapshot from the common messages or the parent message source, unless the
+     * code is known to resolve to nothing for this snapshot. Every miss is counted for {@link #getTopMissingCodes}.
+     *
+     * @param current the snapshot the code was looked up in
+     * @param bundle  the bundle the code was looked up in, {@code null} if no bundle matched the locale
+     */
+    private String getFallbackMessage(MessageSnapshot current, LocaleBundle bundle, String code, Object[] args, Object[] resolvedArgs, Locale locale) {
+        missingCodeTracker.record(bundle != null ? bundle.getLocale() : Locale.ROOT, code);
+        int cacheSize = missingCodeCacheSize;
+        if (cacheSize <= 0) {
+            return getFallbackMessage(code, args, resolvedArgs, locale);
+        }
+        MissingCodeCache cache = missingCodeCache;
+        if (!cache.isFor(current)) {
+            cache = new MissingCodeCache(current, cacheSize);
+            missingCodeCache = cache;
+        } else if (cache.contains(locale, code)) {
+            return null;
+        }
+        String message = getFallbackMessage(code, args, resolvedArgs, locale);
+        if (message == null) {
+            cache.add(locale, code);
+        }
+        return message;
+    }
+
+    /**
+     * Resolves a code not found in the snapshot from the common messages or the parent message source.
+     */
+    private String getFallbackMessage(String code, Object[] args, Object[] resolvedArgs, Locale locale) {
+        Properties commonMessages = getCommonMessages();
+        if (commonMessages != null) {
+            String commonMessage = commonMessages.getProperty(code);
+            if (commonMessage != null) {
+                return formatMessage(commonMessage, args, locale);
             }
-            MessageFormat result = createMessageFormat(msg, locale);
-            localeMap.put(locale, result);
-            return result;
         }
-        return null;
+        return getMessageFromParent(code, resolvedArgs, locale);
+    }
+
+    /**
+     * Returns the codes most often looked up without being found in a locale, e.g. to tell translators which codes
+     * to add. The counts are estimated from a sample of the lookups, see {@link #setMissingCodeSampling(int)}.
+     *
+     * @param locale the locale of the bundle the codes were looked up in, {@link Locale#ROOT} for lookups whose
+     *               locale matched no bundle
+     * @param limit  the maximum number of codes
+     * @return the estimated number of lookups by code, most frequent first
+     */
+    public Map<String, Long> getTopMissingCodes(Locale locale, int limit) {
+        return missingCodeTracker.getTopMissingCodes(locale, limit);
+    }
+
+    /**
+     * Returns the codes most often looked up without being found, per locale, see {@link #getTopMissingCodes(Locale, int)}.
+     *
+     * @param limit the maximum number of codes per locale
+     * @return the estimated number of lookups by code, most frequent first, by locale
+     */
+    public Map<Locale, Map<String, Long>> getTopMissingCodes(int limit) {
+        MissingCodeTracker tracker = missingCodeTracker;
+        Map<Locale, Map<String, Long>> result = new LinkedHashMap<>();
+        tracker.getLocales().forEach(locale -> result.put(locale, tracker.getTopMissingCodes(locale, limit)));
+        return result;
+    }
+
+    /**
+     * Resolves several codes without arguments at once, e.g. all messages of a page. The locale is matched once and
+     * every message comes from the same snapshot, so a reload in between can't mix old and new messages.
+     *
+     * @param codes  the message codes
+     * @param locale the locale, the default locale if {@code null}
+     * @return the messages by code in the iteration order of {@code codes}, codes that can't be resolved
+     * (neither here nor in the common messages or the parent message source) are left out
+     */
+    public Map<String, String> getMessages(Collection<String> codes, Locale locale) {
+        return resolveMessages(codes, null, locale);
+    }
+
+    /**
+     * Resolves several codes with their arguments at once, see {@link #getMessages(Collection, Locale)}.
+     *
+     * @param codesWithArgs the arguments by message code, the arguments may be {@code null}
+     * @param locale        the locale, the default locale if {@code null}
+     * @return the messages by code in the iteration order of {@code codesWithArgs}, codes that can't be resolved
+     * are left out
+     */
+    public Map<String, String> getMessages(Map<String, Object[]> codesWithArgs, Locale locale) {
+        return resolveMessages(codesWithArgs.keySet(), codesWithArgs, locale);
+    }
+
+    /**
+     * Returns the messages of a locale whose code starts with the given prefix, e.g. a namespace like
+     * {@code service.greet.} a front-end bundle needs. The messages are returned as stored, without formatting.
+     * Takes a binary search plus the number of matching codes and reads a single snapshot, so it is consistent
+     * even while a reload or watch update is applied.
+     *
+     * @param prefix the code prefix, the empty string returns all messages of the locale
+     * @param locale the locale, the default locale if {@code null}
+     * @return the messages by code in the order of the codes, empty if no bundle matches the locale
+     */
+    public Map<String, String> getMessagesByPrefix(String prefix, Locale locale) {
+        LocaleBundle bundle = findBundle(locale != null ? locale : Locale.getDefault());
+        Map<String, String> result = new LinkedHashMap<>();
+        if (bundle != null) {
+            bundle.forEachWithPrefix(prefix, result::put);
+        }
+        return result;
+    }
+
+    private Map<String, String> resolveMessages(Collection<String> codes, Map<String, Object[]> codesWithArgs, Locale locale) {
+        if (locale == null) {
+            locale = Locale.getDefault();
+        }
+        MessageSnapshot current = snapshot;
+        LocaleBundle bundle = findBundle(locale);
+        Map<String, String> result = new LinkedHashMap<>(Math.max(16, (int) (codes.size() / 0.75f) + 1));
+        Map<String, CompletableFuture<String>> reads = startReadThroughs(current, bundle, codes);
+        int hits = 0;
+        int misses = 0;
+        for (String code : codes) {
+            if (code == null) {
+                continue;
+            }
+            Object[] args = codesWithArgs != null ? codesWithArgs.get(code) : null;
+            boolean withoutArguments = ObjectUtils.isEmpty(args) && !isAlwaysUseMessageFormat();
+            Object[] argsToUse = withoutArguments ? args : resolveArgumentsIfNeeded(args, locale);
+            String message = null;
+            if (bundle != null) {
+                message = withoutArguments ? bundle.getMessage(code) : bundle.format(code, argsToUse);
+            }
+            if (message != null) {
+                hits++;
+            } else {
+                misses++;
+                CompletableFuture<String> read = reads.get(code);
+                String stored = read != null ? read.getNow(null) : null;
+                message = stored != null
+                        ? formatMessage(stored, argsToUse, locale)
+                        : getFallbackMessage(current, bundle, code, args, argsToUse, locale);
+            }
+            if (message != null) {
+                result.put(code, message);
+            }
+        }
+        metrics.lookupMeters(bundle != null ? bundle.getLocale() : null).recordBatch(hits, misses);
+        return result;
+    }
+
+    /**
+     * Starts the single-key reads of all codes missing in the bundle and waits for them together, at most for the
+     * read-through timeout.
+     *
+     * @return the reads by code, empty if read-through is disabled
+     */
+    private Map<String, CompletableFuture<String>> startReadThroughs(MessageSnapshot current, LocaleBundle bundle, Collection<String> codes) {
+        if (!readThrough || bundle == null || !bundle.isLoaded()) {
+            return Map.of();
+        }
+        Map<String, CompletableFuture<String>> reads = new HashMap<>();
+        for (String code : codes) {
+            if (code != null && bundle.getMessage(code) == null) {
+                CompletableFuture<String> read = startReadThrough(current, bundle, code);
+                if (read != null) {
+                    reads.put(code, read);
+                }
+            }
+        }
+        if (!reads.isEmpty()) {
+            awaitReadThrough(CompletableFuture.allOf(reads.values().toArray(new CompletableFuture<?>[0])).<String>thenApply(unused -> null));
+        }
+        return reads;
+    }
+
+    /**
+     * Resolves {@link MessageSourceResolvable} arguments, returning the given array itself if there are none
+     * so the common case doesn't allocate.
+     */
+    private Object[] resolveArgumentsIfNeeded(Object[] args, Locale locale) {
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof MessageSourceResolvable) {
+                    return resolveArguments(args, locale);
+                }
+            }
+        }
+        return args;
+    }
+
+    /**
+     * Returns the cached {@link MessageFormat} of a code. {@link #getMessageInternal} renders with the precompiled
+     * templates and never calls this, so the formats are only created for {@link #getMessageFormat}.
+     */
+    @Override
+    protected MessageFormat resolveCode(String code, Locale locale) {
+        long startNanos = System.nanoTime();
+        LocaleBundle bundle = findBundle(locale);
+        if (bundle == null) {
+            metrics.lookupMeters(null).record(startNanos, false);
+            return null;
+        }
+        MessageFormat messageFormat = bundle.getCachedMessageFormat(code);
+        if (messageFormat != null) {
+            metrics.messageFormatCacheHit();
+        } else {
+            messageFormat = bundle.getMessageFormat(code, messageFormatFactory);
+            if (messageFormat != null) {
+                metrics.messageFormatCacheMiss();
+            }
+        }
+        metrics.lookupMeters(bundle.getLocale()).record(startNanos, messageFormat != null);
+        return messageFormat;
+    }
+
+    /**
+     * Returns the {@link MessageFormat} of a code, e.g. for callers that format the same message many times.
+     *
+     * @param code   the message code
+     * @param locale the locale
+     * @return the cached format, or {@code null} if the code isn't found in the snapshot
+     */
+    public MessageFormat getMessageFormat(String code, Locale locale) {
+        return resolveCode(code, locale);
     }
 
-    private void errorMessageOnGettingKeyValue(String key, boolean isPrefix, Exception e) {
+    private void errorMessageOnGettingKeyValue(String key, boolean isPrefix, Throwable e) {
         log.error("Error while getting key " + key + " isPrefix: " + isPrefix, e);
     }
 
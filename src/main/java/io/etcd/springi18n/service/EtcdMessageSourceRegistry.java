@@ -0,0 +1,83 @@
+package io.etcd.springi18n.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The message sources of all translation roots by name. The default message source, i.e. the application's
+ * {@link org.springframework.context.MessageSource}, is registered as {@value #DEFAULT_ROOT}.
+ *
+ * <p>The registry starts and stops the message sources of the additional roots, the default one is managed by
+ * its own bean lifecycle.</p>
+ */
+public class EtcdMessageSourceRegistry {
+
+    /**
+     * Name of the default translation root.
+     */
+    public static final String DEFAULT_ROOT = "default";
+
+    private final EtcdMessageSource defaultMessageSource;
+
+    /**
+     * Message sources of the additional roots by name.
+     */
+    private final Map<String, EtcdMessageSource> rootMessageSources;
+
+    /**
+     * Constructs the registry.
+     *
+     * @param defaultMessageSource the message source of the default root
+     * @param rootMessageSources   the message sources of the additional roots by name
+     */
+    public EtcdMessageSourceRegistry(EtcdMessageSource defaultMessageSource, Map<String, EtcdMessageSource> rootMessageSources) {
+        if (rootMessageSources.containsKey(DEFAULT_ROOT)) {
+            throw new IllegalArgumentException("Translation root name '" + DEFAULT_ROOT + "' is reserved");
+        }
+        this.defaultMessageSource = defaultMessageSource;
+        this.rootMessageSources = Collections.unmodifiableMap(new LinkedHashMap<>(rootMessageSources));
+    }
+
+    /**
+     * Returns the message source of a translation root.
+     *
+     * @param root the name of the root
+     * @return the message source, or {@code null} if there is no root with that name
+     */
+    public EtcdMessageSource get(String root) {
+        return DEFAULT_ROOT.equals(root) ? defaultMessageSource : rootMessageSources.get(root);
+    }
+
+    /**
+     * @return the message source of the default root
+     */
+    public EtcdMessageSource getDefault() {
+        return defaultMessageSource;
+    }
+
+    /**
+     * @return the names of all roots, the default one first
+     */
+    public Set<String> getRootNames() {
+        Set<String> names = new LinkedHashSet<>();
+        names.add(DEFAULT_ROOT);
+        names.addAll(rootMessageSources.keySet());
+        return Collections.unmodifiableSet(names);
+    }
+
+    @PostConstruct
+    public void start() {
+        rootMessageSources.values().forEach(EtcdMessageSource::start);
+    }
+
+    @PreDestroy
+    public void stop() {
+        rootMessageSources.values().forEach(EtcdMessageSource::stopWatching);
+    }
+}
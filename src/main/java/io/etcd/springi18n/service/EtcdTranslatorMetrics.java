@@ -0,0 +1,263 @@
+package io.etcd.springi18n.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the etcd translator: lookups, MessageFormat cache, reloads, etcd requests and the watch.
+ *
+ * <p>Meters with tags are registered once per tag value and kept, so recording on the lookup path is a map probe
+ * and an increment without allocating tags per call.</p>
+ */
+public class EtcdTranslatorMetrics {
+
+    /**
+     * Tag value of lookups whose locale matched no loaded bundle.
+     */
+    static final String NO_LOCALE = "none";
+
+    /**
+     * Registry all meters are registered with.
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * Tags added to every meter, e.g. the translation root.
+     */
+    private final Tags tags;
+
+    /**
+     * Lookup meters by locale of the resolved bundle.
+     */
+    private final ConcurrentMap<Locale, LookupMeters> lookupMeters = new ConcurrentHashMap<>();
+
+    /**
+     * Lookup meters of lookups whose locale matched no bundle.
+     */
+    private final LookupMeters noLocaleLookupMeters;
+
+    /**
+     * Request meters by etcd operation.
+     */
+    private final ConcurrentMap<String, RequestMeters> requestMeters = new ConcurrentHashMap<>();
+
+    private final Counter messageFormatCacheHits;
+
+    private final Counter messageFormatCacheMisses;
+
+    private final Timer reloadSuccesses;
+
+    private final Timer reloadFailures;
+
+    private final Counter watchPutEvents;
+
+    private final Counter watchDeleteEvents;
+
+    /**
+     * Constructs the meters on the given registry.
+     *
+     * @param registry the registry to register the meters with
+     */
+    public EtcdTranslatorMetrics(MeterRegistry registry) {
+        this(registry, Tags.empty());
+    }
+
+    /**
+     * Constructs the meters on the given registry, every meter gets the given tags.
+     *
+     * @param registry the registry to register the meters with
+     * @param tags     the tags to add to every meter
+     */
+    public EtcdTranslatorMetrics(MeterRegistry registry, Iterable<Tag> tags) {
+        this.registry = registry;
+        this.tags = Tags.of(tags);
+        this.noLocaleLookupMeters = new LookupMeters(registry, this.tags, NO_LOCALE);
+        this.messageFormatCacheHits = Counter.builder("etcd.translator.message.format.cache")
+                .description("MessageFormat cache lookups")
+                .tag("result", "hit")
+                .tags(tags)
+                .register(registry);
+        this.messageFormatCacheMisses = Counter.builder("etcd.translator.message.format.cache")
+                .description("MessageFormat cache lookups")
+                .tag("result", "miss")
+                .tags(tags)
+                .register(registry);
+        this.reloadSuccesses = Timer.builder("etcd.translator.reload")
+                .description("Duration of full reloads of all locales")
+                .tag("result", "success")
+                .tags(tags)
+                .register(registry);
+        this.reloadFailures = Timer.builder("etcd.translator.reload")
+                .description("Duration of full reloads of all locales")
+                .tag("result", "failure")
+                .tags(tags)
+                .register(registry);
+        this.watchPutEvents = Counter.builder("etcd.translator.watch.events")
+                .description("Watch events received")
+                .tag("type", "put")
+                .tags(tags)
+                .register(registry);
+        this.watchDeleteEvents = Counter.builder("etcd.translator.watch.events")
+                .description("Watch events received")
+                .tag("type", "delete")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * Creates meters that record nothing, used when no registry is configured.
+     *
+     * @return the metrics
+     */
+    public static EtcdTranslatorMetrics noop() {
+        return new EtcdTranslatorMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Creates meters on the same registry for the message source of a named translation root, tagged with
+     * {@code root}. Meters of different roots must be told apart by this tag, as they share their names.
+     *
+     * @param root the name of the translation root
+     * @return the metrics
+     */
+    public EtcdTranslatorMetrics forRoot(String root) {
+        return new EtcdTranslatorMetrics(registry, tags.and("root", root));
+    }
+
+    MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    Tags getTags() {
+        return tags;
+    }
+
+    /**
+     * Returns the lookup meters of the locale of a resolved bundle.
+     *
+     * @param locale the bundle locale, or {@code null} if the lookup matched no bundle
+     * @return the meters
+     */
+    LookupMeters lookupMeters(Locale locale) {
+        if (locale == null) {
+            return noLocaleLookupMeters;
+        }
+        LookupMeters meters = lookupMeters.get(locale);
+        return meters != null ? meters : lookupMeters.computeIfAbsent(locale, l -> new LookupMeters(registry, tags, l.toString()));
+    }
+
+    void messageFormatCacheHit() {
+        messageFormatCacheHits.increment();
+    }
+
+    void messageFormatCacheMiss() {
+        messageFormatCacheMisses.increment();
+    }
+
+    void recordReload(long durationNanos, boolean success) {
+        (success ? reloadSuccesses : reloadFailures).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void watchEvent(boolean delete) {
+        (delete ? watchDeleteEvents : watchPutEvents).increment();
+    }
+
+    /**
+     * Records a request to etcd.
+     *
+     * @param operation     the kind of request, e.g. {@code get} or {@code range-page}
+     * @param durationNanos the duration of the request
+     * @param error         the error the request failed with, or {@code null}
+     */
+    public void recordEtcdRequest(String operation, long durationNanos, Throwable error) {
+        RequestMeters meters = requestMeters.get(operation);
+        if (meters == null) {
+            meters = requestMeters.computeIfAbsent(operation, o -> new RequestMeters(registry, tags, o));
+        }
+        (error == null ? meters.successes : meters.errors).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Lookup latency and hit/miss counts of a single locale.
+     */
+    static final class LookupMeters {
+
+        private final Timer latency;
+
+        private final Counter hits;
+
+        private final Counter misses;
+
+        private LookupMeters(MeterRegistry registry, Tags tags, String locale) {
+            this.latency = Timer.builder("etcd.translator.lookup")
+                    .description("Duration of message lookups")
+                    .tag("locale", locale)
+                    .tags(tags)
+                    .register(registry);
+            this.hits = Counter.builder("etcd.translator.lookup.result")
+                    .description("Message lookups by whether the code was found")
+                    .tag("locale", locale)
+                    .tag("result", "hit")
+                    .tags(tags)
+                    .register(registry);
+            this.misses = Counter.builder("etcd.translator.lookup.result")
+                    .description("Message lookups by whether the code was found")
+                    .tag("locale", locale)
+                    .tag("result", "miss")
+                    .tags(tags)
+                    .register(registry);
+        }
+
+        void record(long startNanos, boolean hit) {
+            latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            (hit ? hits : misses).increment();
+        }
+
+        /**
+         * Counts the codes of a batch lookup, the latency of batches is not recorded as it isn't comparable to
+         * single lookups.
+         */
+        void recordBatch(int hitCount, int missCount) {
+            if (hitCount > 0) {
+                hits.increment(hitCount);
+            }
+            if (missCount > 0) {
+                misses.increment(missCount);
+            }
+        }
+    }
+
+    /**
+     * Latency of successful and failed requests of a single etcd operation.
+     */
+    private static final class RequestMeters {
+
+        private final Timer successes;
+
+        private final Timer errors;
+
+        private RequestMeters(MeterRegistry registry, Tags tags, String operation) {
+            this.successes = Timer.builder("etcd.translator.etcd.requests")
+                    .description("Duration of requests to etcd")
+                    .tag("operation", operation)
+                    .tag("result", "success")
+                    .tags(tags)
+                    .register(registry);
+            this.errors = Timer.builder("etcd.translator.etcd.requests")
+                    .description("Duration of requests to etcd")
+                    .tag("operation", operation)
+                    .tag("result", "error")
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package io.etcd.springi18n.service;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Keeps the messages as plain Java strings in arrays indexed by the ordinals of a {@link CodeDictionary}, the default
+ * {@link MessageStore}. Once part of a {@link MessageSnapshot} the dictionary is shared by all locales, so a lookup is
+ * one hash probe plus array indexing and no locale holds its own copy of the codes.
+ * Messages containing braces or quotes are compiled into {@link MessageTemplate}s when the store is built, the
+ * {@link MessageFormat}s created for them are cached by ordinal as well.
+ */
+final class HeapMessageStore implements MessageStore {
+
+    private final Locale locale;
+
+    private final CodeDictionary dictionary;
+
+    /**
+     * Messages by ordinal, {@code null} for codes without a message in this locale. May be shorter than the
+     * dictionary if it was extended after the store was built.
+     */
+    private final String[] messages;
+
+    /**
+     * Compiled templates by ordinal, {@code null} for messages that render as themselves.
+     */
+    private final MessageTemplate[] templates;
+
+    /**
+     * MessageFormats created so far by ordinal, as long as {@link #messages}. Shared with the stores rebound to an
+     * extended dictionary.
+     */
+    private final AtomicReferenceArray<MessageFormat> formats;
+
+    /**
+     * Number of formats in {@link #formats}, shared along with it.
+     */
+    private final AtomicInteger formatCount;
+
+    private final int size;
+
+    private HeapMessageStore(Locale locale, CodeDictionary dictionary, String[] messages, MessageTemplate[] templates,
+                             AtomicReferenceArray<MessageFormat> formats, AtomicInteger formatCount, int size) {
+        this.locale = locale;
+        this.dictionary = dictionary;
+        this.messages = messages;
+        this.templates = templates;
+        this.formats = formats;
+        this.formatCount = formatCount;
+        this.size = size;
+    }
+
+    /**
+     * Creates a store of the given messages with a dictionary of its own.
+     *
+     * @param messages the messages by code
+     * @param locale   the locale templates format numbers and dates in
+     * @return the store
+     */
+    static HeapMessageStore of(Map<String, String> messages, Locale locale) {
+        CodeDictionary dictionary = CodeDictionary.of(messages.keySet());
+        String[] values = new String[dictionary.size()];
+        MessageTemplate[] templates = new MessageTemplate[dictionary.size()];
+        messages.forEach((code, message) -> {
+            int ordinal = dictionary.ordinalOf(code);
+            values[ordinal] = message;
+            templates[ordinal] = compile(message, locale);
+        });
+        return new HeapMessageStore(locale, dictionary, values, templates, new AtomicReferenceArray<>(values.length),
+                new AtomicInteger(), messages.size());
+    }
+
+    private static MessageTemplate compile(String message, Locale locale) {
+        return MessageTemplate.needsFormatting(message) ? MessageTemplate.compile(message, locale) : null;
+    }
+
+    private int ordinalOf(String code) {
+        int ordinal = dictionary.ordinalOf(code);
+        return ordinal < messages.length ? ordinal : -1;
+    }
+
+    @Override
+    public String get(String code) {
+        int ordinal = ordinalOf(code);
+        return ordinal >= 0 ? messages[ordinal] : null;
+    }
+
+    @Override
+    public String format(String code, Object[] args) {
+        int ordinal = ordinalOf(code);
+        if (ordinal < 0) {
+            return null;
+        }
+        MessageTemplate template = templates[ordinal];
+        return template != null ? template.format(args) : messages[ordinal];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public MessageFormat getCachedMessageFormat(String code) {
+        int ordinal = ordinalOf(code);
+        return ordinal >= 0 ? formats.get(ordinal) : null;
+    }
+
+    @Override
+    public MessageFormat getMessageFormat(String code, BiFunction<String, Locale, MessageFormat> factory) {
+        int ordinal = ordinalOf(code);
+        if (ordinal < 0 || messages[ordinal] == null) {
+            return null;
+        }
+        MessageFormat result = formats.get(ordinal);
+        if (result != null) {
+            return result;
+        }
+        result = factory.apply(messages[ordinal], locale);
+        if (formats.compareAndSet(ordinal, null, result)) {
+            formatCount.incrementAndGet();
+            return result;
+        }
+        return formats.get(ordinal);
+    }
+
+    @Override
+    public int getMessageFormatCacheSize() {
+        return formatCount.get();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, String> action) {
+        for (int ordinal = 0; ordinal < messages.length; ordinal++) {
+            if (messages[ordinal] != null) {
+                action.accept(dictionary.codeAt(ordinal), messages[ordinal]);
+            }
+        }
+    }
+
+    /**
+     * Goes through the sorted ordinals of the dictionary, codes without a message in this locale are skipped.
+     */
+    @Override
+    public void forEachWithPrefix(String prefix, BiConsumer<String, String> action) {
+        dictionary.forEachOrdinalWithPrefix(prefix, ordinal -> {
+            if (ordinal < messages.length && messages[ordinal] != null) {
+                action.accept(dictionary.codeAt(ordinal), messages[ordinal]);
+            }
+        });
+    }
+
+    /**
+     * Copies the arrays once, only the changed codes are compiled again and only their formats are dropped.
+     */
+    @Override
+    public MessageStore withChanges(Map<String, String> changes, CodeDictionary newDictionary) {
+        HeapMessageStore rebound = withDictionary(newDictionary);
+        String[] newMessages = Arrays.copyOf(rebound.messages, newDictionary.size());
+        MessageTemplate[] newTemplates = Arrays.copyOf(rebound.templates, newDictionary.size());
+        AtomicReferenceArray<MessageFormat> newFormats = new AtomicReferenceArray<>(newMessages.length);
+        int newFormatCount = 0;
+        for (int ordinal = 0; ordinal < rebound.formats.length(); ordinal++) {
+            MessageFormat format = rebound.formats.get(ordinal);
+            if (format != null) {
+                newFormats.set(ordinal, format);
+                newFormatCount++;
+            }
+        }
+        int newSize = size;
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            int ordinal = newDictionary.ordinalOf(change.getKey());
+            if (ordinal < 0) {
+                continue;
+            }
+            String message = change.getValue();
+            if (newMessages[ordinal] != null) {
+                newSize--;
+            }
+            if (message != null) {
+                newSize++;
+            }
+            newMessages[ordinal] = message;
+            newTemplates[ordinal] = message != null ? compile(message, locale) : null;
+            if (newFormats.getAndSet(ordinal, null) != null) {
+                newFormatCount--;
+            }
+        }
+        return new HeapMessageStore(locale, newDictionary, newMessages, newTemplates, newFormats,
+                new AtomicInteger(newFormatCount), newSize);
+    }
+
+    /**
+     * Shares the arrays if the new dictionary extends the current one, otherwise moves every message to its new ordinal.
+     */
+    @Override
+    public HeapMessageStore withDictionary(CodeDictionary newDictionary) {
+        if (newDictionary.extendsDictionary(dictionary)) {
+            return newDictionary == dictionary ? this
+                    : new HeapMessageStore(locale, newDictionary, messages, templates, formats, formatCount, size);
+        }
+        String[] newMessages = new String[newDictionary.size()];
+        MessageTemplate[] newTemplates = new MessageTemplate[newDictionary.size()];
+        AtomicReferenceArray<MessageFormat> newFormats = new AtomicReferenceArray<>(newDictionary.size());
+        int newFormatCount = 0;
+        for (int ordinal = 0; ordinal < messages.length; ordinal++) {
+            if (messages[ordinal] != null) {
+                int newOrdinal = newDictionary.ordinalOf(dictionary.codeAt(ordinal));
+                newMessages[newOrdinal] = messages[ordinal];
+                newTemplates[newOrdinal] = templates[ordinal];
+                MessageFormat format = formats.get(ordinal);
+                if (format != null) {
+                    newFormats.set(newOrdinal, format);
+                    newFormatCount++;
+                }
+            }
+        }
+        return new HeapMessageStore(locale, newDictionary, newMessages, newTemplates, newFormats,
+                new AtomicInteger(newFormatCount), size);
+    }
+
+    @Override
+    public CodeDictionary getDictionary() {
+        return dictionary;
+    }
+}
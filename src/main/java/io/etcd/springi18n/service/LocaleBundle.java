@@ -0,0 +1,284 @@
+package io.etcd.springi18n.service;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Immutable messages of a single locale as part of a {@link MessageSnapshot}, kept in a {@link MessageStore}.
+ * The only mutable parts are the {@link MessageFormat} cache of the store, which is derived from the immutable
+ * messages and therefore can never get out of sync with them, and the last use of the locale for evicting cold locales.
+ *
+ * <p>With lazy locale loading, a locale that isn't loaded yet or was evicted is represented by an
+ * {@link #unloaded} bundle without messages, so the locale still resolves to it and it can be loaded on first use.</p>
+ */
+final class LocaleBundle {
+
+    /**
+     * The locale these messages belong to.
+     */
+    private final Locale locale;
+
+    /**
+     * The etcd dir the messages were loaded from, message codes are the keys relative to it.
+     */
+    private final String dir;
+
+    /**
+     * Messages by code, never modified after construction.
+     */
+    private final MessageStore messages;
+
+    /**
+     * Whether the messages were loaded, {@code false} for a placeholder of a locale loaded on first use.
+     */
+    private final boolean loaded;
+
+    /**
+     * Usage epoch of the last lookup, shared by every version of the bundle so watch updates keep it.
+     */
+    private final AtomicLong lastUsed;
+
+    private LocaleBundle(Locale locale, String dir, MessageStore messages, boolean loaded, AtomicLong lastUsed) {
+        this.locale = locale;
+        this.dir = dir;
+        this.messages = messages;
+        this.loaded = loaded;
+        this.lastUsed = lastUsed;
+    }
+
+    /**
+     * Creates a bundle from the raw key-value pairs read under {@code dir}, blank messages are skipped.
+     *
+     * @param locale  the locale of the messages
+     * @param dir     the etcd dir the pairs were read from
+     * @param kvPairs the absolute etcd keys and their values
+     * @return the new bundle
+     */
+    static LocaleBundle of(Locale locale, String dir, Map<String, String> kvPairs) {
+        return of(locale, dir, kvPairs, false);
+    }
+
+    /**
+     * Creates a bundle from the raw key-value pairs read under {@code dir}, blank messages are skipped.
+     *
+     * @param locale  the locale of the messages
+     * @param dir     the etcd dir the pairs were read from
+     * @param kvPairs the absolute etcd keys and their values
+     * @param offHeap whether to store the messages in an {@link OffHeapMessageStore}
+     * @return the new bundle
+     */
+    static LocaleBundle of(Locale locale, String dir, Map<String, String> kvPairs, boolean offHeap) {
+        Builder builder = new Builder(locale, dir, kvPairs.size(), offHeap);
+        kvPairs.forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Creates a placeholder for a locale whose messages are loaded on first use.
+     *
+     * @param locale the locale
+     * @param dir    the etcd dir to load the messages from
+     * @return the bundle without messages
+     */
+    static LocaleBundle unloaded(Locale locale, String dir) {
+        return new LocaleBundle(locale, dir, HeapMessageStore.of(Map.of(), locale), false, new AtomicLong());
+    }
+
+    /**
+     * Collects the raw key-value pairs of a locale dir one at a time, e.g. while they are streamed page by page.
+     * Not thread-safe, pairs must be added from one thread at a time.
+     */
+    static final class Builder {
+
+        private final Locale locale;
+
+        private final String dir;
+
+        private final Map<String, String> messages;
+
+        private final boolean offHeap;
+
+        Builder(Locale locale, String dir, int expectedSize) {
+            this(locale, dir, expectedSize, false);
+        }
+
+        Builder(Locale locale, String dir, int expectedSize, boolean offHeap) {
+            this.locale = locale;
+            this.dir = dir;
+            this.offHeap = offHeap;
+            this.messages = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+        }
+
+        /**
+         * Adds a pair read under the dir, blank messages and keys outside the dir are skipped.
+         *
+         * @param key   the absolute etcd key
+         * @param value the message
+         */
+        void add(String key, String value) {
+            if (key.startsWith(dir) && !isBlankMessage(value)) {
+                messages.put(key.substring(dir.length()), value);
+            }
+        }
+
+        /**
+         * Adds a message by its code relative to the dir, blank messages are skipped.
+         *
+         * @param code    the message code
+         * @param message the message
+         */
+        void addMessage(String code, String message) {
+            if (!isBlankMessage(message)) {
+                messages.put(code, message);
+            }
+        }
+
+        LocaleBundle build() {
+            MessageStore store = offHeap ? OffHeapMessageStore.of(messages, locale) : HeapMessageStore.of(messages, locale);
+            return new LocaleBundle(locale, dir, store, true, new AtomicLong());
+        }
+    }
+
+    static boolean isBlankMessage(String message) {
+        return message == null || message.isBlank() || Objects.equals("''", message);
+    }
+
+    Locale getLocale() {
+        return locale;
+    }
+
+    String getDir() {
+        return dir;
+    }
+
+    int size() {
+        return messages.size();
+    }
+
+    /**
+     * @return {@code false} if this is a placeholder of a locale whose messages are loaded on first use
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Records a lookup in the given usage epoch. Only writes if the epoch changed, so lookups of a hot locale don't
+     * contend on the field.
+     *
+     * @param epoch the current usage epoch
+     */
+    void markUsed(long epoch) {
+        if (lastUsed.get() < epoch) {
+            lastUsed.set(epoch);
+        }
+    }
+
+    /**
+     * @return the usage epoch of the last lookup
+     */
+    long getLastUsed() {
+        return lastUsed.get();
+    }
+
+    boolean isOffHeap() {
+        return messages instanceof OffHeapMessageStore;
+    }
+
+    /**
+     * @return the dictionary the messages are keyed by, or {@code null} if they are stored off-heap
+     */
+    CodeDictionary getDictionary() {
+        return messages.getDictionary();
+    }
+
+    long offHeapBytes() {
+        return messages.offHeapBytes();
+    }
+
+    String getMessage(String code) {
+        return messages.get(code);
+    }
+
+    /**
+     * Renders the message of {@code code}, see {@link MessageStore#format}.
+     *
+     * @param code the message code
+     * @param args the arguments, already resolved, may be {@code null}
+     * @return the rendered message, or {@code null} if the code is unknown
+     */
+    String format(String code, Object[] args) {
+        return messages.format(code, args);
+    }
+
+    void forEach(BiConsumer<String, String> action) {
+        messages.forEach(action);
+    }
+
+    /**
+     * Calls {@code action} with every code starting with {@code prefix} and its message, in the order of the codes.
+     *
+     * @param prefix the code prefix, the empty string matches every code
+     * @param action receives the codes and messages
+     */
+    void forEachWithPrefix(String prefix, BiConsumer<String, String> action) {
+        messages.forEachWithPrefix(prefix, action);
+    }
+
+    int getMessageFormatCacheSize() {
+        return messages.getMessageFormatCacheSize();
+    }
+
+    /**
+     * Returns the {@link MessageFormat} for {@code code} if it was created before.
+     *
+     * @param code the message code
+     * @return the cached format, or {@code null}
+     */
+    MessageFormat getCachedMessageFormat(String code) {
+        return messages.getCachedMessageFormat(code);
+    }
+
+    /**
+     * Returns the cached {@link MessageFormat} for {@code code}, creating it on first use.
+     *
+     * @param code    the message code
+     * @param factory creates a format from the message and this bundle's locale
+     * @return the format, or {@code null} if the code is unknown
+     */
+    MessageFormat getMessageFormat(String code, BiFunction<String, Locale, MessageFormat> factory) {
+        return messages.getMessageFormat(code, factory);
+    }
+
+    /**
+     * Returns this bundle keyed by the given dictionary, sharing the MessageFormat cache if the dictionary extends the
+     * current one.
+     *
+     * @param dictionary the dictionary of the snapshot the bundle becomes part of, containing all codes of this bundle
+     * @return the bundle, this bundle if its messages are already keyed by the dictionary or stored off-heap
+     */
+    LocaleBundle withDictionary(CodeDictionary dictionary) {
+        MessageStore rebound = messages.withDictionary(dictionary);
+        return rebound == messages ? this : new LocaleBundle(locale, dir, rebound, loaded, lastUsed);
+    }
+
+    /**
+     * Returns a copy of this bundle with the given changes applied, only the changed codes are compiled again
+     * and only their formats are dropped.
+     *
+     * @param changes    new messages by code, a {@code null} or blank message removes the code
+     * @param dictionary the dictionary of the new snapshot, containing every added code
+     * @return the new bundle
+     */
+    LocaleBundle withChanges(Map<String, String> changes, CodeDictionary dictionary) {
+        Map<String, String> normalized = new HashMap<>(Math.max(16, (int) (changes.size() / 0.75f) + 1));
+        changes.forEach((code, message) -> normalized.put(code, isBlankMessage(message) ? null : message));
+        return new LocaleBundle(locale, dir, messages.withChanges(normalized, dictionary), loaded, lastUsed);
+    }
+}
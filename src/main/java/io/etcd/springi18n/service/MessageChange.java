@@ -0,0 +1,14 @@
+package io.etcd.springi18n.service;
+
+import java.util.Locale;
+
+/**
+ * A message added, changed or removed in a locale.
+ *
+ * @param locale   the locale of the changed bundle
+ * @param code     the message code
+ * @param message  the new message, {@code null} if the message was removed or is now blank
+ * @param revision the etcd revision of the change
+ */
+public record MessageChange(Locale locale, String code, String message, long revision) {
+}
@@ -0,0 +1,120 @@
+package io.etcd.springi18n.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Selects the message changes a {@link MessageChangeListener} is interested in. A change matches if its locale is one
+ * of the filter's locales and its code is one of the filter's codes or starts with one of its prefixes. Without
+ * locales every locale matches, without codes and prefixes every code does.
+ *
+ * <p>Filters are immutable, e.g. {@code MessageChangeFilter.forPrefixes("email.").withLocales(Locale.GERMAN)}.
+ * Locales are matched against the locales of the messages in etcd, see {@link EtcdMessageSource#getAvailableLocales()},
+ * so a listener interested in {@code de_DE} whose messages come from {@code de} registers {@code de}.</p>
+ */
+public final class MessageChangeFilter {
+
+    private static final MessageChangeFilter ALL = new MessageChangeFilter(Set.of(), Set.of(), Set.of());
+
+    private final Set<Locale> locales;
+
+    private final Set<String> codes;
+
+    private final Set<String> prefixes;
+
+    private MessageChangeFilter(Set<Locale> locales, Set<String> codes, Set<String> prefixes) {
+        this.locales = locales;
+        this.codes = codes;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * @return a filter matching every change
+     */
+    public static MessageChangeFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param codes the message codes
+     * @return a filter matching the changes of the given codes in every locale
+     */
+    public static MessageChangeFilter forCodes(String... codes) {
+        return ALL.withCodes(codes);
+    }
+
+    /**
+     * @param prefixes the code prefixes, e.g. {@code email.}
+     * @return a filter matching the changes of codes starting with one of the prefixes in every locale
+     */
+    public static MessageChangeFilter forPrefixes(String... prefixes) {
+        return ALL.withPrefixes(prefixes);
+    }
+
+    /**
+     * @param locales the locales
+     * @return a filter matching every change in the given locales
+     */
+    public static MessageChangeFilter forLocales(Locale... locales) {
+        return ALL.withLocales(locales);
+    }
+
+    /**
+     * @param codes further message codes
+     * @return a filter that also matches the changes of the given codes
+     */
+    public MessageChangeFilter withCodes(String... codes) {
+        return new MessageChangeFilter(locales, union(this.codes, Arrays.asList(codes)), prefixes);
+    }
+
+    /**
+     * @param prefixes further code prefixes
+     * @return a filter that also matches the changes of codes starting with one of the prefixes
+     */
+    public MessageChangeFilter withPrefixes(String... prefixes) {
+        return new MessageChangeFilter(locales, codes, union(this.prefixes, Arrays.asList(prefixes)));
+    }
+
+    /**
+     * @param locales further locales
+     * @return a filter that also matches the changes in the given locales
+     */
+    public MessageChangeFilter withLocales(Locale... locales) {
+        return new MessageChangeFilter(union(this.locales, Arrays.asList(locales)), codes, prefixes);
+    }
+
+    private static <T> Set<T> union(Collection<T> existing, Collection<T> added) {
+        Set<T> result = new LinkedHashSet<>(existing);
+        result.addAll(added);
+        return Set.copyOf(result);
+    }
+
+    /**
+     * @param change the change
+     * @return whether the change is selected by this filter
+     */
+    public boolean matches(MessageChange change) {
+        if (!locales.isEmpty() && !locales.contains(change.locale())) {
+            return false;
+        }
+        if (codes.isEmpty() && prefixes.isEmpty()) {
+            return true;
+        }
+        return codes.contains(change.code()) || prefixes.stream().anyMatch(change.code()::startsWith);
+    }
+
+    /**
+     * @return whether this filter matches every change
+     */
+    boolean matchesAll() {
+        return locales.isEmpty() && codes.isEmpty() && prefixes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "MessageChangeFilter[locales=" + locales + ", codes=" + codes + ", prefixes=" + prefixes + "]";
+    }
+}
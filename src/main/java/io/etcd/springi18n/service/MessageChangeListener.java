@@ -0,0 +1,21 @@
+package io.etcd.springi18n.service;
+
+/**
+ * Receives the message changes an {@link EtcdMessageSource} publishes, e.g. to invalidate caches derived from
+ * translated messages.
+ *
+ * @see EtcdMessageSource#addChangeListener(MessageChangeFilter, MessageChangeListener)
+ */
+@FunctionalInterface
+public interface MessageChangeListener {
+
+    /**
+     * Called with the changes the listener's filter matches, in revision order and never concurrently for the same
+     * listener. Changes published while the listener was busy are passed on in one batch.
+     *
+     * @param changes the changes after {@link MessageChanges#previousRevision()} up to
+     *                {@link MessageChanges#revision()}. A previous revision of {@code 0} means the messages were
+     *                loaded without known changes, so everything derived from them should be dropped.
+     */
+    void onChanges(MessageChanges changes);
+}
@@ -0,0 +1,130 @@
+package io.etcd.springi18n.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The registration of a {@link MessageChangeListener}, closing it stops the notifications.
+ *
+ * <p>Publishing only queues the changes, the listener is called by a task on the listener executor, so a slow
+ * listener never holds up the watch or other listeners. The changes queued while the listener was busy are passed
+ * on as one batch. Changes the filter doesn't match are dropped, and a batch without matching changes is not passed
+ * on: the next batch then reaches back to the last revision the listener was told about.</p>
+ */
+@Slf4j
+public final class MessageChangeSubscription implements AutoCloseable {
+
+    private final MessageChangeFilter filter;
+
+    private final MessageChangeListener listener;
+
+    private final Executor executor;
+
+    /**
+     * The subscriptions of the message source, this one removes itself on close.
+     */
+    private final Collection<MessageChangeSubscription> subscriptions;
+
+    private final long startRevision;
+
+    private final Queue<MessageChanges> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * The revision the listener was last told about, only accessed by the draining task.
+     */
+    private long notifiedRevision;
+
+    private volatile boolean closed;
+
+    MessageChangeSubscription(MessageChangeFilter filter, MessageChangeListener listener, Executor executor, long startRevision,
+                              Collection<MessageChangeSubscription> subscriptions) {
+        this.filter = filter;
+        this.listener = listener;
+        this.executor = executor;
+        this.startRevision = startRevision;
+        this.notifiedRevision = startRevision;
+        this.subscriptions = subscriptions;
+    }
+
+    /**
+     * @return the revision of the messages served when the listener was added, the first notification reaches back
+     * to it
+     */
+    public long getStartRevision() {
+        return startRevision;
+    }
+
+    /**
+     * Stops the notifications, a notification already running completes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pending.clear();
+        subscriptions.remove(this);
+    }
+
+    /**
+     * Queues published changes and schedules notifying the listener, never blocks.
+     */
+    void publish(MessageChanges changes) {
+        if (closed) {
+            return;
+        }
+        pending.add(changes);
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                log.debug("message change listener executor is shut down, dropping changes up to revision: " + changes.revision());
+                pending.clear();
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            List<MessageChange> matching = new ArrayList<>();
+            boolean unknown = false;
+            long revision = -1;
+            MessageChanges changes;
+            while (!closed && (changes = pending.poll()) != null) {
+                unknown |= changes.previousRevision() == 0;
+                revision = changes.revision();
+                if (filter.matchesAll()) {
+                    matching.addAll(changes.changes());
+                } else {
+                    for (MessageChange change : changes.changes()) {
+                        if (filter.matches(change)) {
+                            matching.add(change);
+                        }
+                    }
+                }
+            }
+            if (!closed && revision >= 0 && (unknown || !matching.isEmpty())) {
+                notifyListener(new MessageChanges(unknown ? 0 : notifiedRevision, revision, List.copyOf(matching)));
+                notifiedRevision = revision;
+            }
+            draining.set(false);
+        } while (!closed && !pending.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    private void notifyListener(MessageChanges changes) {
+        try {
+            listener.onChanges(changes);
+        } catch (RuntimeException e) {
+            log.error("message change listener failed at revision: " + changes.revision(), e);
+        }
+    }
+}
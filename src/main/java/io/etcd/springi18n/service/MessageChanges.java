@@ -0,0 +1,14 @@
+package io.etcd.springi18n.service;
+
+import java.util.List;
+
+/**
+ * The message changes published with a new snapshot, in revision order.
+ *
+ * @param previousRevision the revision of the snapshot the changes apply to, {@code 0} if they are unknown because
+ *                         the messages were loaded for the first time
+ * @param revision         the revision of the new snapshot
+ * @param changes          the changes, empty if only the revision advanced or the changes are unknown
+ */
+public record MessageChanges(long previousRevision, long revision, List<MessageChange> changes) {
+}
@@ -0,0 +1,377 @@
+package io.etcd.springi18n.service;
+
+import io.etcd.jetcd.watch.WatchEvent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable view of all loaded locales and their messages at a given etcd revision.
+ *
+ * <p>A new snapshot is built for every reload or batch of watch events and published with a single volatile write,
+ * so readers either see the previous or the next snapshot but never a half-built one. A reader keeps the snapshot it
+ * started with until it is done, older snapshots become garbage once the last reader drops them.</p>
+ */
+final class MessageSnapshot {
+
+    /**
+     * Snapshot used before the first load has finished.
+     */
+    static final MessageSnapshot EMPTY = new MessageSnapshot(0, Map.of());
+
+    /**
+     * Maximum number of requested locales remembered per snapshot on top of the precomputed ones,
+     * keeps arbitrary client locales from growing the index without bound.
+     */
+    private static final int MAX_RESOLVED_LOCALES = 256;
+
+    /**
+     * Marks a requested locale that resolves to no bundle, the index can't hold {@code null}.
+     */
+    private static final LocaleBundle NO_BUNDLE = LocaleBundle.of(Locale.ROOT, "", Map.of());
+
+    /**
+     * Number of removed codes up to which watch events never compact the dictionary.
+     */
+    static final int MIN_DICTIONARY_COMPACTION_REMOVALS = 1024;
+
+    /**
+     * The etcd revision the snapshot reflects.
+     */
+    private final long revision;
+
+    /**
+     * Bundles by locale, in the order the locales are defined in etcd.
+     */
+    private final Map<Locale, LocaleBundle> bundles;
+
+    /**
+     * Codes of all heap-stored bundles, which are all keyed by this one dictionary.
+     */
+    private final CodeDictionary dictionary;
+
+    /**
+     * Codes removed from a heap-stored locale by watch events since the dictionary was last built, an upper bound of
+     * the unused codes it holds.
+     */
+    private final int removedCodes;
+
+    /**
+     * Requested locale to resolved bundle. Precomputed for every loaded locale and its language and country
+     * fallbacks, other requested locales are added on their first lookup. A hit is a single hash probe.
+     */
+    private final ConcurrentMap<Locale, LocaleBundle> localeIndex;
+
+    /**
+     * Creates a snapshot of the given bundles, heap-stored bundles not keyed by a common dictionary yet are moved
+     * to one dictionary of all their codes.
+     *
+     * @param revision the etcd revision the bundles reflect
+     * @param bundles  the bundles by locale
+     */
+    MessageSnapshot(long revision, Map<Locale, LocaleBundle> bundles) {
+        this(revision, bundles, 0);
+    }
+
+    private MessageSnapshot(long revision, Map<Locale, LocaleBundle> bundles, int removedCodes) {
+        this.revision = revision;
+        this.removedCodes = removedCodes;
+        this.dictionary = sharedDictionary(bundles.values());
+        // sorted here rather than on the first prefix query, an extended dictionary merges into its base's order
+        this.dictionary.sortedOrdinals();
+        Map<Locale, LocaleBundle> bound = new LinkedHashMap<>();
+        bundles.forEach((locale, bundle) -> bound.put(locale, bundle.withDictionary(dictionary)));
+        this.bundles = Collections.unmodifiableMap(bound);
+        this.localeIndex = buildLocaleIndex(this.bundles);
+    }
+
+    /**
+     * Returns the dictionary all bundles are keyed by if they share one already, otherwise builds the union of their
+     * codes, starting from the largest dictionary so its bundle can keep its arrays.
+     */
+    private static CodeDictionary sharedDictionary(Collection<LocaleBundle> bundles) {
+        CodeDictionary largest = null;
+        boolean shared = true;
+        for (LocaleBundle bundle : bundles) {
+            CodeDictionary dictionary = bundle.getDictionary();
+            if (dictionary != null && dictionary != largest) {
+                shared = largest == null;
+                if (largest == null || dictionary.size() > largest.size()) {
+                    largest = dictionary;
+                }
+            }
+        }
+        if (largest == null) {
+            return CodeDictionary.EMPTY;
+        }
+        if (shared) {
+            return largest;
+        }
+        CodeDictionary.Builder builder = new CodeDictionary.Builder(largest, 0);
+        for (LocaleBundle bundle : bundles) {
+            CodeDictionary dictionary = bundle.getDictionary();
+            if (dictionary != null && dictionary != largest) {
+                for (int ordinal = 0; ordinal < dictionary.size(); ordinal++) {
+                    builder.add(dictionary.codeAt(ordinal));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static ConcurrentMap<Locale, LocaleBundle> buildLocaleIndex(Map<Locale, LocaleBundle> bundles) {
+        ConcurrentMap<Locale, LocaleBundle> index = new ConcurrentHashMap<>();
+        bundles.forEach(index::put);
+        bundles.forEach((locale, bundle) -> {
+            index.putIfAbsent(new Locale(locale.getLanguage(), locale.getCountry()), bundle);
+            index.putIfAbsent(new Locale(locale.getLanguage()), bundle);
+        });
+        return index;
+    }
+
+    long getRevision() {
+        return revision;
+    }
+
+    Set<Locale> getLocales() {
+        return bundles.keySet();
+    }
+
+    Map<Locale, LocaleBundle> getBundles() {
+        return bundles;
+    }
+
+    /**
+     * Finds the bundle for the requested locale, matching language, country and variant first and
+     * falling back to language and country, then to the language alone.
+     *
+     * @param locale the requested locale
+     * @return the matching bundle, or {@code null} if no locale with this language is loaded
+     */
+    LocaleBundle findBundle(Locale locale) {
+        LocaleBundle bundle = localeIndex.get(locale);
+        if (bundle == null) {
+            bundle = resolveBundle(locale);
+        }
+        return bundle == NO_BUNDLE ? null : bundle;
+    }
+
+    private LocaleBundle resolveBundle(Locale locale) {
+        LocaleBundle bundle = localeIndex.get(new Locale(locale.getLanguage(), locale.getCountry(), locale.getVariant()));
+        if (bundle == null) {
+            bundle = localeIndex.get(new Locale(locale.getLanguage(), locale.getCountry()));
+        }
+        if (bundle == null) {
+            bundle = localeIndex.getOrDefault(new Locale(locale.getLanguage()), NO_BUNDLE);
+        }
+        if (localeIndex.size() < MAX_RESOLVED_LOCALES) {
+            localeIndex.putIfAbsent(locale, bundle);
+        }
+        return bundle;
+    }
+
+    /**
+     * Returns a snapshot sharing all bundles with this one at a newer revision, e.g. after a watch response
+     * reported that no event up to that revision is missing.
+     *
+     * @param newRevision the revision reached
+     * @return the new snapshot, or this snapshot if it is not older than {@code newRevision}
+     */
+    MessageSnapshot advancedTo(long newRevision) {
+        return newRevision > revision ? new MessageSnapshot(newRevision, bundles, removedCodes) : this;
+    }
+
+    /**
+     * Returns a snapshot at the same revision with the bundles of some locales replaced, e.g. a locale loaded on
+     * first use or evicted.
+     *
+     * @param replacements the new bundles by locale, locales not part of this snapshot are ignored
+     * @return the new snapshot
+     */
+    MessageSnapshot withBundles(Map<Locale, LocaleBundle> replacements) {
+        Map<Locale, LocaleBundle> newBundles = new LinkedHashMap<>(bundles);
+        newBundles.replaceAll((locale, bundle) -> replacements.getOrDefault(locale, bundle));
+        return new MessageSnapshot(revision, newBundles, removedCodes);
+    }
+
+    CodeDictionary getDictionary() {
+        return dictionary;
+    }
+
+    long getOffHeapBytes() {
+        long bytes = 0;
+        for (LocaleBundle bundle : bundles.values()) {
+            bytes += bundle.offHeapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of cached MessageFormats over all locales.
+     *
+     * @return the number of cached formats
+     */
+    int getMessageFormatCacheSize() {
+        int size = 0;
+        for (LocaleBundle bundle : bundles.values()) {
+            size += bundle.getMessageFormatCacheSize();
+        }
+        return size;
+    }
+
+    /**
+     * Returns a snapshot with the given PUT and DELETE events applied. Every touched locale is copied once,
+     * untouched locales are shared with this snapshot. Locales that aren't loaded ignore their events. Added codes
+     * extend the dictionary, which keeps the ordinals of all existing codes, so untouched locales only need to point
+     * to the new dictionary, a batch without new codes keeps the dictionary. Events at or below this snapshot's
+     * revision are skipped, as are keys outside every known locale dir.
+     *
+     * <p>Removed codes stay in the dictionary. Once the removals since it was built exceed
+     * {@link #MIN_DICTIONARY_COMPACTION_REMOVALS} and a quarter of its codes, a dictionary of the codes still used is
+     * built and every heap-stored locale moves to it, so a long-running watch doesn't grow it without bound.</p>
+     *
+     * @param events the watch events in revision order
+     * @return the new snapshot, or this snapshot if no event applied
+     */
+    MessageSnapshot withEvents(List<WatchEvent> events) {
+        Map<Locale, Map<String, String>> changesByLocale = new HashMap<>();
+        long newRevision = revision;
+        for (WatchEvent event : events) {
+            newRevision = Math.max(newRevision, event.getKeyValue().getModRevision());
+        }
+        for (MessageChange change : changesOf(events)) {
+            changesByLocale.computeIfAbsent(change.locale(), l -> new HashMap<>()).put(change.code(), change.message());
+        }
+
+        if (changesByLocale.isEmpty()) {
+            return newRevision == revision ? this : new MessageSnapshot(newRevision, bundles, removedCodes);
+        }
+        CodeDictionary.Builder dictionaryBuilder = null;
+        int newRemovedCodes = removedCodes;
+        for (Map.Entry<Locale, Map<String, String>> localeChanges : changesByLocale.entrySet()) {
+            boolean heapStored = bundles.get(localeChanges.getKey()).getDictionary() != null;
+            for (Map.Entry<String, String> change : localeChanges.getValue().entrySet()) {
+                if (change.getValue() == null) {
+                    newRemovedCodes += heapStored ? 1 : 0;
+                } else if (dictionaryBuilder != null) {
+                    dictionaryBuilder.add(change.getKey());
+                } else if (dictionary.ordinalOf(change.getKey()) < 0) {
+                    dictionaryBuilder = new CodeDictionary.Builder(dictionary, 1);
+                    dictionaryBuilder.add(change.getKey());
+                }
+            }
+        }
+        CodeDictionary newDictionary = dictionaryBuilder != null ? dictionaryBuilder.build() : dictionary;
+        Map<Locale, LocaleBundle> newBundles = new LinkedHashMap<>();
+        bundles.forEach((locale, bundle) -> {
+            Map<String, String> changes = changesByLocale.get(locale);
+            newBundles.put(locale, changes != null ? bundle.withChanges(changes, newDictionary) : bundle.withDictionary(newDictionary));
+        });
+        if (newRemovedCodes > Math.max(MIN_DICTIONARY_COMPACTION_REMOVALS, newDictionary.size() / 4)) {
+            return new MessageSnapshot(newRevision, compacted(newBundles), 0);
+        }
+        return new MessageSnapshot(newRevision, newBundles, newRemovedCodes);
+    }
+
+    /**
+     * Moves the heap-stored bundles to a new dictionary holding only the codes they still use.
+     *
+     * @param bundles the bundles by locale
+     * @return the bundles keyed by the new dictionary, in the same order
+     */
+    private static Map<Locale, LocaleBundle> compacted(Map<Locale, LocaleBundle> bundles) {
+        Set<String> usedCodes = new HashSet<>();
+        for (LocaleBundle bundle : bundles.values()) {
+            if (bundle.getDictionary() != null) {
+                bundle.forEach((code, message) -> usedCodes.add(code));
+            }
+        }
+        CodeDictionary compacted = CodeDictionary.of(usedCodes);
+        Map<Locale, LocaleBundle> rebound = new LinkedHashMap<>();
+        bundles.forEach((locale, bundle) -> rebound.put(locale, bundle.withDictionary(compacted)));
+        return rebound;
+    }
+
+    /**
+     * Returns the message changes the given watch events make to the loaded bundles of this snapshot, in event order.
+     * Events this snapshot already reflects and keys outside every loaded locale dir are skipped.
+     *
+     * @param events the PUT and DELETE events
+     * @return the changes, blank messages are reported as removed
+     */
+    List<MessageChange> changesOf(List<WatchEvent> events) {
+        List<MessageChange> changes = new ArrayList<>();
+        for (WatchEvent event : events) {
+            long modRevision = event.getKeyValue().getModRevision();
+            if (modRevision != 0 && modRevision <= revision) {
+                continue;
+            }
+            String key = event.getKeyValue().getKey().toString();
+            for (LocaleBundle bundle : bundles.values()) {
+                String dir = bundle.getDir();
+                if (bundle.isLoaded() && key.startsWith(dir) && key.length() > dir.length()) {
+                    String message = Objects.equals(event.getEventType(), WatchEvent.EventType.DELETE)
+                            ? null
+                            : event.getKeyValue().getValue().toString();
+                    changes.add(new MessageChange(bundle.getLocale(), key.substring(dir.length()),
+                            LocaleBundle.isBlankMessage(message) ? null : message, Math.max(modRevision, revision)));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Compares the loaded bundles of this snapshot with those of a later one, e.g. a full reload. Takes a merge of
+     * the codes of every locale loaded in both, a locale only loaded in one of them is reported as all added or all
+     * removed.
+     *
+     * @param next the later snapshot
+     * @return the changes in locale and code order, all at the revision of {@code next}
+     */
+    List<MessageChange> changesTo(MessageSnapshot next) {
+        List<MessageChange> changes = new ArrayList<>();
+        Set<Locale> locales = new LinkedHashSet<>(bundles.keySet());
+        locales.addAll(next.bundles.keySet());
+        for (Locale locale : locales) {
+            LocaleBundle before = bundles.get(locale);
+            LocaleBundle after = next.bundles.get(locale);
+            if ((before != null && !before.isLoaded()) || (after != null && !after.isLoaded())) {
+                continue;
+            }
+            List<Map.Entry<String, String>> beforeMessages = entriesOf(before);
+            List<Map.Entry<String, String>> afterMessages = entriesOf(after);
+            int i = 0;
+            int j = 0;
+            while (i < beforeMessages.size() || j < afterMessages.size()) {
+                int order = i == beforeMessages.size() ? 1
+                        : j == afterMessages.size() ? -1
+                        : beforeMessages.get(i).getKey().compareTo(afterMessages.get(j).getKey());
+                if (order < 0) {
+                    changes.add(new MessageChange(locale, beforeMessages.get(i++).getKey(), null, next.revision));
+                } else if (order > 0) {
+                    Map.Entry<String, String> added = afterMessages.get(j++);
+                    changes.add(new MessageChange(locale, added.getKey(), added.getValue(), next.revision));
+                } else {
+                    Map.Entry<String, String> changed = afterMessages.get(j++);
+                    if (!beforeMessages.get(i++).getValue().equals(changed.getValue())) {
+                        changes.add(new MessageChange(locale, changed.getKey(), changed.getValue(), next.revision));
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * @return the messages of the bundle in code order, empty for {@code null}
+     */
+    private static List<Map.Entry<String, String>> entriesOf(LocaleBundle bundle) {
+        List<Map.Entry<String, String>> entries = new ArrayList<>(bundle != null ? bundle.size() : 0);
+        if (bundle != null) {
+            bundle.forEachWithPrefix("", (code, message) -> entries.add(Map.entry(code, message)));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,97 @@
+package io.etcd.springi18n.service;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Immutable messages of a single locale by code, the storage behind a {@link LocaleBundle}.
+ * Implementations are safe for concurrent reads and are replaced as a whole, never modified. The only mutable part is
+ * the cache of the {@link MessageFormat}s created for the messages, which is derived from them.
+ */
+interface MessageStore {
+
+    /**
+     * @param code the message code
+     * @return the message, or {@code null} if the code is unknown
+     */
+    String get(String code);
+
+    /**
+     * Renders the message of {@code code} with its {@link MessageTemplate}, without taking any lock for plain arguments.
+     *
+     * @param code the message code
+     * @param args the arguments, already resolved, may be {@code null}
+     * @return the rendered message, or {@code null} if the code is unknown
+     */
+    String format(String code, Object[] args);
+
+    int size();
+
+    /**
+     * @param code the message code
+     * @return the cached {@link MessageFormat} of the code, or {@code null} if none was created yet
+     */
+    MessageFormat getCachedMessageFormat(String code);
+
+    /**
+     * Returns the cached {@link MessageFormat} of {@code code}, creating it on first use.
+     *
+     * @param code    the message code
+     * @param factory creates a format from the message and the locale of the store
+     * @return the format, or {@code null} if the code is unknown
+     */
+    MessageFormat getMessageFormat(String code, BiFunction<String, Locale, MessageFormat> factory);
+
+    /**
+     * @return the number of cached {@link MessageFormat}s
+     */
+    int getMessageFormatCacheSize();
+
+    void forEach(BiConsumer<String, String> action);
+
+    /**
+     * Calls {@code action} with every code starting with {@code prefix} and its message, in the order of the codes.
+     * Takes a binary search plus the number of matching codes.
+     *
+     * @param prefix the code prefix, the empty string matches every code
+     * @param action receives the codes and messages
+     */
+    void forEachWithPrefix(String prefix, BiConsumer<String, String> action);
+
+    /**
+     * Returns a copy of this store with the given changes applied, the cached formats of unchanged codes are kept.
+     *
+     * @param changes    new messages by code, a {@code null} message removes the code
+     * @param dictionary the dictionary of the new snapshot, containing every added code
+     * @return the new store
+     */
+    MessageStore withChanges(Map<String, String> changes, CodeDictionary dictionary);
+
+    /**
+     * Returns this store keyed by the given dictionary, which must contain all codes of this store.
+     * Stores not keyed by the shared dictionary return themselves.
+     *
+     * @param dictionary the dictionary of the snapshot the store becomes part of
+     * @return the store
+     */
+    default MessageStore withDictionary(CodeDictionary dictionary) {
+        return this;
+    }
+
+    /**
+     * @return the dictionary this store is keyed by, or {@code null} if it isn't keyed by a shared dictionary
+     */
+    default CodeDictionary getDictionary() {
+        return null;
+    }
+
+    /**
+     * @return the bytes held outside the Java heap
+     */
+    default long offHeapBytes() {
+        return 0;
+    }
+}
@@ -0,0 +1,207 @@
+package io.etcd.springi18n.service;
+
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A message pattern compiled once into literal and argument segments, formatted without any shared mutable state.
+ *
+ * <p>Follows the {@link MessageFormat} pattern syntax: text in single quotes is literal, {@code ''} is a single quote
+ * and {@code {n}} is replaced with the n-th argument, formatted the way {@link MessageFormat} formats an argument
+ * without a type. Patterns using format types or styles, e.g. {@code {0,number,#.##}} or {@code {0,choice,...}},
+ * are not compiled and delegate to a {@link MessageFormat} instead, which is synchronized on like
+ * {@link org.springframework.context.support.MessageSourceSupport} does.</p>
+ */
+final class MessageTemplate {
+
+    private static final int NO_ARGUMENT = -1;
+
+    /**
+     * Number formats by locale, never used directly but cloned, the formats are not thread-safe.
+     * Creating one looks up the locale's symbols and patterns, a clone only copies its fields.
+     */
+    private static final ConcurrentMap<Locale, NumberFormat> NUMBER_FORMAT_PROTOTYPES = new ConcurrentHashMap<>();
+
+    /**
+     * Date formats by locale, cloned like {@link #NUMBER_FORMAT_PROTOTYPES}.
+     */
+    private static final ConcurrentMap<Locale, DateFormat> DATE_FORMAT_PROTOTYPES = new ConcurrentHashMap<>();
+
+    /**
+     * The literal text before each argument, {@code literals.length == argumentIndexes.length + 1}.
+     */
+    private final String[] literals;
+
+    /**
+     * The argument index of each argument segment.
+     */
+    private final int[] argumentIndexes;
+
+    /**
+     * The pattern as written, used to create the {@link MessageFormat} of complex patterns.
+     */
+    private final String pattern;
+
+    private final Locale locale;
+
+    /**
+     * Whether the pattern uses a format type or style and must be formatted by a {@link MessageFormat}.
+     */
+    private final boolean complex;
+
+    /**
+     * Created on first use for complex patterns only.
+     */
+    private volatile MessageFormat messageFormat;
+
+    private MessageTemplate(String pattern, Locale locale, String[] literals, int[] argumentIndexes, boolean complex) {
+        this.pattern = pattern;
+        this.locale = locale;
+        this.literals = literals;
+        this.argumentIndexes = argumentIndexes;
+        this.complex = complex;
+    }
+
+    /**
+     * Whether a message has to be compiled to be rendered, a message without braces and quotes renders as itself.
+     *
+     * @param message the message
+     * @return {@code true} if the message contains a brace or a single quote
+     */
+    static boolean needsFormatting(String message) {
+        return message.indexOf('{') >= 0 || message.indexOf('\'') >= 0;
+    }
+
+    /**
+     * Compiles a {@link MessageFormat} pattern.
+     *
+     * @param pattern the pattern
+     * @param locale  the locale numbers and dates are formatted in
+     * @return the template, never {@code null}
+     */
+    static MessageTemplate compile(String pattern, Locale locale) {
+        int length = pattern.length();
+        int[] argumentIndexes = new int[4];
+        String[] literals = new String[5];
+        int arguments = 0;
+        StringBuilder literal = new StringBuilder(length);
+        boolean quoted = false;
+        int i = 0;
+        while (i < length) {
+            char ch = pattern.charAt(i);
+            if (ch == '\'') {
+                if (i + 1 < length && pattern.charAt(i + 1) == '\'') {
+                    literal.append('\'');
+                    i += 2;
+                    continue;
+                }
+                quoted = !quoted;
+                i++;
+            } else if (ch == '{' && !quoted) {
+                int end = pattern.indexOf('}', i + 1);
+                int argumentIndex = end < 0 ? NO_ARGUMENT : parseArgumentIndex(pattern, i + 1, end);
+                if (argumentIndex == NO_ARGUMENT) {
+                    return new MessageTemplate(pattern, locale, null, null, true);
+                }
+                if (arguments == argumentIndexes.length) {
+                    argumentIndexes = Arrays.copyOf(argumentIndexes, arguments * 2);
+                    literals = Arrays.copyOf(literals, arguments * 2 + 1);
+                }
+                literals[arguments] = literal.toString();
+                argumentIndexes[arguments++] = argumentIndex;
+                literal.setLength(0);
+                i = end + 1;
+            } else {
+                literal.append(ch);
+                i++;
+            }
+        }
+        literals[arguments] = literal.toString();
+        return new MessageTemplate(pattern, locale,
+                Arrays.copyOf(literals, arguments + 1),
+                Arrays.copyOf(argumentIndexes, arguments),
+                false);
+    }
+
+    /**
+     * Parses the argument index between the braces, only plain non-negative numbers are accepted.
+     *
+     * @return the index, or {@link #NO_ARGUMENT} if the argument has a format type or is malformed
+     */
+    private static int parseArgumentIndex(String pattern, int start, int end) {
+        if (start == end || end - start > 9) {
+            return NO_ARGUMENT;
+        }
+        int index = 0;
+        for (int i = start; i < end; i++) {
+            char ch = pattern.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return NO_ARGUMENT;
+            }
+            index = index * 10 + (ch - '0');
+        }
+        return index;
+    }
+
+    /**
+     * Renders the template.
+     *
+     * @param args the arguments, may be {@code null} or shorter than the highest argument index,
+     *             missing arguments are rendered as {@code {n}} like {@link MessageFormat} does
+     * @return the rendered message
+     */
+    String format(Object[] args) {
+        if (complex) {
+            MessageFormat format = getMessageFormat();
+            synchronized (format) {
+                return format.format(args);
+            }
+        }
+        if (argumentIndexes.length == 0) {
+            return literals[0];
+        }
+        StringBuilder result = new StringBuilder(pattern.length() + 16 * argumentIndexes.length);
+        for (int i = 0; i < argumentIndexes.length; i++) {
+            result.append(literals[i]);
+            appendArgument(result, argumentIndexes[i], args);
+        }
+        return result.append(literals[argumentIndexes.length]).toString();
+    }
+
+    private void appendArgument(StringBuilder result, int argumentIndex, Object[] args) {
+        if (args == null || argumentIndex >= args.length) {
+            result.append('{').append(argumentIndex).append('}');
+            return;
+        }
+        Object arg = args[argumentIndex];
+        if (arg == null) {
+            result.append("null");
+        } else if (arg instanceof String string) {
+            result.append(string);
+        } else if (arg instanceof Number) {
+            NumberFormat prototype = NUMBER_FORMAT_PROTOTYPES.computeIfAbsent(locale, NumberFormat::getInstance);
+            result.append(((NumberFormat) prototype.clone()).format(arg));
+        } else if (arg instanceof Date) {
+            DateFormat prototype = DATE_FORMAT_PROTOTYPES.computeIfAbsent(locale,
+                    l -> DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, l));
+            result.append(((DateFormat) prototype.clone()).format(arg));
+        } else {
+            result.append(arg);
+        }
+    }
+
+    private MessageFormat getMessageFormat() {
+        MessageFormat result = messageFormat;
+        if (result == null) {
+            result = new MessageFormat(pattern, locale);
+            messageFormat = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+package io.etcd.springi18n.service;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Codes of a {@link MessageSnapshot} that resolved to no message, neither in the snapshot nor in the common messages
+ * or the parent message source. Repeated lookups of such a code skip the fallback chain, which with a parent message
+ * source like a {@link org.springframework.context.support.ResourceBundleMessageSource} costs far more than the
+ * lookup in the snapshot.
+ *
+ * <p>A cache belongs to a single snapshot and is dropped with it, so a code added by a reload or watch update
+ * is found right away and a parent whose messages change is asked again on the next snapshot. The cache stops taking
+ * codes once it holds {@code maxSize} of them.</p>
+ */
+final class MissingCodeCache {
+
+    private final MessageSnapshot snapshot;
+
+    private final int maxSize;
+
+    /**
+     * Missing codes by requested locale.
+     */
+    private final ConcurrentMap<Locale, Set<String>> codes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    MissingCodeCache(MessageSnapshot snapshot, int maxSize) {
+        this.snapshot = snapshot;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param snapshot the snapshot a lookup read
+     * @return whether this cache holds the missing codes of that snapshot
+     */
+    boolean isFor(MessageSnapshot snapshot) {
+        return this.snapshot == snapshot;
+    }
+
+    /**
+     * @param locale the requested locale
+     * @param code   the message code
+     * @return whether the code is known to resolve to no message in the locale
+     */
+    boolean contains(Locale locale, String code) {
+        Set<String> missing = codes.get(locale);
+        return missing != null && missing.contains(code);
+    }
+
+    /**
+     * Remembers a code that resolved to no message, unless the cache is full.
+     *
+     * @param locale the requested locale
+     * @param code   the message code
+     */
+    void add(Locale locale, String code) {
+        if (size.get() >= maxSize) {
+            return;
+        }
+        if (codes.computeIfAbsent(locale, l -> ConcurrentHashMap.newKeySet()).add(code)) {
+            size.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.etcd.springi18n.service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts a sample of the lookups of missing codes per locale, to show which codes translators still need to add.
+ *
+ * <p>Only one in {@code sampleEvery} misses is counted and the counts are scaled back up when read, so the
+ * lookup path mostly pays for a random number. At most {@link #MAX_CODES_PER_LOCALE} codes are counted per locale,
+ * a new code replaces the one counted least, so rare codes come and go while the frequent ones stay.</p>
+ */
+final class MissingCodeTracker {
+
+    /**
+     * Maximum number of codes counted per locale.
+     */
+    static final int MAX_CODES_PER_LOCALE = 1_000;
+
+    private final int sampleEvery;
+
+    /**
+     * Sampled miss counts by code, by locale.
+     */
+    private final ConcurrentMap<Locale, ConcurrentMap<String, LongAdder>> counts = new ConcurrentHashMap<>();
+
+    /**
+     * @param sampleEvery count one in this many misses, {@code 1} counts every miss
+     */
+    MissingCodeTracker(int sampleEvery) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+
+    /**
+     * Records the lookup of a missing code, if it is sampled.
+     *
+     * @param locale the locale of the bundle the code was looked up in, {@link Locale#ROOT} if no bundle matched
+     * @param code   the message code
+     */
+    void record(Locale locale, String code) {
+        if (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            return;
+        }
+        ConcurrentMap<String, LongAdder> codes = counts.get(locale);
+        if (codes == null) {
+            codes = counts.computeIfAbsent(locale, l -> new ConcurrentHashMap<>());
+        }
+        LongAdder count = codes.get(code);
+        if (count == null) {
+            if (codes.size() >= MAX_CODES_PER_LOCALE) {
+                evictLeastCounted(codes);
+            }
+            count = codes.computeIfAbsent(code, c -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    private static void evictLeastCounted(ConcurrentMap<String, LongAdder> codes) {
+        codes.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().sum()))
+                .ifPresent(entry -> codes.remove(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Returns the most often missed codes of a locale with their estimated number of lookups.
+     *
+     * @param locale the locale
+     * @param limit  the maximum number of codes
+     * @return the estimated lookups by code, most frequent first
+     */
+    Map<String, Long> getTopMissingCodes(Locale locale, int limit) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        ConcurrentMap<String, LongAdder> codes = counts.get(locale);
+        if (codes == null) {
+            return result;
+        }
+        codes.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum() * sampleEvery))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    /**
+     * @return the locales with counted misses
+     */
+    Iterable<Locale> getLocales() {
+        return counts.keySet();
+    }
+}
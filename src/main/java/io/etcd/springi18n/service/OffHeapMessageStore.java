@@ -0,0 +1,365 @@
+package io.etcd.springi18n.service;
+
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Keeps codes and messages UTF-8 encoded in one direct {@link ByteBuffer}, so a large catalogue costs a handful of
+ * heap objects instead of a String and a map node per message. Messages are decoded on every lookup, templates are
+ * compiled on first use so only the ones actually rendered are kept on the heap. Off-heap stores have their own index
+ * and aren't keyed by the shared {@link CodeDictionary}.
+ *
+ * <p>Each entry is laid out as {@code [int code length][code][int message length][message]}, entries are written in
+ * the order of their codes. Entries are found through an open-addressing index of two int arrays, holding the code's
+ * {@link String#hashCode()} and the entry offset per slot, and by prefix through a binary search over their offsets.
+ * The buffer is only read with absolute gets after construction, which don't touch its position, so concurrent lookups
+ * are safe. The memory is released when the store becomes unreachable.</p>
+ *
+ * <p>Watch updates don't re-encode the arena. Changed codes go to a small sorted overlay on the heap that is
+ * consulted before the arena, the new store shares the arena and copies only the overlay. Once the overlay outgrows
+ * {@link #MIN_OVERLAY_COMPACTION_SIZE} codes or an eighth of the arena the messages are encoded into a new arena,
+ * a full reload always starts from a new arena without overlay.</p>
+ */
+final class OffHeapMessageStore implements MessageStore {
+
+    private static final int EMPTY = -1;
+
+    /**
+     * Overlay size up to which changes are never merged into a new arena.
+     */
+    static final int MIN_OVERLAY_COMPACTION_SIZE = 256;
+
+    private final Locale locale;
+
+    private final ByteBuffer arena;
+
+    /**
+     * Entry offset per slot, {@link #EMPTY} for free slots, the length is a power of two.
+     */
+    private final int[] offsets;
+
+    /**
+     * Hash code of the entry's message code per slot.
+     */
+    private final int[] hashes;
+
+    private final int size;
+
+    /**
+     * Entry offsets in the order of their codes.
+     */
+    private final int[] entryOffsets;
+
+    /**
+     * Messages changed since the arena was encoded by code, a {@code null} message marks a removed code.
+     * Never modified after construction.
+     */
+    private final NavigableMap<String, String> overlay;
+
+    /**
+     * Templates of the messages rendered so far by code, messages that render as themselves are never added.
+     */
+    private final ConcurrentMap<String, MessageTemplate> templates;
+
+    /**
+     * MessageFormats created so far by code, the store has no ordinals to index them by.
+     */
+    private final ConcurrentMap<String, MessageFormat> formats;
+
+    private OffHeapMessageStore(Locale locale, ByteBuffer arena, int[] offsets, int[] hashes, int[] entryOffsets,
+                                NavigableMap<String, String> overlay, int size,
+                                ConcurrentMap<String, MessageTemplate> templates, ConcurrentMap<String, MessageFormat> formats) {
+        this.locale = locale;
+        this.formats = formats;
+        this.entryOffsets = entryOffsets;
+        this.overlay = overlay;
+        this.size = size;
+        this.templates = templates;
+        this.arena = arena;
+        this.offsets = offsets;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Encodes the messages into a new arena.
+     *
+     * @param messages the messages by code
+     * @param locale   the locale templates format numbers and dates in
+     * @return the store
+     * @throws IllegalArgumentException if the encoded messages don't fit into a single buffer
+     */
+    static OffHeapMessageStore of(Map<String, String> messages, Locale locale) {
+        return of(messages, locale, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    private static OffHeapMessageStore of(Map<String, String> messages, Locale locale,
+                                          ConcurrentMap<String, MessageTemplate> templates,
+                                          ConcurrentMap<String, MessageFormat> formats) {
+        String[] sortedCodes = messages.keySet().toArray(new String[0]);
+        Arrays.sort(sortedCodes);
+        int size = sortedCodes.length;
+        byte[][] encoded = new byte[size * 2][];
+        long arenaSize = 0;
+        for (int i = 0; i < size; i++) {
+            byte[] code = sortedCodes[i].getBytes(StandardCharsets.UTF_8);
+            byte[] value = messages.get(sortedCodes[i]).getBytes(StandardCharsets.UTF_8);
+            encoded[i * 2] = code;
+            encoded[i * 2 + 1] = value;
+            arenaSize += 2 * Integer.BYTES + code.length + value.length;
+        }
+        if (arenaSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Messages of " + arenaSize + " bytes exceed the maximum off-heap bundle size");
+        }
+
+        ByteBuffer arena = ByteBuffer.allocateDirect((int) arenaSize);
+        int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+        int[] offsets = new int[capacity];
+        int[] hashes = new int[capacity];
+        int[] entryOffsets = new int[size];
+        Arrays.fill(offsets, EMPTY);
+        for (int i = 0; i < size; i++) {
+            int offset = arena.position();
+            entryOffsets[i] = offset;
+            byte[] code = encoded[i * 2];
+            byte[] value = encoded[i * 2 + 1];
+            arena.putInt(code.length).put(code).putInt(value.length).put(value);
+
+            int hash = sortedCodes[i].hashCode();
+            int slot = spread(hash) & (capacity - 1);
+            while (offsets[slot] != EMPTY) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            offsets[slot] = offset;
+            hashes[slot] = hash;
+        }
+        return new OffHeapMessageStore(locale, arena, offsets, hashes, entryOffsets, new TreeMap<>(), size, templates, formats);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String get(String code) {
+        if (!overlay.isEmpty() && overlay.containsKey(code)) {
+            return overlay.get(code);
+        }
+        return arenaGet(code);
+    }
+
+    /**
+     * Looks {@code code} up in the arena, ignoring the overlay.
+     */
+    private String arenaGet(String code) {
+        int hash = code.hashCode();
+        int mask = offsets.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int offset = offsets[slot];
+            if (offset == EMPTY) {
+                return null;
+            }
+            if (hashes[slot] == hash && codeEquals(offset, code)) {
+                int valueOffset = offset + Integer.BYTES + arena.getInt(offset);
+                return readString(valueOffset);
+            }
+        }
+    }
+
+    @Override
+    public String format(String code, Object[] args) {
+        MessageTemplate template = templates.get(code);
+        if (template != null) {
+            return template.format(args);
+        }
+        String message = get(code);
+        if (message == null || !MessageTemplate.needsFormatting(message)) {
+            return message;
+        }
+        template = MessageTemplate.compile(message, locale);
+        templates.putIfAbsent(code, template);
+        return template.format(args);
+    }
+
+    /**
+     * Compares the stored code with {@code code} without decoding it if both are ASCII.
+     */
+    private boolean codeEquals(int offset, String code) {
+        int length = arena.getInt(offset);
+        if (length != code.length()) {
+            // a code of the same length in chars and UTF-8 bytes is ASCII, otherwise compare decoded
+            return length > code.length() && readString(offset).equals(code);
+        }
+        int start = offset + Integer.BYTES;
+        for (int i = 0; i < length; i++) {
+            if (arena.get(start + i) != code.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the length-prefixed string at {@code offset}.
+     */
+    private String readString(int offset) {
+        byte[] bytes = new byte[arena.getInt(offset)];
+        arena.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public MessageFormat getCachedMessageFormat(String code) {
+        return formats.get(code);
+    }
+
+    @Override
+    public MessageFormat getMessageFormat(String code, BiFunction<String, Locale, MessageFormat> factory) {
+        MessageFormat result = formats.get(code);
+        if (result != null) {
+            return result;
+        }
+        String message = get(code);
+        if (message == null) {
+            return null;
+        }
+        result = factory.apply(message, locale);
+        MessageFormat existing = formats.putIfAbsent(code, result);
+        return existing != null ? existing : result;
+    }
+
+    @Override
+    public int getMessageFormatCacheSize() {
+        return formats.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, String> action) {
+        forEachWithPrefix("", action);
+    }
+
+    /**
+     * Decodes the codes probed by the binary search and the matching entries, merged with the overlay's codes.
+     */
+    @Override
+    public void forEachWithPrefix(String prefix, BiConsumer<String, String> action) {
+        Iterator<Map.Entry<String, String>> changed = overlay.tailMap(prefix, true).entrySet().iterator();
+        Map.Entry<String, String> nextChange = nextWithPrefix(changed, prefix);
+        for (int i = firstEntryWithPrefix(prefix); i < entryOffsets.length; i++) {
+            int offset = entryOffsets[i];
+            String code = readString(offset);
+            if (!code.startsWith(prefix)) {
+                break;
+            }
+            while (nextChange != null && nextChange.getKey().compareTo(code) < 0) {
+                acceptChange(nextChange, action);
+                nextChange = nextWithPrefix(changed, prefix);
+            }
+            if (nextChange != null && nextChange.getKey().equals(code)) {
+                acceptChange(nextChange, action);
+                nextChange = nextWithPrefix(changed, prefix);
+            } else {
+                action.accept(code, readString(offset + Integer.BYTES + arena.getInt(offset)));
+            }
+        }
+        for (; nextChange != null; nextChange = nextWithPrefix(changed, prefix)) {
+            acceptChange(nextChange, action);
+        }
+    }
+
+    private static Map.Entry<String, String> nextWithPrefix(Iterator<Map.Entry<String, String>> changed, String prefix) {
+        if (!changed.hasNext()) {
+            return null;
+        }
+        Map.Entry<String, String> change = changed.next();
+        return change.getKey().startsWith(prefix) ? change : null;
+    }
+
+    private static void acceptChange(Map.Entry<String, String> change, BiConsumer<String, String> action) {
+        if (change.getValue() != null) {
+            action.accept(change.getKey(), change.getValue());
+        }
+    }
+
+    /**
+     * @return the index of the first arena entry whose code isn't less than {@code prefix}
+     */
+    private int firstEntryWithPrefix(String prefix) {
+        int low = 0;
+        int high = entryOffsets.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (readString(entryOffsets[middle]).compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Copies the overlay with the changes applied and shares the arena, until the overlay is large enough to merge
+     * everything into a new arena. The compiled templates and formats of unchanged codes are kept.
+     */
+    @Override
+    public MessageStore withChanges(Map<String, String> changes, CodeDictionary dictionary) {
+        NavigableMap<String, String> newOverlay = new TreeMap<>(overlay);
+        ConcurrentMap<String, MessageTemplate> newTemplates = new ConcurrentHashMap<>(templates);
+        ConcurrentMap<String, MessageFormat> newFormats = new ConcurrentHashMap<>(formats);
+        int newSize = size;
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String code = change.getKey();
+            String message = change.getValue();
+            if (get(code) != null) {
+                newSize--;
+            }
+            if (message != null) {
+                newSize++;
+                newOverlay.put(code, message);
+            } else if (arenaGet(code) != null) {
+                newOverlay.put(code, null);
+            } else {
+                newOverlay.remove(code);
+            }
+            newTemplates.remove(code);
+            newFormats.remove(code);
+        }
+        OffHeapMessageStore changed = new OffHeapMessageStore(locale, arena, offsets, hashes, entryOffsets, newOverlay,
+                newSize, newTemplates, newFormats);
+        if (newOverlay.size() <= Math.max(MIN_OVERLAY_COMPACTION_SIZE, entryOffsets.length / 8)) {
+            return changed;
+        }
+        Map<String, String> messages = new HashMap<>(Math.max(16, (int) (newSize / 0.75f) + 1));
+        changed.forEach(messages::put);
+        return of(messages, locale, newTemplates, newFormats);
+    }
+
+    /**
+     * @return the number of changed codes kept on the heap until the next arena is encoded
+     */
+    int overlaySize() {
+        return overlay.size();
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return arena.capacity();
+    }
+}
@@ -0,0 +1,18 @@
+package io.etcd.springi18n.service;
+
+/**
+ * How the range reads that load messages are served by the etcd cluster.
+ */
+public enum ReadConsistency {
+
+    /**
+     * Every read goes through the raft leader and returns the latest committed revision.
+     */
+    LINEARIZABLE,
+
+    /**
+     * Reads are served by the member they are sent to from its local state, which may lag behind the leader.
+     * They are spread over all configured hosts, and a read older than the watch stream is repeated.
+     */
+    SERIALIZABLE
+}
@@ -0,0 +1,77 @@
+package io.etcd.springi18n.service;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-key reads from etcd of codes a {@link MessageSnapshot} has no message for, e.g. because the watch event of a
+ * newly written key hasn't arrived yet or is held back by a reload in flight.
+ *
+ * <p>Every code is read at most once per snapshot: concurrent lookups of the same code share the read in flight,
+ * and later lookups get its result, a message or {@code null}, without asking etcd again. A failed read counts as
+ * {@code null}. A cache belongs to a single snapshot and is dropped with it, so the next revision reads the codes
+ * still missing again. The cache stops reading once it holds {@code maxSize} codes, a flood of unknown codes then
+ * costs etcd nothing.</p>
+ */
+final class ReadThroughCache {
+
+    private static final CompletableFuture<String> NOT_READ = CompletableFuture.completedFuture(null);
+
+    private final MessageSnapshot snapshot;
+
+    private final int maxSize;
+
+    /**
+     * The reads by locale and code, completed with the message or {@code null}.
+     */
+    private final ConcurrentMap<Key, CompletableFuture<String>> reads = new ConcurrentHashMap<>();
+
+    ReadThroughCache(MessageSnapshot snapshot, int maxSize) {
+        this.snapshot = snapshot;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param snapshot the snapshot a lookup read
+     * @return whether this cache holds the reads of that snapshot
+     */
+    boolean isFor(MessageSnapshot snapshot) {
+        return this.snapshot == snapshot;
+    }
+
+    /**
+     * Returns the read of a code, starting it unless it was read for this snapshot already.
+     *
+     * @param locale the locale of the bundle the code is missing in
+     * @param code   the message code
+     * @param reader starts the read, completing with the message or {@code null} if the key has none
+     * @return the read, completed with {@code null} right away if the cache is full
+     */
+    CompletableFuture<String> read(Locale locale, String code, Supplier<CompletableFuture<String>> reader) {
+        Key key = new Key(locale, code);
+        CompletableFuture<String> read = reads.get(key);
+        if (read != null) {
+            return read;
+        }
+        if (reads.size() >= maxSize) {
+            return NOT_READ;
+        }
+        CompletableFuture<String> created = new CompletableFuture<>();
+        read = reads.putIfAbsent(key, created);
+        if (read != null) {
+            return read;
+        }
+        try {
+            reader.get().whenComplete((message, throwable) -> created.complete(throwable == null ? message : null));
+        } catch (RuntimeException e) {
+            created.complete(null);
+        }
+        return created;
+    }
+
+    private record Key(Locale locale, String code) {
+    }
+}
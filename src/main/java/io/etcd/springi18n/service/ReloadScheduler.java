@@ -0,0 +1,181 @@
+package io.etcd.springi18n.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces bursts of reload requests into as few reloads as possible.
+ *
+ * <p>A reload starts once no request came in for the quiet period, but no later than the max delay after the first
+ * request of a burst. At most one reload is in flight at a time. Requests arriving while one is in flight are
+ * coalesced into a single pending reload that starts as soon as the in-flight one is done. A storm of N requests
+ * therefore causes a constant number of reloads.</p>
+ *
+ * <p>Reloads that must not wait for the quiet period, e.g. the initial load or a resync after the watch lost events,
+ * are {@link #reloadNow() requested without delay} but still coalesced, so no two reloads ever run at the same time
+ * and their snapshots are published in the order they were read.</p>
+ */
+@Slf4j
+final class ReloadScheduler {
+
+    /**
+     * Starts a reload, the returned future completes with whether it published a snapshot once it is done.
+     */
+    private final Supplier<CompletableFuture<Boolean>> reload;
+
+    /**
+     * Executor the timer and reloads run on.
+     */
+    private final Executor executor;
+
+    private final long quietPeriodNanos;
+
+    private final long maxDelayNanos;
+
+    /**
+     * Time of the first request of the current burst, {@code -1} if there is none. Guarded by {@code this}.
+     */
+    private long firstRequestNanos = -1;
+
+    /**
+     * Time of the last request of the current burst. Guarded by {@code this}.
+     */
+    private long lastRequestNanos;
+
+    /**
+     * Whether a timer is scheduled, only one is at any time. Guarded by {@code this}.
+     */
+    private boolean timerScheduled;
+
+    /**
+     * Whether a reload is running. Guarded by {@code this}.
+     */
+    private boolean inFlight;
+
+    /**
+     * Whether another reload is due once the running one is done. Guarded by {@code this}.
+     */
+    private boolean pending;
+
+    /**
+     * Completed with the result of the next reload to start, shared by every request it serves. Guarded by {@code this}.
+     */
+    private CompletableFuture<Boolean> nextReload = new CompletableFuture<>();
+
+    /**
+     * Constructs a scheduler.
+     *
+     * @param reload            starts a reload and returns a future completed with whether it published a snapshot
+     * @param executor          the executor the timer and reloads run on
+     * @param quietPeriodMillis how long no request must come in before a reload starts
+     * @param maxDelayMillis    how long a reload is delayed at most after the first request of a burst
+     */
+    ReloadScheduler(Supplier<CompletableFuture<Boolean>> reload, Executor executor, long quietPeriodMillis, long maxDelayMillis) {
+        this.reload = reload;
+        this.executor = executor;
+        this.quietPeriodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, quietPeriodMillis));
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(quietPeriodMillis, maxDelayMillis));
+    }
+
+    /**
+     * Requests a reload, which starts after the quiet period or max delay.
+     *
+     * @return a future completed with whether the reload serving the request published a snapshot
+     */
+    synchronized CompletableFuture<Boolean> requestReload() {
+        long now = System.nanoTime();
+        if (firstRequestNanos < 0) {
+            firstRequestNanos = now;
+        }
+        lastRequestNanos = now;
+        if (!timerScheduled) {
+            timerScheduled = true;
+            schedule(quietPeriodNanos);
+        }
+        return nextReload;
+    }
+
+    /**
+     * Requests a reload that starts right away, or as soon as the one in flight is done. Requests waiting for their
+     * quiet period are served by it as well.
+     *
+     * @return a future completed with whether the reload serving the request published a snapshot
+     */
+    CompletableFuture<Boolean> reloadNow() {
+        CompletableFuture<Boolean> result;
+        synchronized (this) {
+            result = nextReload;
+            firstRequestNanos = -1;
+            if (inFlight) {
+                pending = true;
+                return result;
+            }
+            inFlight = true;
+        }
+        startReload();
+        return result;
+    }
+
+    private void schedule(long delayNanos) {
+        CompletableFuture.runAsync(this::onTimer, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor));
+    }
+
+    private void onTimer() {
+        synchronized (this) {
+            timerScheduled = false;
+            if (firstRequestNanos < 0) {
+                // served by a reload started without delay meanwhile
+                return;
+            }
+            long now = System.nanoTime();
+            long dueNanos = Math.min(lastRequestNanos + quietPeriodNanos, firstRequestNanos + maxDelayNanos);
+            if (now - dueNanos < 0) {
+                timerScheduled = true;
+                schedule(dueNanos - now);
+                return;
+            }
+            firstRequestNanos = -1;
+            if (inFlight) {
+                pending = true;
+                return;
+            }
+            inFlight = true;
+        }
+        startReload();
+    }
+
+    private void startReload() {
+        CompletableFuture<Boolean> result;
+        synchronized (this) {
+            result = nextReload;
+            nextReload = new CompletableFuture<>();
+        }
+        CompletableFuture<Boolean> future;
+        try {
+            future = reload.get();
+        } catch (RuntimeException e) {
+            log.error("Could not start reload", e);
+            future = CompletableFuture.completedFuture(false);
+        }
+        future.whenComplete((published, throwable) -> {
+            onReloadDone();
+            result.complete(throwable == null && Boolean.TRUE.equals(published));
+        });
+    }
+
+    private void onReloadDone() {
+        synchronized (this) {
+            inFlight = false;
+            if (!pending) {
+                return;
+            }
+            pending = false;
+            inFlight = true;
+        }
+        CompletableFuture.runAsync(this::startReload, executor);
+    }
+}
@@ -0,0 +1,147 @@
+package io.etcd.springi18n.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads and writes a {@link MessageSnapshot} to a local file, so a restarted process can serve its last known
+ * messages right away and catch up from the stored revision instead of fetching every locale from etcd.
+ *
+ * <p>The file holds a header with the revision, base dir and locales key the snapshot was loaded for, followed by
+ * every locale with its dir and messages. A locale that is loaded on first use and isn't loaded is stored with a
+ * message count of {@code -1}. All strings are stored as a length followed by their UTF-8 bytes.
+ * Files are written to a temporary file first and then moved in place, so a reader never sees a partial file.</p>
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x45544344;
+
+    private static final int VERSION = 1;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes the snapshot to {@code path}, replacing any previous file atomically.
+     *
+     * @param path       the file to write
+     * @param snapshot   the snapshot to write
+     * @param baseDir    the base dir the snapshot was loaded from
+     * @param localesKey the locales key the snapshot was loaded from
+     * @throws IOException if the file can't be written
+     */
+    static void write(Path path, MessageSnapshot snapshot, String baseDir, String localesKey) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tempFile = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(snapshot.getRevision());
+                writeString(out, baseDir);
+                writeString(out, localesKey);
+                out.writeInt(snapshot.getBundles().size());
+                for (LocaleBundle bundle : snapshot.getBundles().values()) {
+                    writeString(out, bundle.getLocale().toLanguageTag());
+                    writeString(out, bundle.getDir());
+                    if (!bundle.isLoaded()) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    out.writeInt(bundle.size());
+                    IOException[] failure = new IOException[1];
+                    bundle.forEach((code, message) -> {
+                        if (failure[0] == null) {
+                            try {
+                                writeString(out, code);
+                                writeString(out, message);
+                            } catch (IOException e) {
+                                failure[0] = e;
+                            }
+                        }
+                    });
+                    if (failure[0] != null) {
+                        throw failure[0];
+                    }
+                }
+            }
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Reads the snapshot stored in {@code path}. The file is read in one go and every string is decoded straight from
+     * its bytes, the file is short-lived garbage once the messages are built.
+     *
+     * @param path       the file to read
+     * @param baseDir    the base dir the snapshot must have been loaded from
+     * @param localesKey the locales key the snapshot must have been loaded from
+     * @param offHeap    whether to store the restored messages off-heap
+     * @return the snapshot, or {@code null} if there is no file or it was written for another base dir or locales key
+     * @throws IOException if the file can't be read or is corrupt
+     */
+    static MessageSnapshot read(Path path, String baseDir, String localesKey, boolean offHeap) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("not a message snapshot file: " + path);
+            }
+            long revision = buffer.getLong();
+            if (!baseDir.equals(readString(buffer)) || !localesKey.equals(readString(buffer))) {
+                return null;
+            }
+            int localeCount = buffer.getInt();
+            Map<Locale, LocaleBundle> bundles = new LinkedHashMap<>();
+            for (int i = 0; i < localeCount; i++) {
+                Locale locale = Locale.forLanguageTag(readString(buffer));
+                String dir = readString(buffer);
+                int size = buffer.getInt();
+                if (size < 0) {
+                    bundles.put(locale, LocaleBundle.unloaded(locale, dir));
+                    continue;
+                }
+                LocaleBundle.Builder builder = new LocaleBundle.Builder(locale, dir, size, offHeap);
+                for (int j = 0; j < size; j++) {
+                    builder.addMessage(readString(buffer), readString(buffer));
+                }
+                bundles.put(locale, builder.build());
+            }
+            return new MessageSnapshot(revision, bundles);
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt message snapshot file: " + path, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("string of " + length + " bytes at position " + buffer.position() + " exceeds the file");
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -1,6 +1,8 @@
 package io.etcd.springi18n.service.impl;
 
 import io.etcd.springi18n.service.EtcdClient;
+import io.etcd.springi18n.service.EtcdTranslatorMetrics;
+import io.etcd.springi18n.service.ReadConsistency;
 
 import java.util.concurrent.ExecutorService;
 
@@ -9,4 +11,26 @@ public class EtcdClientFactory {
     public static EtcdClient createEtcdClient(String[] hosts, String port, ExecutorService taskExecutor, ExecutorService longBlockingTaskExecutor) {
         return EtcdClientImpl.create(hosts, port, taskExecutor, longBlockingTaskExecutor);
     }
+
+    public static EtcdClient createEtcdClient(String[] hosts, String port, int maxInboundMessageSize, ExecutorService taskExecutor, ExecutorService longBlockingTaskExecutor) {
+        return EtcdClientImpl.create(hosts, port, maxInboundMessageSize, taskExecutor, longBlockingTaskExecutor);
+    }
+
+    public static EtcdClient createEtcdClient(String[] hosts, String port, int maxInboundMessageSize, ExecutorService taskExecutor, ExecutorService longBlockingTaskExecutor, EtcdTranslatorMetrics metrics) {
+        return EtcdClientImpl.create(hosts, port, maxInboundMessageSize, taskExecutor, longBlockingTaskExecutor, metrics);
+    }
+
+    public static EtcdClient createEtcdClient(String[] hosts, String port, int maxInboundMessageSize, ExecutorService taskExecutor, ExecutorService longBlockingTaskExecutor,
+                                              EtcdTranslatorMetrics metrics, ReadConsistency readConsistency, long requestTimeoutMillis) {
+        return EtcdClientImpl.create(hosts, port, maxInboundMessageSize, taskExecutor, longBlockingTaskExecutor, metrics, readConsistency, requestTimeoutMillis);
+    }
+
+    /**
+     * Creates a client backed by an in-memory store instead of an etcd server, for tests and load tests.
+     *
+     * @return a new empty in-memory client
+     */
+    public static InMemoryEtcdClient createInMemoryEtcdClient() {
+        return new InMemoryEtcdClient();
+    }
 }
@@ -1,9 +1,13 @@
 package io.etcd.springi18n.service.impl;
 
 import io.etcd.springi18n.service.EtcdClient;
+import io.etcd.springi18n.service.EtcdKeyValues;
+import io.etcd.springi18n.service.EtcdTranslatorMetrics;
+import io.etcd.springi18n.service.ReadConsistency;
 import io.etcd.jetcd.*;
 import io.etcd.jetcd.kv.GetResponse;
 import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.OptionsUtil;
 import io.etcd.jetcd.options.WatchOption;
 import io.etcd.jetcd.watch.WatchEvent;
 import io.etcd.jetcd.watch.WatchResponse;
@@ -18,10 +22,24 @@ import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 final class EtcdClientImpl implements EtcdClient {
+    /**
+     * Maximum size in bytes of a single etcd response if none is configured.
+     */
+    static final int DEFAULT_MAX_INBOUND_MESSAGE_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Deadline in milliseconds of a single range read if none is configured.
+     */
+    static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 10_000;
+
     private final Logger log = LoggerFactory.getLogger(EtcdClientImpl.class);
 
     /**
@@ -30,14 +48,48 @@ final class EtcdClientImpl implements EtcdClient {
     private final ExecutorService etcdLongBlockingThreadPoolTaskExecutor;
 
     /**
-     * Watcher to monitor etcd key changes.
+     * Meters of the requests to etcd.
+     */
+    private final EtcdTranslatorMetrics metrics;
+
+    /**
+     * Watcher of {@link #testWatchAndGet()}.
      */
     public Watch.Watcher watcher;
 
+    /**
+     * Runs the watches of all key prefixes as one watch of their common prefix on {@link #etcdClient}.
+     */
+    private final WatchMultiplexer watchMultiplexer;
+
     /**
      * Client to interact with etcd.
      */
-    private Client etcdClient;
+    private final Client etcdClient;
+
+    /**
+     * Clients connected to a single host each, serializable reads are spread over them. Empty if reads go through
+     * {@link #etcdClient}.
+     */
+    private final List<Client> endpointClients;
+
+    /**
+     * Consistency of the range reads.
+     */
+    private final ReadConsistency readConsistency;
+
+    /**
+     * Deadline in milliseconds of a single range read, {@code 0} for none.
+     */
+    private final long requestTimeoutMillis;
+
+    /**
+     * The KV clients serializable reads are spread over, one connected to each host if there are several,
+     * otherwise the one of {@link #etcdClient}.
+     */
+    private final List<KV> readClients;
+
+    private final AtomicInteger nextReadClient = new AtomicInteger();
 
     /**
      * Constructs an instance of EtcdClientImpl.
@@ -45,26 +97,86 @@ final class EtcdClientImpl implements EtcdClient {
      * @param hosts                                  the etcd hosts to connect to, you can add the ports in hosts too, for example: http://ip:port,
      *                                               in that case port won't be concatenated.
      * @param port                                   the port number for etcd
+     * @param maxInboundMessageSize                  the maximum size in bytes of a single response, bounds the size of a non-paged range read
      * @param taskExecutor                           the executor service for general tasks
      * @param etcdLongBlockingThreadPoolTaskExecutor the executor service for long-running etcd tasks
+     * @param metrics                                the meters to record the requests to etcd with
+     * @param readConsistency                        the consistency of the range reads
+     * @param requestTimeoutMillis                   the deadline in milliseconds of a single range read, {@code 0} for none
      */
-    private EtcdClientImpl(String[] hosts, String port, ExecutorService taskExecutor, ExecutorService etcdLongBlockingThreadPoolTaskExecutor) {
+    private EtcdClientImpl(String[] hosts, String port, int maxInboundMessageSize, ExecutorService taskExecutor, ExecutorService etcdLongBlockingThreadPoolTaskExecutor,
+                           EtcdTranslatorMetrics metrics, ReadConsistency readConsistency, long requestTimeoutMillis) {
+        this(buildClients(hosts, port, maxInboundMessageSize, taskExecutor, readConsistency), etcdLongBlockingThreadPoolTaskExecutor, metrics, readConsistency, requestTimeoutMillis);
+    }
+
+    /**
+     * Constructs an instance of EtcdClientImpl on clients built already.
+     *
+     * @param clients                                the client of all hosts and the clients of single hosts serializable reads are spread over, if any
+     * @param etcdLongBlockingThreadPoolTaskExecutor the executor service for long-running etcd tasks
+     * @param metrics                                the meters to record the requests to etcd with
+     * @param readConsistency                        the consistency of the range reads
+     * @param requestTimeoutMillis                   the deadline in milliseconds of a single range read, {@code 0} for none
+     */
+    EtcdClientImpl(Clients clients, ExecutorService etcdLongBlockingThreadPoolTaskExecutor, EtcdTranslatorMetrics metrics,
+                   ReadConsistency readConsistency, long requestTimeoutMillis) {
         this.etcdLongBlockingThreadPoolTaskExecutor = etcdLongBlockingThreadPoolTaskExecutor;
-        
+        this.metrics = metrics;
+        this.readConsistency = readConsistency;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.etcdClient = clients.client();
+        this.endpointClients = clients.endpointClients();
+        this.watchMultiplexer = new WatchMultiplexer(etcdClient.getWatchClient());
+        this.readClients = endpointClients.isEmpty()
+                ? List.of(etcdClient.getKVClient())
+                : endpointClients.stream().map(Client::getKVClient).toList();
+    }
+
+    private static Clients buildClients(String[] hosts, String port, int maxInboundMessageSize, ExecutorService taskExecutor, ReadConsistency readConsistency) {
         if(!port.isEmpty())
             hosts = addPortToHosts(hosts, port);
-        
-        this.etcdClient = Client.builder().endpoints(hosts).maxInboundMessageSize(8 * 1024 * 1024).executorService(taskExecutor).build();
+
+        Client client = Client.builder().endpoints(hosts).maxInboundMessageSize(maxInboundMessageSize).executorService(taskExecutor).build();
+        if (readConsistency != ReadConsistency.SERIALIZABLE || hosts.length == 1) {
+            return new Clients(client, List.of());
+        }
+        // a client per host, a shared one would send all reads of a connection to the same member
+        List<Client> endpointClients = Arrays.stream(hosts)
+                .map(host -> Client.builder().endpoints(host).maxInboundMessageSize(maxInboundMessageSize).executorService(taskExecutor).build())
+                .toList();
+        return new Clients(client, endpointClients);
+    }
+
+    /**
+     * The clients an instance reads and watches with.
+     *
+     * @param client          the client of all hosts
+     * @param endpointClients the clients of single hosts serializable reads are spread over, empty to read with {@code client}
+     */
+    record Clients(Client client, List<Client> endpointClients) {
     }
 
-    private String[] addPortToHosts(String[] hosts, String port) {
+    private static String[] addPortToHosts(String[] hosts, String port) {
         return Arrays.stream(hosts)
                 .map(host -> host + ":" + port)
                 .toArray(String[]::new);
     }
 
     static public EtcdClient create(String[] hosts, String port, ExecutorService taskExecutor, ExecutorService etcdLongBlockingThreadPoolTaskExecutor) {
-        return new EtcdClientImpl(hosts,port,taskExecutor,etcdLongBlockingThreadPoolTaskExecutor);
+        return create(hosts, port, DEFAULT_MAX_INBOUND_MESSAGE_SIZE, taskExecutor, etcdLongBlockingThreadPoolTaskExecutor);
+    }
+
+    static public EtcdClient create(String[] hosts, String port, int maxInboundMessageSize, ExecutorService taskExecutor, ExecutorService etcdLongBlockingThreadPoolTaskExecutor) {
+        return create(hosts, port, maxInboundMessageSize, taskExecutor, etcdLongBlockingThreadPoolTaskExecutor, EtcdTranslatorMetrics.noop());
+    }
+
+    static public EtcdClient create(String[] hosts, String port, int maxInboundMessageSize, ExecutorService taskExecutor, ExecutorService etcdLongBlockingThreadPoolTaskExecutor, EtcdTranslatorMetrics metrics) {
+        return create(hosts, port, maxInboundMessageSize, taskExecutor, etcdLongBlockingThreadPoolTaskExecutor, metrics, ReadConsistency.LINEARIZABLE, DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    static public EtcdClient create(String[] hosts, String port, int maxInboundMessageSize, ExecutorService taskExecutor, ExecutorService etcdLongBlockingThreadPoolTaskExecutor,
+                                    EtcdTranslatorMetrics metrics, ReadConsistency readConsistency, long requestTimeoutMillis) {
+        return new EtcdClientImpl(hosts,port,maxInboundMessageSize,taskExecutor,etcdLongBlockingThreadPoolTaskExecutor,metrics,readConsistency,requestTimeoutMillis);
     }
 
     @Override
@@ -90,86 +202,202 @@ final class EtcdClientImpl implements EtcdClient {
      */
     @Override
     public CompletableFuture<Map<String, String>> getByKeyAsync(String key, boolean isPrefix) {
-        GetOption option = GetOption.builder()
-                .isPrefix(isPrefix)
-                .build();
-        return get(option, key).thenApplyAsync(getResponse -> {
-                    List<KeyValue> kvs = getResponse == null ? List.of() : getResponse.getKvs();
-
-                    return kvs.stream()
-                            .collect(Collectors.toMap(
-                                    keyValue -> keyValue.getKey().toString(),
-                                    keyValue1 -> keyValue1.getValue().toString())
-                            );
-                }, etcdLongBlockingThreadPoolTaskExecutor)
+        return getByKeyWithRevisionAsync(key, isPrefix, 0)
+                .thenApply(EtcdKeyValues::kvPairs)
                 .exceptionally(throwable -> {
-                    throwable.printStackTrace();
                     log.error("Error while getting key " + key + " isPrefix: " + isPrefix, throwable);
                     return Map.of();
                 });
     }
 
+    /**
+     * Retrieves the key-value pairs associated with the specified key asynchronously, together with the
+     * revision they were read at.
+     *
+     * @param key      the key whose associated key-value pairs are to be returned
+     * @param isPrefix whether the key is a prefix
+     * @param revision the revision to read at, or {@code 0} for the latest revision
+     * @return a {@link CompletableFuture} that will be completed with the key-value pairs and their revision
+     */
+    @Override
+    public CompletableFuture<EtcdKeyValues> getByKeyWithRevisionAsync(String key, boolean isPrefix, long revision) {
+        GetOption.Builder option = GetOption.builder()
+                .isPrefix(isPrefix)
+                .withRevision(revision);
+        return get(option, key, revision == 0).thenApplyAsync(getResponse -> {
+            List<KeyValue> kvs = getResponse.getKvs();
+
+            Map<String, String> kvPairs = kvs.stream()
+                    .collect(Collectors.toMap(
+                            keyValue -> keyValue.getKey().toString(),
+                            keyValue1 -> keyValue1.getValue().toString())
+                    );
+            return new EtcdKeyValues(getResponse.getHeader().getRevision(), kvPairs);
+        }, etcdLongBlockingThreadPoolTaskExecutor);
+    }
+
+    /**
+     * Streams the key-value pairs under the specified key prefix page by page. Each page is a range request from
+     * the key after the last one received up to the end of the prefix, sorted by key and pinned to the revision
+     * of the first page, so the pages form a consistent view even while the prefix is being written to. Serializable
+     * reads of all pages go to the same endpoint first.
+     *
+     * @param key        the key prefix whose key-value pairs are to be streamed
+     * @param revision   the revision to read at, or {@code 0} for the latest revision
+     * @param pageSize   the maximum number of pairs per range request
+     * @param kvConsumer the consumer of every key and value, called from one thread at a time in key order
+     * @return a {@link CompletableFuture} that will be completed with the revision the pairs were read at
+     */
+    @Override
+    public CompletableFuture<Long> getByKeyPrefixPagedAsync(String key, long revision, int pageSize, BiConsumer<String, String> kvConsumer) {
+        ByteSequence prefix = ByteSequence.from(key.getBytes(StandardCharsets.UTF_8));
+        return getPage(prefix, OptionsUtil.prefixEndOf(prefix), revision, pageSize, kvConsumer, nextEndpoint());
+    }
+
+    private CompletableFuture<Long> getPage(ByteSequence fromKey, ByteSequence rangeEnd, long revision, int pageSize, BiConsumer<String, String> kvConsumer, int endpoint) {
+        GetOption.Builder option = GetOption.builder()
+                .withRange(rangeEnd)
+                .withLimit(pageSize)
+                .withSortField(GetOption.SortTarget.KEY)
+                .withSortOrder(GetOption.SortOrder.ASCEND)
+                .withRevision(revision);
+        return read("range-page", fromKey, option, revision == 0, endpoint)
+                .thenComposeAsync(getResponse -> {
+            List<KeyValue> kvs = getResponse.getKvs();
+            kvs.forEach(keyValue -> kvConsumer.accept(keyValue.getKey().toString(), keyValue.getValue().toString()));
+
+            long pageRevision = getResponse.getHeader().getRevision();
+            if (!getResponse.isMore() || kvs.isEmpty()) {
+                return CompletableFuture.completedFuture(pageRevision);
+            }
+            ByteSequence nextKey = kvs.get(kvs.size() - 1).getKey().concat(ByteSequence.from(new byte[]{0}));
+            return getPage(nextKey, rangeEnd, pageRevision, pageSize, kvConsumer, endpoint);
+        }, etcdLongBlockingThreadPoolTaskExecutor);
+    }
+
     /**
      * Retrieves the {@link GetResponse} for the specified key with the given options asynchronously.
      *
      * @param option the options to apply when fetching the key
      * @param key    the key whose associated {@link GetResponse} is to be returned
+     * @param fresh  whether the read must not be older than the watch stream
      * @return a {@link CompletableFuture} that will be completed with the {@link GetResponse}
      */
-    private CompletableFuture<GetResponse> get(GetOption option, String key) {
-        KV kvClient = etcdClient.getKVClient();
-
+    private CompletableFuture<GetResponse> get(GetOption.Builder option, String key, boolean fresh) {
         ByteSequence keyByteSequence = ByteSequence.from(key.getBytes(StandardCharsets.UTF_8));
-        return kvClient.get(keyByteSequence, option)
-                .exceptionally(e -> {
-                    log.error("error while getting key with : " + key + " " + e.getMessage(), e);
-                    return null;
+        return read("get", keyByteSequence, option, fresh, nextEndpoint())
+                .whenComplete((getResponse, e) -> {
+                    if (e != null) {
+                        log.error("error while getting key with : " + key + " " + e.getMessage());
+                    }
                 });
     }
 
-    @Override
-    public void watchByKeyPrefix(String keyToWatch, Consumer<WatchResponse> consumer) {
-        WatchOption watchOption = WatchOption.builder()
-                .isPrefix(true)
-                .build();
-        watch(keyToWatch, watchOption, consumer);
+    /**
+     * Reads a range with the configured consistency.
+     *
+     * <p>A serializable read is sent to the given endpoint first. If it fails, misses its deadline or, for a fresh
+     * read, returns a revision older than the watch stream has reached, it is repeated on the next endpoint, and as
+     * a linearizable read once every endpoint was tried. A read pinned to a revision is never stale, a member that
+     * hasn't reached the revision yet fails it.</p>
+     *
+     * @param operation the name the request is metered as
+     * @param key       the key, or the start of the range
+     * @param option    the options of the read, without its consistency
+     * @param fresh     whether the read must not be older than the watch stream
+     * @param endpoint  the index of the endpoint to send a serializable read to first
+     * @return a {@link CompletableFuture} that will be completed with the {@link GetResponse}
+     */
+    private CompletableFuture<GetResponse> read(String operation, ByteSequence key, GetOption.Builder option, boolean fresh, int endpoint) {
+        if (readConsistency == ReadConsistency.LINEARIZABLE) {
+            return read(operation, etcdClient.getKVClient(), key, option.withSerializable(false).build());
+        }
+        return readSerializable(operation, key, option, fresh, endpoint, 0);
+    }
+
+    private CompletableFuture<GetResponse> readSerializable(String operation, ByteSequence key, GetOption.Builder option, boolean fresh, int endpoint, int attempt) {
+        long watchedRevision = fresh ? watchMultiplexer.getLatestRevision() : 0;
+        int index = Math.floorMod(endpoint + attempt, readClients.size());
+        return read(operation, readClients.get(index), key, option.withSerializable(true).build())
+                .handle((getResponse, e) -> {
+                    if (e == null && getResponse.getHeader().getRevision() >= watchedRevision) {
+                        return CompletableFuture.completedFuture(getResponse);
+                    }
+                    String reason = e != null
+                            ? e.toString()
+                            : "revision " + getResponse.getHeader().getRevision() + " is behind the watch at " + watchedRevision;
+                    if (attempt + 1 < readClients.size()) {
+                        log.warn("serializable read of key: " + key + " from endpoint " + index + " failed, trying the next one: " + reason);
+                        return readSerializable(operation, key, option, fresh, endpoint, attempt + 1);
+                    }
+                    log.warn("serializable read of key: " + key + " failed on all endpoints, reading linearizable: " + reason);
+                    return read(operation, etcdClient.getKVClient(), key, option.withSerializable(false).build());
+                })
+                .thenCompose(Function.identity());
     }
 
     /**
-     * Watches for changes on the specified key with the given options and processes the changes using the provided consumer.
-     *
-     * @param key         the key to watch
-     * @param watchOption the options to apply when watching the key
-     * @param consumer    the consumer to process the watch response
+     * Sends a single range read under the request deadline and meters it. A read past its deadline fails with a
+     * {@link java.util.concurrent.TimeoutException}, its late response is dropped.
      */
-    private void watch(String key, WatchOption watchOption, Consumer<WatchResponse> consumer) {
-        Consumer<Throwable> onError = e -> {
-            log.error("error ", e);
-        };
+    private CompletableFuture<GetResponse> read(String operation, KV kvClient, ByteSequence key, GetOption option) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<GetResponse> response = kvClient.get(key, option);
+        if (requestTimeoutMillis > 0) {
+            response = response.orTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return response.whenComplete((getResponse, e) -> metrics.recordEtcdRequest(operation, System.nanoTime() - startNanos, e));
+    }
 
-        Runnable onCompleted = () -> {
-            log.info("Completed");
-        };
-        log.info("getting watcher client");
-        Watch watchClient = etcdClient.getWatchClient();
-        watcher = watchClient.watch(ByteSequence.from(key.getBytes(StandardCharsets.UTF_8)),
-                watchOption,
-                consumer,
-                onError,
-                onCompleted);
-        log.info("started watching");
+    /**
+     * @return the index of the endpoint to send the next serializable read to, taking turns
+     */
+    private int nextEndpoint() {
+        return Math.floorMod(nextReadClient.getAndIncrement(), readClients.size());
+    }
+
+    @Override
+    public void watchByKeyPrefix(String keyToWatch, Consumer<WatchResponse> consumer) {
+        watchByKeyPrefix(keyToWatch, 0, consumer, e -> log.error("error ", e));
+    }
+
+    @Override
+    public void watchByKeyPrefix(String keyToWatch, long fromRevision, Consumer<WatchResponse> consumer, Consumer<Throwable> onError) {
+        watchMultiplexer.register(keyToWatch, fromRevision, consumer, onError);
     }
 
     /**
-     * Stops the watcher if it is running.
+     * Stops all watches, including the one of {@link #testWatchAndGet()}.
      */
     @Override
-    public void stopWatcher() {
+    public synchronized void stopWatcher() {
+        watchMultiplexer.close();
         if (watcher != null) {
             watcher.close();
+            watcher = null;
         }
     }
 
+    /**
+     * Stops all watches and closes the connections to etcd, the client can't be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        stopWatcher();
+        endpointClients.forEach(Client::close);
+        etcdClient.close();
+    }
+
+    /**
+     * Stops the watch of the specified key prefix, the watches of other prefixes keep running.
+     *
+     * @param keyToWatch the key prefix the watch was started for
+     */
+    @Override
+    public void stopWatcher(String keyToWatch) {
+        watchMultiplexer.unregister(keyToWatch);
+    }
+
     /**
      * Demonstrates watching a key and performing an action when the key is updated.
      */
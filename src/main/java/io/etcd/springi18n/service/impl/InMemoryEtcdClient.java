@@ -0,0 +1,502 @@
+package io.etcd.springi18n.service.impl;
+
+import com.google.protobuf.ByteString;
+import io.etcd.jetcd.api.Event;
+import io.etcd.jetcd.api.KeyValue;
+import io.etcd.jetcd.api.ResponseHeader;
+import io.etcd.jetcd.common.exception.ErrorCode;
+import io.etcd.jetcd.common.exception.EtcdExceptionFactory;
+import io.etcd.jetcd.watch.WatchResponse;
+import io.etcd.springi18n.service.EtcdClient;
+import io.etcd.springi18n.service.EtcdKeyValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link EtcdClient} backed by an in-memory multi-version store, so the message source can be tested and load tested
+ * without an etcd server.
+ *
+ * <p>Like etcd, every write creates a new revision, reads see the latest or any not yet compacted revision, and
+ * watches receive the events of every revision from their start revision on, in order, replaying those already
+ * written. A watch starting at a compacted revision fails with a {@link io.etcd.jetcd.common.exception.CompactedException}.</p>
+ *
+ * <p>Latency and failures can be injected while the client is in use: reads complete after
+ * {@link #setReadLatencyMillis(long) a delay} or fail at {@link #setReadFailureRate(double) a rate}, watch responses
+ * arrive {@link #setWatchLatencyMillis(long) late}, and {@link #disconnectWatches()} ends all watches the way a broken
+ * connection does. Watch responses are delivered one at a time from a single thread, never while the store is
+ * locked.</p>
+ */
+public final class InMemoryEtcdClient implements EtcdClient {
+
+    private final Logger log = LoggerFactory.getLogger(InMemoryEtcdClient.class);
+
+    /**
+     * The versions of every key by the revision they were written at, {@code null} for a deletion.
+     * Guarded by {@code this}.
+     */
+    private final NavigableMap<String, NavigableMap<Long, String>> store = new TreeMap<>();
+
+    /**
+     * The writes of every revision after the compacted one, in revision order. Guarded by {@code this}.
+     */
+    private final List<Revision> history = new ArrayList<>();
+
+    /**
+     * Watches by prefix. Guarded by {@code this}.
+     */
+    private final Map<String, Watch> watches = new LinkedHashMap<>();
+
+    /**
+     * The current revision, starts at {@code 1} like an empty etcd. Guarded by {@code this}.
+     */
+    private long revision = 1;
+
+    /**
+     * Revisions before this one can no longer be read or watched. Guarded by {@code this}.
+     */
+    private long compactedRevision;
+
+    /**
+     * When the last scheduled watch response is delivered, responses are never delivered before an earlier one.
+     * Guarded by {@code this}.
+     */
+    private long lastDeliveryNanos;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor readExecutor;
+
+    private volatile long readLatencyMillis;
+
+    private volatile long watchLatencyMillis;
+
+    private volatile double readFailureRate;
+
+    private final AtomicLong reads = new AtomicLong();
+
+    private final AtomicLong failedReads = new AtomicLong();
+
+    /**
+     * Constructs an empty store whose delayed reads complete on the common pool.
+     */
+    public InMemoryEtcdClient() {
+        this(null);
+    }
+
+    /**
+     * Constructs an empty store.
+     *
+     * @param readExecutor the executor delayed reads complete on, {@code null} for the common pool
+     */
+    public InMemoryEtcdClient(Executor readExecutor) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("in-memory-etcd-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.readExecutor = readExecutor;
+    }
+
+    /**
+     * Stores a value in a revision of its own.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the revision of the write
+     */
+    public long put(String key, String value) {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(key, value);
+        return write(values);
+    }
+
+    /**
+     * Stores all values in one revision, like a transaction.
+     *
+     * @param values the values by key
+     * @return the revision of the write
+     */
+    public long putAll(Map<String, String> values) {
+        return write(new LinkedHashMap<>(values));
+    }
+
+    /**
+     * Deletes a key.
+     *
+     * @param key the key
+     * @return the revision of the deletion, or the current revision if the key didn't exist
+     */
+    public long delete(String key) {
+        Map<String, String> deletions = new LinkedHashMap<>();
+        deletions.put(key, null);
+        return write(deletions);
+    }
+
+    /**
+     * Deletes all keys starting with a prefix in one revision.
+     *
+     * @param prefix the key prefix
+     * @return the revision of the deletion, or the current revision if no key existed
+     */
+    public long deletePrefix(String prefix) {
+        Map<String, String> deletions = new LinkedHashMap<>();
+        synchronized (this) {
+            read(prefix, true, revision).keySet().forEach(key -> deletions.put(key, null));
+        }
+        return write(deletions);
+    }
+
+    /**
+     * Applies the values of one revision, {@code null} values delete their key. Deletions of absent keys are
+     * dropped and an empty write creates no revision, as in etcd.
+     */
+    private synchronized long write(Map<String, String> values) {
+        values.entrySet().removeIf(entry -> entry.getValue() == null && currentValue(entry.getKey()) == null);
+        if (values.isEmpty()) {
+            return revision;
+        }
+        long writeRevision = ++revision;
+        values.forEach((key, value) -> store.computeIfAbsent(key, k -> new TreeMap<>()).put(writeRevision, value));
+        Revision written = new Revision(writeRevision, values);
+        history.add(written);
+        for (Watch watch : watches.values()) {
+            watch.send(written);
+        }
+        return writeRevision;
+    }
+
+    private String currentValue(String key) {
+        NavigableMap<Long, String> versions = store.get(key);
+        return versions == null ? null : versions.lastEntry().getValue();
+    }
+
+    /**
+     * Compacts the store: revisions before the given one can no longer be read, and watches can no longer start
+     * before it. Running watches are not affected.
+     *
+     * @param compactRevision the oldest revision to keep, at most the current one
+     */
+    public synchronized void compact(long compactRevision) {
+        long compactTo = Math.min(compactRevision, revision);
+        if (compactTo <= compactedRevision) {
+            return;
+        }
+        compactedRevision = compactTo;
+        history.removeIf(written -> written.revision() < compactTo);
+        store.values().removeIf(versions -> {
+            Long kept = versions.floorKey(compactTo);
+            if (kept != null) {
+                versions.headMap(kept, false).clear();
+            }
+            return versions.size() == 1 && versions.firstEntry().getValue() == null;
+        });
+    }
+
+    /**
+     * Ends every watch with an {@code UNAVAILABLE} error, like a connection to etcd that broke. The watchers are
+     * expected to watch again from the revision they have applied.
+     */
+    public synchronized void disconnectWatches() {
+        List<Watch> disconnected = new ArrayList<>(watches.values());
+        watches.clear();
+        for (Watch watch : disconnected) {
+            watch.fail(EtcdExceptionFactory.newEtcdException(ErrorCode.UNAVAILABLE, "watch stream disconnected"));
+        }
+    }
+
+    /**
+     * @return the current revision
+     */
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return the number of keys currently stored
+     */
+    public synchronized int getKeyCount() {
+        return (int) store.values().stream().filter(versions -> versions.lastEntry().getValue() != null).count();
+    }
+
+    /**
+     * @return the number of running watches
+     */
+    public synchronized int getWatchCount() {
+        return watches.size();
+    }
+
+    /**
+     * @return the number of range reads requested so far
+     */
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    /**
+     * @return the number of range reads failed so far, injected failures included
+     */
+    public long getFailedReadCount() {
+        return failedReads.get();
+    }
+
+    /**
+     * @param readLatencyMillis the time in milliseconds every read takes, {@code 0} to complete reads right away
+     */
+    public void setReadLatencyMillis(long readLatencyMillis) {
+        this.readLatencyMillis = readLatencyMillis;
+    }
+
+    /**
+     * @param watchLatencyMillis the time in milliseconds a watch response takes to arrive after its write
+     */
+    public void setWatchLatencyMillis(long watchLatencyMillis) {
+        this.watchLatencyMillis = watchLatencyMillis;
+    }
+
+    /**
+     * @param readFailureRate the fraction of reads, between {@code 0} and {@code 1}, that fail with {@code UNAVAILABLE}
+     */
+    public void setReadFailureRate(double readFailureRate) {
+        this.readFailureRate = readFailureRate;
+    }
+
+    @Override
+    public String getByKey(String key) throws ExecutionException, InterruptedException {
+        return getByKeyWithRevisionAsync(key, false, 0).get().kvPairs().get(key);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getByKeyAsync(String key, boolean isPrefix) {
+        return getByKeyWithRevisionAsync(key, isPrefix, 0)
+                .thenApply(EtcdKeyValues::kvPairs)
+                .exceptionally(throwable -> {
+                    log.error("Error while getting key " + key + " isPrefix: " + isPrefix, throwable);
+                    return Map.of();
+                });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getByKeyPrefixAsync(String key) {
+        return getByKeyAsync(key, true);
+    }
+
+    @Override
+    public CompletableFuture<EtcdKeyValues> getByKeyWithRevisionAsync(String key, boolean isPrefix, long revision) {
+        return readAsync(() -> {
+            synchronized (this) {
+                long readRevision = checkReadable(revision);
+                return new EtcdKeyValues(readRevision, Map.copyOf(read(key, isPrefix, readRevision)));
+            }
+        });
+    }
+
+    /**
+     * Reads the whole prefix at once and passes the pairs on in key order.
+     */
+    @Override
+    public CompletableFuture<Long> getByKeyPrefixPagedAsync(String key, long revision, int pageSize, BiConsumer<String, String> kvConsumer) {
+        return readAsync(() -> {
+            NavigableMap<String, String> kvPairs;
+            long readRevision;
+            synchronized (this) {
+                readRevision = checkReadable(revision);
+                kvPairs = read(key, true, readRevision);
+            }
+            kvPairs.forEach(kvConsumer);
+            return readRevision;
+        });
+    }
+
+    /**
+     * Runs a read after the read latency, failing it at the read failure rate.
+     */
+    private <T> CompletableFuture<T> readAsync(ReadTask<T> task) {
+        reads.incrementAndGet();
+        long latency = readLatencyMillis;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable read = () -> {
+            try {
+                if (readFailureRate > 0 && ThreadLocalRandom.current().nextDouble() < readFailureRate) {
+                    throw EtcdExceptionFactory.newEtcdException(ErrorCode.UNAVAILABLE, "injected read failure");
+                }
+                result.complete(task.read());
+            } catch (RuntimeException e) {
+                failedReads.incrementAndGet();
+                result.completeExceptionally(e);
+            }
+        };
+        if (latency <= 0) {
+            read.run();
+        } else if (readExecutor == null) {
+            CompletableFuture.delayedExecutor(latency, TimeUnit.MILLISECONDS).execute(read);
+        } else {
+            CompletableFuture.delayedExecutor(latency, TimeUnit.MILLISECONDS, readExecutor).execute(read);
+        }
+        return result;
+    }
+
+    /**
+     * @return the revision to read at, the current one for {@code 0}
+     */
+    private long checkReadable(long readRevision) {
+        if (readRevision > revision) {
+            throw EtcdExceptionFactory.newEtcdException(ErrorCode.OUT_OF_RANGE, "required revision is a future revision");
+        }
+        if (readRevision > 0 && readRevision < compactedRevision) {
+            throw EtcdExceptionFactory.newCompactedException(compactedRevision);
+        }
+        return readRevision > 0 ? readRevision : revision;
+    }
+
+    private NavigableMap<String, String> read(String key, boolean isPrefix, long readRevision) {
+        NavigableMap<String, NavigableMap<Long, String>> range = isPrefix
+                ? store.subMap(key, true, key + Character.MAX_VALUE, false)
+                : store.subMap(key, true, key, true);
+        NavigableMap<String, String> kvPairs = new TreeMap<>();
+        range.forEach((k, versions) -> {
+            Map.Entry<Long, String> version = versions.floorEntry(readRevision);
+            if (version != null && version.getValue() != null) {
+                kvPairs.put(k, version.getValue());
+            }
+        });
+        return kvPairs;
+    }
+
+    @Override
+    public void watchByKeyPrefix(String keyToWatch, Consumer<WatchResponse> consumer) {
+        watchByKeyPrefix(keyToWatch, 0, consumer, e -> log.error("error ", e));
+    }
+
+    @Override
+    public synchronized void watchByKeyPrefix(String keyToWatch, long fromRevision, Consumer<WatchResponse> consumer, Consumer<Throwable> onError) {
+        Watch replaced = watches.remove(keyToWatch);
+        if (replaced != null) {
+            replaced.active = false;
+        }
+        Watch watch = new Watch(keyToWatch, consumer, onError);
+        if (fromRevision > 0 && fromRevision < compactedRevision) {
+            watch.fail(EtcdExceptionFactory.newCompactedException(compactedRevision));
+            return;
+        }
+        watches.put(keyToWatch, watch);
+        if (fromRevision > 0) {
+            for (Revision written : history) {
+                if (written.revision() >= fromRevision) {
+                    watch.send(written);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void testWatchAndGet() {
+    }
+
+    @Override
+    public synchronized void stopWatcher() {
+        watches.values().forEach(watch -> watch.active = false);
+        watches.clear();
+    }
+
+    @Override
+    public synchronized void stopWatcher(String keyToWatch) {
+        Watch watch = watches.remove(keyToWatch);
+        if (watch != null) {
+            watch.active = false;
+        }
+    }
+
+    /**
+     * Schedules a delivery to run after the watch latency, but not before the deliveries scheduled earlier.
+     */
+    private void schedule(Runnable delivery) {
+        long now = System.nanoTime();
+        long deliveryNanos = Math.max(lastDeliveryNanos, now + TimeUnit.MILLISECONDS.toNanos(watchLatencyMillis));
+        lastDeliveryNanos = deliveryNanos;
+        scheduler.schedule(delivery, deliveryNanos - now, TimeUnit.NANOSECONDS);
+    }
+
+    @FunctionalInterface
+    private interface ReadTask<T> {
+        T read();
+    }
+
+    /**
+     * The writes of one revision, {@code null} values are deletions.
+     */
+    private record Revision(long revision, Map<String, String> values) {
+    }
+
+    /**
+     * The watch of one prefix. Responses and the error are dropped once it is no longer active.
+     */
+    private final class Watch {
+
+        private final String prefix;
+
+        private final Consumer<WatchResponse> consumer;
+
+        private final Consumer<Throwable> onError;
+
+        private volatile boolean active = true;
+
+        private Watch(String prefix, Consumer<WatchResponse> consumer, Consumer<Throwable> onError) {
+            this.prefix = prefix;
+            this.consumer = consumer;
+            this.onError = onError;
+        }
+
+        /**
+         * Schedules the response with the writes of a revision under the prefix, if there are any.
+         */
+        private void send(Revision written) {
+            io.etcd.jetcd.api.WatchResponse.Builder response = io.etcd.jetcd.api.WatchResponse.newBuilder()
+                    .setHeader(ResponseHeader.newBuilder().setRevision(written.revision()));
+            written.values().forEach((key, value) -> {
+                if (key.startsWith(prefix)) {
+                    response.addEvents(Event.newBuilder()
+                            .setType(value != null ? Event.EventType.PUT : Event.EventType.DELETE)
+                            .setKv(KeyValue.newBuilder()
+                                    .setKey(ByteString.copyFromUtf8(key))
+                                    .setValue(value != null ? ByteString.copyFromUtf8(value) : ByteString.EMPTY)
+                                    .setModRevision(written.revision())));
+                }
+            });
+            if (response.getEventsCount() == 0) {
+                return;
+            }
+            WatchResponse watchResponse = new WatchResponse(response.build());
+            schedule(() -> {
+                if (!active) {
+                    return;
+                }
+                try {
+                    consumer.accept(watchResponse);
+                } catch (RuntimeException e) {
+                    log.error("error while consuming watch response of prefix: " + prefix, e);
+                }
+            });
+        }
+
+        private void fail(Throwable throwable) {
+            active = false;
+            schedule(() -> onError.accept(throwable));
+        }
+    }
+}
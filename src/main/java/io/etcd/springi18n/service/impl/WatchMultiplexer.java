@@ -0,0 +1,480 @@
+package io.etcd.springi18n.service.impl;
+
+import com.google.protobuf.ByteString;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.Response;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.api.Event;
+import io.etcd.jetcd.api.ResponseHeader;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs the watches of several key prefixes, e.g. one per translation root, as a single etcd watch of their common
+ * parent prefix, and routes its events to the prefix they belong to.
+ *
+ * <p>Every prefix keeps its own applied revision and only receives the events after it, so the shared watch can
+ * start at the oldest revision any prefix needs and the others skip what they have already. A prefix registering
+ * from a revision the shared watch has passed, e.g. a root resuming after a failure, catches up on a watch of its
+ * own and joins the shared watch once it reached it; a root whose revision was compacted fails on its own. The
+ * shared watch only restarts when a prefix outside of it is added, or when it fails itself.</p>
+ *
+ * <p>Responses are passed on outside of any lock held by this class, with only the events of the prefix and the
+ * header of the watch response.</p>
+ */
+final class WatchMultiplexer {
+
+    private final Logger log = LoggerFactory.getLogger(WatchMultiplexer.class);
+
+    private final Watch watchClient;
+
+    /**
+     * Registrations by prefix, guarded by {@code this}.
+     */
+    private final Map<String, Registration> registrations = new LinkedHashMap<>();
+
+    /**
+     * The watch of the common prefix, {@code null} while no prefix is registered. Guarded by {@code this}.
+     */
+    private SharedWatch shared;
+
+    /**
+     * Highest header revision any watch delivered.
+     */
+    private final AtomicLong latestRevision = new AtomicLong();
+
+    WatchMultiplexer(Watch watchClient) {
+        this.watchClient = watchClient;
+    }
+
+    /**
+     * Starts the watch of a prefix, replacing an earlier watch of the same prefix.
+     *
+     * @param prefix       the key prefix
+     * @param fromRevision the first revision to receive events for, or {@code 0} for the current one
+     * @param consumer     receives the responses with the events under the prefix
+     * @param onError      receives the error that ended the watch of the prefix
+     */
+    synchronized void register(String prefix, long fromRevision, Consumer<WatchResponse> consumer, Consumer<Throwable> onError) {
+        Registration replaced = registrations.remove(prefix);
+        if (replaced != null) {
+            replaced.close();
+        }
+        Registration registration = new Registration(prefix, fromRevision, consumer, onError);
+        registrations.put(prefix, registration);
+        if (shared == null || !prefix.startsWith(shared.prefix)
+                || (shared.deliveredRevision == 0 && fromRevision > 0 && (shared.fromRevision == 0 || fromRevision < shared.fromRevision))) {
+            // nothing was delivered yet or the prefix is outside of the watch, restarting loses nothing
+            startSharedWatch();
+        } else if (fromRevision == 0 || fromRevision - 1 >= shared.coveredRevision()) {
+            if (fromRevision == 0) {
+                registration.appliedRevision = shared.deliveredRevision;
+            }
+            log.info("started watching prefix: " + prefix + " from revision: " + fromRevision + " on the watch of: " + shared.prefix);
+        } else {
+            registration.startCatchUp(watchClient.watch(bytes(prefix), option(fromRevision), registration));
+            log.info("started catching up prefix: " + prefix + " from revision: " + fromRevision + " to the watch of: " + shared.prefix);
+        }
+    }
+
+    /**
+     * Stops the watch of a prefix, the watches of other prefixes keep running.
+     *
+     * @param prefix the key prefix
+     */
+    synchronized void unregister(String prefix) {
+        Registration registration = registrations.remove(prefix);
+        if (registration != null) {
+            registration.close();
+        }
+        if (registrations.isEmpty() && shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    /**
+     * Stops the watches of all prefixes.
+     */
+    synchronized void close() {
+        registrations.values().forEach(Registration::close);
+        registrations.clear();
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    /**
+     * @return the highest revision any watch has reached, {@code 0} before the first response
+     */
+    long getLatestRevision() {
+        return latestRevision.get();
+    }
+
+    /**
+     * (Re)starts the shared watch over the common prefix of all registrations, from the oldest revision any of them
+     * needs. Prefixes catching up stop their own watches, the shared one starts early enough for them.
+     */
+    private void startSharedWatch() {
+        if (shared != null) {
+            shared.close();
+        }
+        long fromRevision = 0;
+        for (Registration registration : registrations.values()) {
+            registration.stopCatchUp();
+            long next = registration.nextRevision();
+            if (next > 0 && (fromRevision == 0 || next < fromRevision)) {
+                fromRevision = next;
+            }
+        }
+        String prefix = commonPrefix(registrations.keySet());
+        SharedWatch watch = new SharedWatch(prefix, fromRevision);
+        shared = watch;
+        watch.start(watchClient.watch(bytes(prefix), option(fromRevision), watch));
+        log.info("started watching prefix: " + prefix + " from revision: " + fromRevision + " for " + registrations.size() + " prefixes");
+    }
+
+    private static String commonPrefix(Collection<String> prefixes) {
+        String common = null;
+        for (String prefix : prefixes) {
+            if (common == null) {
+                common = prefix;
+            } else {
+                int length = 0;
+                while (length < common.length() && length < prefix.length() && common.charAt(length) == prefix.charAt(length)) {
+                    length++;
+                }
+                common = common.substring(0, length);
+            }
+        }
+        return common != null ? common : "";
+    }
+
+    /**
+     * @return the compacted revision that caused the error, {@code -1} if it was not caused by a compaction
+     */
+    private static long compactedRevision(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CompactedException compacted) {
+                return compacted.getCompactedRevision();
+            }
+        }
+        return -1;
+    }
+
+    private static ByteSequence bytes(String key) {
+        return ByteSequence.from(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static WatchOption option(long fromRevision) {
+        return WatchOption.builder()
+                .isPrefix(true)
+                .withRevision(fromRevision)
+                .withProgressNotify(true)
+                .build();
+    }
+
+    /**
+     * @return a response with the header of the given one and only the given events
+     */
+    private static WatchResponse withEvents(WatchResponse response, List<WatchEvent> events) {
+        Response.Header header = response.getHeader();
+        io.etcd.jetcd.api.WatchResponse.Builder routed = io.etcd.jetcd.api.WatchResponse.newBuilder()
+                .setHeader(ResponseHeader.newBuilder()
+                        .setClusterId(header.getClusterId())
+                        .setMemberId(header.getMemberId())
+                        .setRevision(header.getRevision())
+                        .setRaftTerm(header.getRaftTerm()));
+        for (WatchEvent event : events) {
+            Event.Builder routedEvent = Event.newBuilder()
+                    .setType(event.getEventType() == WatchEvent.EventType.DELETE ? Event.EventType.DELETE : Event.EventType.PUT)
+                    .setKv(toKeyValue(event.getKeyValue()));
+            if (event.getPrevKV() != null && !event.getPrevKV().getKey().isEmpty()) {
+                routedEvent.setPrevKv(toKeyValue(event.getPrevKV()));
+            }
+            routed.addEvents(routedEvent);
+        }
+        return new WatchResponse(routed.build());
+    }
+
+    private static io.etcd.jetcd.api.KeyValue toKeyValue(KeyValue keyValue) {
+        return io.etcd.jetcd.api.KeyValue.newBuilder()
+                .setKey(ByteString.copyFrom(keyValue.getKey().getBytes()))
+                .setValue(ByteString.copyFrom(keyValue.getValue().getBytes()))
+                .setCreateRevision(keyValue.getCreateRevision())
+                .setModRevision(keyValue.getModRevision())
+                .setVersion(keyValue.getVersion())
+                .setLease(keyValue.getLease())
+                .build();
+    }
+
+    /**
+     * The etcd watch of the common prefix, ignoring the callbacks that arrive after it was replaced.
+     */
+    private final class SharedWatch implements Watch.Listener {
+
+        private final String prefix;
+
+        private final long fromRevision;
+
+        /**
+         * The header revision of the last response, guarded by the multiplexer.
+         */
+        private long deliveredRevision;
+
+        /**
+         * Guarded by the multiplexer.
+         */
+        private Watch.Watcher watcher;
+
+        private volatile boolean closed;
+
+        private SharedWatch(String prefix, long fromRevision) {
+            this.prefix = prefix;
+            this.fromRevision = fromRevision;
+        }
+
+        /**
+         * @return the revision after which this watch delivers every event, {@link Long#MAX_VALUE} if it started at
+         * the current revision and has not delivered anything yet
+         */
+        private long coveredRevision() {
+            if (fromRevision == 0 && deliveredRevision == 0) {
+                return Long.MAX_VALUE;
+            }
+            return Math.max(fromRevision - 1, deliveredRevision);
+        }
+
+        /**
+         * Called under the multiplexer's lock, a watcher failing before it was returned is closed right away.
+         */
+        private void start(Watch.Watcher watcher) {
+            this.watcher = watcher;
+            if (closed) {
+                watcher.close();
+            }
+        }
+
+        /**
+         * Called under the multiplexer's lock.
+         */
+        private void close() {
+            closed = true;
+            if (watcher != null) {
+                watcher.close();
+            }
+        }
+
+        @Override
+        public void onNext(WatchResponse response) {
+            long revision = response.getHeader().getRevision();
+            List<Registration> targets = new ArrayList<>();
+            synchronized (WatchMultiplexer.this) {
+                if (closed) {
+                    return;
+                }
+                deliveredRevision = Math.max(deliveredRevision, revision);
+                for (Registration registration : registrations.values()) {
+                    if (registration.catchUp == null) {
+                        targets.add(registration);
+                    }
+                }
+            }
+            latestRevision.accumulateAndGet(revision, Math::max);
+            for (Registration registration : targets) {
+                registration.deliver(response);
+            }
+        }
+
+        /**
+         * Fails the prefixes that needed a compacted revision, or all of them on any other error, and restarts the
+         * watch for the others.
+         */
+        @Override
+        public void onError(Throwable throwable) {
+            List<Registration> failed = new ArrayList<>();
+            synchronized (WatchMultiplexer.this) {
+                if (closed) {
+                    return;
+                }
+                close();
+                shared = null;
+                long compactedRevision = compactedRevision(throwable);
+                for (Registration registration : registrations.values()) {
+                    if (registration.catchUp == null && (compactedRevision < 0 || registration.nextRevision() < compactedRevision)) {
+                        failed.add(registration);
+                    }
+                }
+                failed.forEach(registration -> {
+                    registrations.remove(registration.prefix);
+                    registration.close();
+                });
+                if (!registrations.isEmpty()) {
+                    startSharedWatch();
+                }
+            }
+            for (Registration registration : failed) {
+                registration.onError.accept(throwable);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            log.info("watch of prefix: " + prefix + " completed");
+        }
+    }
+
+    /**
+     * A registered prefix, receiving the events of the shared watch, or of a watch of its own while it catches up.
+     */
+    private final class Registration implements Watch.Listener {
+
+        private final String prefix;
+
+        private final ByteSequence prefixBytes;
+
+        private final long fromRevision;
+
+        private final Consumer<WatchResponse> consumer;
+
+        private final Consumer<Throwable> onError;
+
+        /**
+         * The header revision of the last response passed on, written by the thread delivering them.
+         */
+        private volatile long appliedRevision;
+
+        /**
+         * The watch of the prefix while it catches up, guarded by the multiplexer.
+         */
+        private Watch.Watcher catchUp;
+
+        private volatile boolean closed;
+
+        private Registration(String prefix, long fromRevision, Consumer<WatchResponse> consumer, Consumer<Throwable> onError) {
+            this.prefix = prefix;
+            this.prefixBytes = bytes(prefix);
+            this.fromRevision = fromRevision;
+            this.consumer = consumer;
+            this.onError = onError;
+            this.appliedRevision = Math.max(fromRevision - 1, 0);
+        }
+
+        /**
+         * @return the first revision the prefix still needs, {@code 0} for the current one
+         */
+        private long nextRevision() {
+            long applied = appliedRevision;
+            return applied > 0 ? applied + 1 : fromRevision;
+        }
+
+        /**
+         * Called under the multiplexer's lock, a watcher failing before it was returned is closed right away.
+         */
+        private void startCatchUp(Watch.Watcher watcher) {
+            if (closed) {
+                watcher.close();
+            } else {
+                catchUp = watcher;
+            }
+        }
+
+        /**
+         * Called under the multiplexer's lock.
+         */
+        private void stopCatchUp() {
+            if (catchUp != null) {
+                catchUp.close();
+                catchUp = null;
+            }
+        }
+
+        /**
+         * Called under the multiplexer's lock.
+         */
+        private void close() {
+            closed = true;
+            stopCatchUp();
+        }
+
+        /**
+         * Passes on the events under the prefix after the applied revision, and the header revision if it is newer.
+         */
+        private void deliver(WatchResponse response) {
+            if (closed) {
+                return;
+            }
+            long applied = appliedRevision;
+            long revision = response.getHeader().getRevision();
+            List<WatchEvent> events = response.getEvents();
+            List<WatchEvent> routed = new ArrayList<>(events.size());
+            for (WatchEvent event : events) {
+                KeyValue keyValue = event.getKeyValue();
+                if (keyValue.getModRevision() > applied && keyValue.getKey().startsWith(prefixBytes)) {
+                    routed.add(event);
+                }
+            }
+            if (routed.isEmpty() && revision <= applied) {
+                return;
+            }
+            appliedRevision = Math.max(applied, revision);
+            try {
+                consumer.accept(routed.size() == events.size() ? response : withEvents(response, routed));
+            } catch (RuntimeException e) {
+                log.error("error while consuming watch response of prefix: " + prefix, e);
+            }
+        }
+
+        /**
+         * Receives the responses of the catch-up watch, and moves the prefix to the shared watch once it reached it.
+         */
+        @Override
+        public void onNext(WatchResponse response) {
+            synchronized (WatchMultiplexer.this) {
+                if (closed || catchUp == null) {
+                    return;
+                }
+            }
+            latestRevision.accumulateAndGet(response.getHeader().getRevision(), Math::max);
+            deliver(response);
+            synchronized (WatchMultiplexer.this) {
+                if (!closed && catchUp != null && shared != null && appliedRevision >= shared.coveredRevision()) {
+                    stopCatchUp();
+                    log.info("prefix: " + prefix + " caught up at revision: " + appliedRevision + " with the watch of: " + shared.prefix);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (WatchMultiplexer.this) {
+                if (closed || catchUp == null) {
+                    return;
+                }
+                registrations.remove(prefix, this);
+                close();
+            }
+            onError.accept(throwable);
+        }
+
+        @Override
+        public void onCompleted() {
+            log.info("catch-up watch of prefix: " + prefix + " completed");
+        }
+    }
+}
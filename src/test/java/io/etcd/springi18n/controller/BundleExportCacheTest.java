@@ -0,0 +1,86 @@
+package io.etcd.springi18n.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.etcd.springi18n.service.EtcdMessageSource;
+import io.etcd.springi18n.service.impl.EtcdClientFactory;
+import io.etcd.springi18n.service.impl.InMemoryEtcdClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class BundleExportCacheTest {
+
+	private InMemoryEtcdClient client;
+
+	private ExecutorService executor;
+
+	private EtcdMessageSource messageSource;
+
+	private final BundleExportCache cache = new BundleExportCache(new ObjectMapper(), 16);
+
+	@BeforeEach
+	void setUp() {
+		client = EtcdClientFactory.createInMemoryEtcdClient();
+		client.putAll(Map.of(
+				"/messages/en/service.greet.hello", "Hello {0}",
+				"/messages/en/shop.cart", "Cart",
+				"/messages/bn/service.greet.hello", "Ohe {0}"));
+		client.put("/messages/locales", "en,bn");
+		executor = Executors.newFixedThreadPool(4);
+		messageSource = new EtcdMessageSource(client, "/messages", "/messages/locales", "/messages", executor, true);
+		messageSource.setWaitForInitialLoad(true);
+		messageSource.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		messageSource.stopWatching();
+		executor.shutdownNow();
+	}
+
+	private BundleExportCache.ExportedBundle export(Locale locale, String prefix) {
+		return cache.get("default", messageSource, locale, prefix);
+	}
+
+	@Test
+	void sharesTheBundleOfTheServedLocale() {
+		BundleExportCache.ExportedBundle english = export(Locale.ENGLISH, "service.");
+
+		assertThat(export(Locale.US, "service.")).isSameAs(english);
+		assertThat(export(Locale.UK, " service. ")).isSameAs(english);
+		assertThat(new String(english.json(), StandardCharsets.UTF_8)).isEqualTo("{\"service.greet.hello\":\"Hello {0}\"}");
+	}
+
+	@Test
+	void keepsTheEntityTagWhileTheExportedMessagesAreUnchanged() {
+		BundleExportCache.ExportedBundle before = export(Locale.ENGLISH, "service.");
+		BundleExportCache.ExportedBundle all = export(Locale.ENGLISH, "");
+
+		client.put("/messages/en/shop.cart", "Basket");
+		await().atMost(Duration.ofSeconds(10)).until(() -> messageSource.getRevision() == client.getRevision());
+
+		BundleExportCache.ExportedBundle after = export(Locale.ENGLISH, "service.");
+		assertThat(after.revision()).isGreaterThan(before.revision());
+		assertThat(after.etag()).isEqualTo(before.etag());
+		assertThat(after.gzipped()).isSameAs(before.gzipped());
+		assertThat(export(Locale.ENGLISH, "").etag()).isNotEqualTo(all.etag());
+	}
+
+	@Test
+	void doesNotCacheLocalesWithoutMessages() {
+		BundleExportCache.ExportedBundle unknown = export(Locale.JAPANESE, "");
+
+		assertThat(new String(unknown.json(), StandardCharsets.UTF_8)).isEqualTo("{}");
+		assertThat(export(Locale.JAPANESE, "")).isNotSameAs(unknown);
+	}
+}
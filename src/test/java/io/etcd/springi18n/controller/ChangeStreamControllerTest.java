@@ -0,0 +1,81 @@
+package io.etcd.springi18n.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.etcd.springi18n.service.EtcdMessageSource;
+import io.etcd.springi18n.service.EtcdMessageSourceRegistry;
+import io.etcd.springi18n.service.impl.EtcdClientFactory;
+import io.etcd.springi18n.service.impl.InMemoryEtcdClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChangeStreamControllerTest {
+
+	private InMemoryEtcdClient client;
+
+	private ExecutorService executor;
+
+	private EtcdMessageSource messageSource;
+
+	private ChangeStreamController controller;
+
+	@BeforeEach
+	void setUp() {
+		client = EtcdClientFactory.createInMemoryEtcdClient();
+		client.putAll(Map.of(
+				"/messages/en/service.greet.hello", "Hello {0}",
+				"/messages/bn/service.greet.hello", "Ohe {0}"));
+		client.put("/messages/locales", "en,bn");
+		executor = Executors.newFixedThreadPool(4);
+		messageSource = new EtcdMessageSource(client, "/messages", "/messages/locales", "/messages", executor, true);
+		messageSource.setWaitForInitialLoad(true);
+		messageSource.start();
+		controller = new ChangeStreamController(new EtcdMessageSourceRegistry(messageSource, Map.of()), new ObjectMapper(),
+				100, 16, 2, 0, 10000, 30000);
+	}
+
+	@AfterEach
+	void tearDown() {
+		controller.stop();
+		messageSource.stopWatching();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void subscribesToTheServedLocale() {
+		controller.streamChanges("en-US", "", EtcdMessageSourceRegistry.DEFAULT_ROOT, -1, null);
+		controller.streamChanges("bn", "service.", EtcdMessageSourceRegistry.DEFAULT_ROOT, -1, "3");
+
+		assertThat(controller.getSubscriberCount(EtcdMessageSourceRegistry.DEFAULT_ROOT)).isEqualTo(2);
+		assertThat(controller.getSubscriberCount("billing")).isZero();
+	}
+
+	@Test
+	void rejectsUnknownRootsAndInvalidRevisions() {
+		assertThatThrownBy(() -> controller.streamChanges("en", "", "billing", -1, null))
+				.hasMessageContaining("Unknown translation root");
+		assertThatThrownBy(() -> controller.streamChanges("en", "", EtcdMessageSourceRegistry.DEFAULT_ROOT, -1, "latest"))
+				.hasMessageContaining("Invalid Last-Event-ID");
+	}
+
+	@Test
+	void completesEveryStreamOnShutdown() {
+		SseEmitter english = controller.streamChanges("en", "", EtcdMessageSourceRegistry.DEFAULT_ROOT, -1, null);
+		SseEmitter bengali = controller.streamChanges("bn", "", EtcdMessageSourceRegistry.DEFAULT_ROOT, -1, null);
+
+		controller.stop();
+
+		assertThat(controller.getSubscriberCount(EtcdMessageSourceRegistry.DEFAULT_ROOT)).isZero();
+		// a completed emitter refuses further events
+		assertThatThrownBy(() -> english.send("late")).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> bengali.send("late")).isInstanceOf(IllegalStateException.class);
+	}
+}
@@ -0,0 +1,267 @@
+package io.etcd.springi18n.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.etcd.springi18n.service.MessageChange;
+import io.etcd.springi18n.service.MessageChanges;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class ChangeStreamTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final ChangeStream stream = new ChangeStream(new ObjectMapper(), executor, 100, 2, 10_000, 30_000);
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private void publish(long previousRevision, long revision, Locale locale, String code, String message) {
+		stream.publish(new MessageChanges(previousRevision, revision, List.of(new MessageChange(locale, code, message, revision))));
+	}
+
+	@Test
+	void disconnectsASubscriberWhoseQueueOverflows() {
+		RecordingEmitter slow = new RecordingEmitter();
+		slow.blockSends();
+		RecordingEmitter fast = new RecordingEmitter();
+		stream.startAt(1);
+		stream.subscribe(Locale.ENGLISH, "", -1, slow);
+		stream.subscribe(Locale.ENGLISH, "", -1, fast);
+
+		// the first event is taken from the queue and blocks in its write, the next two fill the queue
+		publish(1, 2, Locale.ENGLISH, "service.greet.hello", "Hi");
+		await().atMost(Duration.ofSeconds(5)).until(() -> slow.sendsStarted.getCount() == 0);
+		publish(2, 3, Locale.ENGLISH, "service.greet.hello", "Hey");
+		publish(3, 4, Locale.ENGLISH, "service.greet.hello", "Hello");
+		assertThat(slow.completed).isFalse();
+
+		publish(4, 5, Locale.ENGLISH, "service.greet.hello", "Howdy");
+
+		// the blocked write is interrupted and its writer completes the stream
+		await().atMost(Duration.ofSeconds(5)).until(() -> slow.completed);
+		assertThat(stream.getSubscriberCount()).isEqualTo(1);
+		await().atMost(Duration.ofSeconds(5)).until(() -> fast.events.size() == 4);
+		assertThat(fast.events).allMatch(event -> event.contains("event:change"));
+		assertThat(fast.events.get(3)).contains("id:5").contains("Howdy");
+
+		slow.unblockSends();
+		publish(5, 6, Locale.ENGLISH, "service.greet.hello", "Hiya");
+		await().atMost(Duration.ofSeconds(5)).until(() -> fast.events.size() == 5);
+		assertThat(slow.events).hasSizeLessThanOrEqualTo(1);
+	}
+
+	@Test
+	void disconnectsStalledSubscribersSoTheOthersGetTheirWriters() {
+		ExecutorService writers = Executors.newFixedThreadPool(2);
+		ChangeStream stalling = new ChangeStream(new ObjectMapper(), writers, 100, 16, 100, 30_000);
+		List<RecordingEmitter> stalled = List.of(new RecordingEmitter(), new RecordingEmitter(), new RecordingEmitter());
+		RecordingEmitter reading = new RecordingEmitter();
+		try {
+			stalling.startAt(1);
+			for (RecordingEmitter emitter : stalled) {
+				emitter.blockSends();
+				stalling.subscribe(Locale.ENGLISH, "", -1, emitter);
+			}
+			stalling.subscribe(Locale.ENGLISH, "", -1, reading);
+
+			stalling.publish(new MessageChanges(1, 2, List.of(new MessageChange(Locale.ENGLISH, "service.greet.hello", "Hi", 2))));
+
+			// more stalled clients than writers, each write blocks until it passes the write timeout
+			await().atMost(Duration.ofSeconds(5)).pollInterval(Duration.ofMillis(20)).until(() -> {
+				stalling.disconnectSlowSubscribers();
+				return reading.events.size() == 1 && stalled.stream().allMatch(emitter -> emitter.completed);
+			});
+			assertThat(reading.events.get(0)).contains("id:2").contains("Hi");
+			assertThat(reading.completed).isFalse();
+			assertThat(stalling.getSubscriberCount()).isEqualTo(1);
+			assertThat(stalled).allMatch(emitter -> emitter.events.isEmpty());
+		} finally {
+			writers.shutdownNow();
+		}
+	}
+
+	@Test
+	void disconnectsASubscriberWhoseEventsWaitTooLong() throws InterruptedException {
+		// an executor that never runs the writes, the events stay queued
+		ChangeStream starved = new ChangeStream(new ObjectMapper(), task -> {
+		}, 100, 16, 10_000, 50);
+		RecordingEmitter waiting = new RecordingEmitter();
+		starved.startAt(1);
+		starved.subscribe(Locale.ENGLISH, "", -1, waiting);
+
+		starved.publish(new MessageChanges(1, 2, List.of(new MessageChange(Locale.ENGLISH, "service.greet.hello", "Hi", 2))));
+		starved.disconnectSlowSubscribers();
+		assertThat(waiting.completed).isFalse();
+
+		Thread.sleep(100);
+		starved.disconnectSlowSubscribers();
+
+		assertThat(waiting.completed).isTrue();
+		assertThat(starved.getSubscriberCount()).isZero();
+	}
+
+	@Test
+	void removesASubscriberWhenItsStreamEnds() {
+		RecordingEmitter completed = new RecordingEmitter();
+		RecordingEmitter timedOut = new RecordingEmitter();
+		RecordingEmitter failed = new RecordingEmitter();
+		stream.subscribe(Locale.ENGLISH, "", -1, completed);
+		stream.subscribe(Locale.ENGLISH, "", -1, timedOut);
+		stream.subscribe(Locale.ENGLISH, "", -1, failed);
+		assertThat(stream.getSubscriberCount()).isEqualTo(3);
+
+		completed.onCompletion.run();
+		timedOut.onTimeout.run();
+		failed.onError.accept(new IOException("broken pipe"));
+
+		assertThat(stream.getSubscriberCount()).isZero();
+		publish(0, 2, Locale.ENGLISH, "service.greet.hello", "Hi");
+		assertThat(completed.events).isEmpty();
+		assertThat(timedOut.events).isEmpty();
+		assertThat(failed.events).isEmpty();
+	}
+
+	@Test
+	void removesASubscriberWhoseWriteFails() {
+		RecordingEmitter failing = new RecordingEmitter();
+		failing.failSends = true;
+		stream.subscribe(Locale.ENGLISH, "", -1, failing);
+
+		publish(0, 2, Locale.ENGLISH, "service.greet.hello", "Hi");
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> failing.completed);
+		assertThat(stream.getSubscriberCount()).isZero();
+	}
+
+	@Test
+	void completesEveryStreamOnClose() {
+		RecordingEmitter english = new RecordingEmitter();
+		RecordingEmitter bengali = new RecordingEmitter();
+		stream.subscribe(Locale.ENGLISH, "", -1, english);
+		stream.subscribe(new Locale("bn"), "", -1, bengali);
+
+		stream.close();
+
+		assertThat(english.completed).isTrue();
+		assertThat(bengali.completed).isTrue();
+		assertThat(stream.getSubscriberCount()).isZero();
+	}
+
+	@Test
+	void sendsOnlyTheChangesOfTheLocaleAndPrefix() {
+		RecordingEmitter emitter = new RecordingEmitter();
+		stream.startAt(1);
+		stream.subscribe(Locale.ENGLISH, "shop.", -1, emitter);
+
+		publish(1, 2, Locale.ENGLISH, "service.greet.hello", "Hi");
+		publish(2, 3, Locale.GERMAN, "shop.cart", "Warenkorb");
+		publish(3, 4, Locale.ENGLISH, "shop.cart", "Basket");
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 1);
+		assertThat(emitter.events.get(0)).contains("id:4").contains("\"shop.cart\":\"Basket\"").doesNotContain("service.greet");
+	}
+
+	@Test
+	void resumesFromTheHistoryOrResets() {
+		stream.startAt(1);
+		publish(1, 2, Locale.ENGLISH, "service.greet.hello", "Hi");
+		publish(2, 3, Locale.ENGLISH, "service.greet.hello", "Hey");
+		RecordingEmitter resumed = new RecordingEmitter();
+		RecordingEmitter reset = new RecordingEmitter();
+
+		stream.subscribe(Locale.ENGLISH, "", 2, resumed);
+		stream.subscribe(Locale.ENGLISH, "", 0, reset);
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> resumed.events.size() == 1 && reset.events.size() == 1);
+		assertThat(resumed.events.get(0)).contains("id:3").contains("event:change").contains("Hey");
+		assertThat(reset.events.get(0)).contains("id:3").contains("event:reset");
+	}
+
+	/**
+	 * Records the events written to it and the callbacks the stream registers, like a servlet container would run them.
+	 */
+	static final class RecordingEmitter extends SseEmitter {
+
+		final List<String> events = new CopyOnWriteArrayList<>();
+
+		final CountDownLatch sendsStarted = new CountDownLatch(1);
+
+		private volatile CountDownLatch sendsAllowed = new CountDownLatch(0);
+
+		volatile boolean failSends;
+
+		volatile boolean completed;
+
+		volatile Runnable onCompletion;
+
+		volatile Runnable onTimeout;
+
+		volatile Consumer<Throwable> onError;
+
+		void blockSends() {
+			sendsAllowed = new CountDownLatch(1);
+		}
+
+		void unblockSends() {
+			sendsAllowed.countDown();
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			sendsStarted.countDown();
+			try {
+				sendsAllowed.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				// like a socket write interrupted by the stream
+				throw new IOException("write interrupted", e);
+			}
+			if (failSends) {
+				throw new IOException("broken pipe");
+			}
+			events.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		@Override
+		public void completeWithError(Throwable ex) {
+			completed = true;
+		}
+
+		@Override
+		public void onCompletion(Runnable callback) {
+			onCompletion = callback;
+		}
+
+		@Override
+		public void onTimeout(Runnable callback) {
+			onTimeout = callback;
+		}
+
+		@Override
+		public void onError(Consumer<Throwable> callback) {
+			onError = callback;
+		}
+	}
+}
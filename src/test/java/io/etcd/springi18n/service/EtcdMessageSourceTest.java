@@ -0,0 +1,223 @@
+package io.etcd.springi18n.service;
+
+import io.etcd.springi18n.service.impl.EtcdClientFactory;
+import io.etcd.springi18n.service.impl.InMemoryEtcdClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class EtcdMessageSourceTest {
+
+	private static final Locale BENGALI = new Locale("bn");
+
+	private InMemoryEtcdClient client;
+
+	private ExecutorService executor;
+
+	private EtcdMessageSource messageSource;
+
+	@BeforeEach
+	void setUp() {
+		client = EtcdClientFactory.createInMemoryEtcdClient();
+		client.putAll(Map.of(
+				"/messages/en/service.greet.hello", "Hello {0}",
+				"/messages/en/service.greet.bye", "Bye",
+				"/messages/bn/service.greet.hello", "Ohe {0}"));
+		client.put("/messages/locales", "en,bn");
+		executor = Executors.newFixedThreadPool(8);
+		messageSource = new EtcdMessageSource(client, "/messages", "/messages/locales", "/messages", executor, true);
+		messageSource.setReloadDebounce(10, 100);
+		messageSource.setWaitForInitialLoad(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		messageSource.stopWatching();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void loadsAllLocales() {
+		messageSource.start();
+
+		assertThat(messageSource.isReady()).isTrue();
+		assertThat(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, Locale.ENGLISH)).isEqualTo("Hello Ana");
+		assertThat(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, BENGALI)).isEqualTo("Ohe Ana");
+		assertThat(messageSource.getRevision()).isEqualTo(client.getRevision());
+	}
+
+	@Test
+	void appliesWatchedChanges() {
+		messageSource.start();
+
+		client.put("/messages/en/service.greet.hello", "Hi {0}");
+		client.delete("/messages/en/service.greet.bye");
+
+		await().atMost(Duration.ofSeconds(10)).until(() -> messageSource.getRevision() == client.getRevision());
+		assertThat(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, Locale.ENGLISH)).isEqualTo("Hi Ana");
+		assertThat(messageSource.getMessage("service.greet.bye", null, "default", Locale.ENGLISH)).isEqualTo("default");
+	}
+
+	@Test
+	void writesTheSnapshotFileAfterWatchedChanges(@TempDir Path tempDir) throws Exception {
+		Path file = tempDir.resolve("messages.snapshot");
+		messageSource.setSnapshotFile(file);
+		messageSource.setSnapshotFileWriteInterval(50);
+		messageSource.start();
+		await().atMost(Duration.ofSeconds(10)).until(() -> snapshotFileRevision(file) == client.getRevision());
+
+		client.put("/messages/en/service.greet.hello", "Hi {0}");
+
+		await().atMost(Duration.ofSeconds(10)).until(() -> snapshotFileRevision(file) == client.getRevision());
+		MessageSnapshot written = SnapshotFile.read(file, "/messages", "/messages/locales", false);
+		assertThat(written.getBundles().get(Locale.ENGLISH).getMessage("service.greet.hello")).isEqualTo("Hi {0}");
+	}
+
+	private static long snapshotFileRevision(Path file) throws Exception {
+		MessageSnapshot written = SnapshotFile.read(file, "/messages", "/messages/locales", false);
+		return written == null ? -1 : written.getRevision();
+	}
+
+	@Test
+	void resumesTheWatchAfterADisconnect() {
+		messageSource.start();
+
+		client.disconnectWatches();
+		client.put("/messages/en/service.greet.hello", "Hi {0}");
+
+		await().atMost(Duration.ofSeconds(10))
+				.until(() -> "Hi Ana".equals(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, Locale.ENGLISH)));
+		assertThat(client.getWatchCount()).isEqualTo(1);
+	}
+
+	@Test
+	void reloadsAllMessagesWhenTheWatchCanNotResume() {
+		messageSource.start();
+
+		client.disconnectWatches();
+		client.put("/messages/en/service.greet.hello", "Hi {0}");
+		client.put("/messages/bn/service.greet.bye", "Bidai");
+		client.compact(client.getRevision());
+
+		await().atMost(Duration.ofSeconds(10)).until(() -> messageSource.getRevision() == client.getRevision());
+		assertThat(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, Locale.ENGLISH)).isEqualTo("Hi Ana");
+		assertThat(messageSource.getMessage("service.greet.bye", null, BENGALI)).isEqualTo("Bidai");
+	}
+
+	@Test
+	void addsLocalesAtRuntime() {
+		messageSource.start();
+
+		client.put("/messages/de/service.greet.hello", "Hallo {0}");
+		client.put("/messages/locales", "en,bn,de");
+
+		await().atMost(Duration.ofSeconds(10)).until(() -> messageSource.getAvailableLocales().contains(Locale.GERMAN));
+		assertThat(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, Locale.GERMAN)).isEqualTo("Hallo Ana");
+	}
+
+	@Test
+	void keepsServingMessagesWhileReadsFail() {
+		messageSource.start();
+
+		client.setReadFailureRate(1);
+		messageSource.reloadMessages();
+
+		assertThat(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, Locale.ENGLISH)).isEqualTo("Hello Ana");
+		assertThat(client.getFailedReadCount()).isPositive();
+	}
+
+	@Test
+	void notifiesListenersOfTheChangesTheirFiltersMatch() {
+		messageSource.start();
+		List<MessageChange> greetings = new CopyOnWriteArrayList<>();
+		List<MessageChange> bengali = new CopyOnWriteArrayList<>();
+		messageSource.addChangeListener(MessageChangeFilter.forPrefixes("service.greet."), changes -> greetings.addAll(changes.changes()));
+		messageSource.addChangeListener(MessageChangeFilter.forLocales(BENGALI), changes -> bengali.addAll(changes.changes()));
+
+		client.put("/messages/en/service.other", "Other");
+		client.put("/messages/en/service.greet.hello", "Hi {0}");
+		long revision = client.put("/messages/bn/service.greet.bye", "Bidai");
+
+		await().atMost(Duration.ofSeconds(10)).until(() -> greetings.size() == 2 && bengali.size() == 1);
+		assertThat(greetings).extracting(MessageChange::code).containsExactly("service.greet.hello", "service.greet.bye");
+		assertThat(bengali).containsExactly(new MessageChange(BENGALI, "service.greet.bye", "Bidai", revision));
+	}
+
+	@Test
+	void stopsTheDefaultListenerExecutorWithTheWatcher() {
+		messageSource.start();
+		List<MessageChange> changes = new CopyOnWriteArrayList<>();
+		messageSource.addChangeListener(MessageChangeFilter.all(), published -> changes.addAll(published.changes()));
+		client.put("/messages/en/service.greet.hello", "Hi {0}");
+		await().atMost(Duration.ofSeconds(10)).until(() -> changes.size() == 1);
+
+		messageSource.stopWatching();
+
+		await().atMost(Duration.ofSeconds(10)).until(() -> Thread.getAllStackTraces().keySet().stream()
+				.noneMatch(thread -> thread.getName().equals("etcd-listener")));
+	}
+
+	@Test
+	void fallsBackWhileALocaleLoadsOnFirstUse() {
+		messageSource.setLazyLocaleLoading(true);
+		messageSource.setFirstUseTimeout(50);
+		messageSource.start();
+		client.setReadLatencyMillis(500);
+
+		long startNanos = System.nanoTime();
+		assertThat(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, "default", BENGALI)).isEqualTo("default");
+		assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofMillis(400));
+
+		await().atMost(Duration.ofSeconds(10))
+				.until(() -> "Ohe Ana".equals(messageSource.getMessage("service.greet.hello", new Object[]{"Ana"}, "default", BENGALI)));
+	}
+
+	@Test
+	void readsMissingCodesThroughBeforeTheirWatchEvent() {
+		messageSource.setReadThrough(true);
+		messageSource.start();
+		client.setWatchLatencyMillis(60_000);
+
+		client.put("/messages/en/service.greet.new", "New {0}");
+
+		assertThat(messageSource.getMessage("service.greet.new", new Object[]{"Ana"}, Locale.ENGLISH)).isEqualTo("New Ana");
+		assertThat(messageSource.getMessages(List.of("service.greet.bye", "service.greet.new"), Locale.ENGLISH))
+				.containsExactly(Map.entry("service.greet.bye", "Bye"), Map.entry("service.greet.new", "New {0}"));
+	}
+
+	@Test
+	void readsAMissingCodeOncePerRevision() throws Exception {
+		messageSource.setReadThrough(true);
+		messageSource.start();
+		client.setReadLatencyMillis(50);
+		long readsBefore = client.getReadCount();
+
+		List<Callable<String>> lookups = Collections.nCopies(8, () -> messageSource.getMessage("service.greet.none", null, null, Locale.ENGLISH));
+		for (Future<String> lookup : executor.invokeAll(lookups)) {
+			assertThat(lookup.get()).isNull();
+		}
+		assertThat(messageSource.getMessage("service.greet.none", null, null, Locale.ENGLISH)).isNull();
+		assertThat(client.getReadCount() - readsBefore).isEqualTo(1);
+
+		client.put("/messages/en/service.greet.other", "Other");
+		await().atMost(Duration.ofSeconds(10)).until(() -> messageSource.getRevision() == client.getRevision());
+		assertThat(messageSource.getMessage("service.greet.none", null, null, Locale.ENGLISH)).isNull();
+		assertThat(client.getReadCount() - readsBefore).isEqualTo(2);
+	}
+}
@@ -0,0 +1,71 @@
+package io.etcd.springi18n.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageChangeFilterTest {
+
+	private static final MessageChange GERMAN_SUBJECT = new MessageChange(Locale.GERMAN, "email.subject", "Betreff", 2);
+
+	private static final MessageChange ENGLISH_SUBJECT = new MessageChange(Locale.ENGLISH, "email.subject", "Subject", 2);
+
+	private static final MessageChange ENGLISH_TITLE = new MessageChange(Locale.ENGLISH, "page.title", "Title", 2);
+
+	@Test
+	void allMatchesEveryChange() {
+		assertThat(MessageChangeFilter.all().matches(GERMAN_SUBJECT)).isTrue();
+		assertThat(MessageChangeFilter.all().matches(ENGLISH_TITLE)).isTrue();
+		assertThat(MessageChangeFilter.all().matchesAll()).isTrue();
+	}
+
+	@Test
+	void matchesCodesExactly() {
+		MessageChangeFilter filter = MessageChangeFilter.forCodes("email.subject");
+
+		assertThat(filter.matches(GERMAN_SUBJECT)).isTrue();
+		assertThat(filter.matches(ENGLISH_TITLE)).isFalse();
+		assertThat(filter.matches(new MessageChange(Locale.ENGLISH, "email.subject.long", "Subject", 2))).isFalse();
+		assertThat(filter.matchesAll()).isFalse();
+	}
+
+	@Test
+	void matchesCodesByPrefix() {
+		MessageChangeFilter filter = MessageChangeFilter.forPrefixes("email.");
+
+		assertThat(filter.matches(ENGLISH_SUBJECT)).isTrue();
+		assertThat(filter.matches(ENGLISH_TITLE)).isFalse();
+	}
+
+	@Test
+	void matchesCodesOrPrefixes() {
+		MessageChangeFilter filter = MessageChangeFilter.forCodes("page.title").withPrefixes("email.");
+
+		assertThat(filter.matches(ENGLISH_SUBJECT)).isTrue();
+		assertThat(filter.matches(ENGLISH_TITLE)).isTrue();
+		assertThat(filter.matches(new MessageChange(Locale.ENGLISH, "page.body", "Body", 2))).isFalse();
+	}
+
+	@Test
+	void restrictsCodesToLocales() {
+		MessageChangeFilter filter = MessageChangeFilter.forPrefixes("email.").withLocales(Locale.GERMAN);
+
+		assertThat(filter.matches(GERMAN_SUBJECT)).isTrue();
+		assertThat(filter.matches(ENGLISH_SUBJECT)).isFalse();
+		assertThat(MessageChangeFilter.forLocales(Locale.ENGLISH).matches(ENGLISH_TITLE)).isTrue();
+		assertThat(MessageChangeFilter.forLocales(Locale.ENGLISH).matches(GERMAN_SUBJECT)).isFalse();
+	}
+
+	@Test
+	void isImmutable() {
+		MessageChangeFilter codes = MessageChangeFilter.forCodes("email.subject");
+
+		codes.withLocales(Locale.GERMAN);
+		codes.withCodes("page.title");
+
+		assertThat(codes.matches(ENGLISH_SUBJECT)).isTrue();
+		assertThat(codes.matches(ENGLISH_TITLE)).isFalse();
+	}
+}
@@ -0,0 +1,157 @@
+package io.etcd.springi18n.service;
+
+import com.google.protobuf.ByteString;
+import io.etcd.jetcd.api.Event;
+import io.etcd.jetcd.api.KeyValue;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import org.junit.jupiter.api.Test;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageSnapshotTest {
+
+	private static MessageSnapshot snapshot(long revision) {
+		Map<Locale, LocaleBundle> bundles = new LinkedHashMap<>();
+		bundles.put(Locale.ENGLISH, LocaleBundle.of(Locale.ENGLISH, "/messages/en/", Map.of(
+				"/messages/en/service.greet.hello", "Hello {0}",
+				"/messages/en/service.greet.bye", "Bye")));
+		bundles.put(Locale.GERMAN, LocaleBundle.of(Locale.GERMAN, "/messages/de/", Map.of(
+				"/messages/de/service.greet.hello", "Hallo {0}",
+				"/messages/de/shop.cart", "Warenkorb")));
+		return new MessageSnapshot(revision, bundles);
+	}
+
+	/**
+	 * @param keysAndValues keys and their values, a {@code null} value deletes the key
+	 */
+	private static List<WatchEvent> events(long revision, String... keysAndValues) {
+		io.etcd.jetcd.api.WatchResponse.Builder response = io.etcd.jetcd.api.WatchResponse.newBuilder();
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			String value = keysAndValues[i + 1];
+			response.addEvents(Event.newBuilder()
+					.setType(value != null ? Event.EventType.PUT : Event.EventType.DELETE)
+					.setKv(KeyValue.newBuilder()
+							.setKey(ByteString.copyFromUtf8(keysAndValues[i]))
+							.setValue(value != null ? ByteString.copyFromUtf8(value) : ByteString.EMPTY)
+							.setModRevision(revision)));
+		}
+		return new WatchResponse(response.build()).getEvents();
+	}
+
+	private static Map<String, Integer> ordinals(CodeDictionary dictionary) {
+		Map<String, Integer> ordinals = new HashMap<>();
+		for (int ordinal = 0; ordinal < dictionary.size(); ordinal++) {
+			ordinals.put(dictionary.codeAt(ordinal), ordinal);
+		}
+		return ordinals;
+	}
+
+	@Test
+	void keepsTheOrdinalsOfExistingCodesAcrossDeltas() {
+		MessageSnapshot snapshot = snapshot(1);
+		CodeDictionary first = snapshot.getDictionary();
+		Map<String, Integer> firstOrdinals = ordinals(first);
+
+		MessageSnapshot added = snapshot.withEvents(events(2,
+				"/messages/en/shop.cart", "Cart",
+				"/messages/de/service.greet.bye", "Tschüss"));
+		MessageSnapshot removed = added.withEvents(events(3,
+				"/messages/en/service.greet.bye", null,
+				"/messages/de/shop.checkout", "Kasse"));
+
+		CodeDictionary last = removed.getDictionary();
+		assertThat(last.extendsDictionary(first)).isTrue();
+		assertThat(last.extendsDictionary(added.getDictionary())).isTrue();
+		assertThat(first.extendsDictionary(last)).isFalse();
+		firstOrdinals.forEach((code, ordinal) -> assertThat(last.ordinalOf(code)).isEqualTo(ordinal));
+		assertThat(last.ordinalOf("shop.checkout")).isEqualTo(first.size());
+		assertThat(removed.getBundles().get(Locale.ENGLISH).getMessage("shop.cart")).isEqualTo("Cart");
+		assertThat(removed.getBundles().get(Locale.ENGLISH).getMessage("service.greet.bye")).isNull();
+		assertThat(removed.getBundles().get(Locale.GERMAN).getMessage("service.greet.bye")).isEqualTo("Tschüss");
+		assertThat(removed.getBundles().get(Locale.GERMAN).getMessage("shop.checkout")).isEqualTo("Kasse");
+		assertThat(removed.getRevision()).isEqualTo(3);
+	}
+
+	@Test
+	void keepsTheDictionaryWhenNoCodeIsNew() {
+		MessageSnapshot snapshot = snapshot(1);
+
+		MessageSnapshot changed = snapshot.withEvents(events(2,
+				"/messages/en/service.greet.hello", "Hi {0}",
+				"/messages/de/service.greet.bye", "Tschüss",
+				"/messages/de/shop.cart", null));
+
+		assertThat(changed.getDictionary()).isSameAs(snapshot.getDictionary());
+		assertThat(changed.getBundles().get(Locale.ENGLISH).format("service.greet.hello", new Object[]{"Ana"})).isEqualTo("Hi Ana");
+		assertThat(changed.getBundles().get(Locale.GERMAN).getMessage("shop.cart")).isNull();
+	}
+
+	@Test
+	void doesNotMistakeABranchOfTheSameBaseForAnExtension() {
+		CodeDictionary base = snapshot(1).getDictionary();
+		CodeDictionary.Builder first = new CodeDictionary.Builder(base, 1);
+		first.add("shop.checkout");
+		CodeDictionary.Builder second = new CodeDictionary.Builder(base, 1);
+		second.add("shop.payment");
+
+		CodeDictionary extended = first.build();
+		CodeDictionary branch = second.build();
+
+		assertThat(extended.extendsDictionary(base)).isTrue();
+		// a branch starts a lineage of its own, bundles moving to it copy their arrays instead of sharing them
+		assertThat(branch.extendsDictionary(base)).isFalse();
+		assertThat(branch.extendsDictionary(extended)).isFalse();
+		assertThat(extended.extendsDictionary(branch)).isFalse();
+		assertThat(CodeDictionary.of(List.of("service.greet.hello")).extendsDictionary(CodeDictionary.of(List.of("service.greet.hello")))).isFalse();
+	}
+
+	@Test
+	void keepsTheCachedFormatsOfUnchangedCodes() {
+		MessageSnapshot snapshot = snapshot(1);
+		LocaleBundle english = snapshot.getBundles().get(Locale.ENGLISH);
+		MessageFormat hello = english.getMessageFormat("service.greet.hello", MessageFormat::new);
+		MessageFormat bye = english.getMessageFormat("service.greet.bye", MessageFormat::new);
+
+		MessageSnapshot changed = snapshot.withEvents(events(2,
+				"/messages/en/service.greet.hello", "Hi {0}",
+				"/messages/en/shop.cart", "Cart"));
+
+		LocaleBundle changedEnglish = changed.getBundles().get(Locale.ENGLISH);
+		assertThat(changedEnglish.getCachedMessageFormat("service.greet.bye")).isSameAs(bye);
+		assertThat(changedEnglish.getCachedMessageFormat("service.greet.hello")).isNull();
+		assertThat(changedEnglish.getMessageFormat("service.greet.hello", MessageFormat::new).toPattern()).isEqualTo("Hi {0}");
+		assertThat(english.getCachedMessageFormat("service.greet.hello")).isSameAs(hello);
+		assertThat(changed.getMessageFormatCacheSize()).isEqualTo(2);
+		assertThat(snapshot.getMessageFormatCacheSize()).isEqualTo(2);
+	}
+
+	@Test
+	void compactsTheDictionaryAfterManyRemovals() {
+		Map<String, String> messages = new HashMap<>();
+		for (int i = 0; i < MessageSnapshot.MIN_DICTIONARY_COMPACTION_REMOVALS * 2; i++) {
+			messages.put("/messages/en/code" + i, "Message " + i);
+		}
+		MessageSnapshot snapshot = new MessageSnapshot(1, Map.of(Locale.ENGLISH, LocaleBundle.of(Locale.ENGLISH, "/messages/en/", messages)));
+
+		long revision = 1;
+		for (int i = 0; i < MessageSnapshot.MIN_DICTIONARY_COMPACTION_REMOVALS; i++) {
+			snapshot = snapshot.withEvents(events(++revision, "/messages/en/code" + i, null));
+		}
+		assertThat(snapshot.getDictionary().size()).isEqualTo(messages.size());
+
+		snapshot = snapshot.withEvents(events(++revision, "/messages/en/code" + MessageSnapshot.MIN_DICTIONARY_COMPACTION_REMOVALS, null));
+
+		LocaleBundle english = snapshot.getBundles().get(Locale.ENGLISH);
+		assertThat(snapshot.getDictionary().size()).isEqualTo(english.size()).isEqualTo(messages.size() - MessageSnapshot.MIN_DICTIONARY_COMPACTION_REMOVALS - 1);
+		assertThat(english.getMessage("code0")).isNull();
+		assertThat(english.getMessage("code" + (messages.size() - 1))).isEqualTo("Message " + (messages.size() - 1));
+	}
+}
@@ -0,0 +1,105 @@
+package io.etcd.springi18n.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageTemplateTest {
+
+	private static final List<String> PATTERNS = List.of(
+			"Hello {0}",
+			"{0}{1}{0}",
+			"It''s {0}''s turn",
+			"'{0}' is quoted, {0} is not",
+			"'quoted '' inside' {1}",
+			"Unclosed 'quote {0}",
+			"''''{0}''''",
+			"{1} before {0}",
+			"{12} is missing",
+			"Total: {0,number,#.##}",
+			"{0,number,integer} of {1,number,percent}",
+			"{1,choice,0#no files|1#one file|1<{1,number,integer} files} for {0}",
+			"Sent {0,date,short} at {0,time,short}",
+			"Plain text");
+
+	private static final List<Object[]> ARGUMENTS = Arrays.asList(
+			null,
+			new Object[0],
+			new Object[]{"Ana"},
+			new Object[]{"Ana", 3},
+			new Object[]{1234567.891, 2},
+			new Object[]{new BigDecimal("-0.5"), 0},
+			new Object[]{new Date(1_700_000_000_000L), 1},
+			new Object[]{null, 1.5},
+			new Object[]{Locale.GERMANY, 42L});
+
+	/**
+	 * @return the rendered message, or the type of the exception rendering threw
+	 */
+	private static String render(ThrowingFormat format) {
+		try {
+			return format.format();
+		} catch (IllegalArgumentException e) {
+			return e.getClass().getName();
+		}
+	}
+
+	private interface ThrowingFormat {
+		String format();
+	}
+
+	@Test
+	void rendersLikeMessageFormat() {
+		for (Locale locale : List.of(Locale.ENGLISH, Locale.GERMANY, Locale.FRANCE, new Locale("bn"))) {
+			for (String pattern : PATTERNS) {
+				MessageTemplate template = MessageTemplate.compile(pattern, locale);
+				for (Object[] args : ARGUMENTS) {
+					String expected = render(() -> new MessageFormat(pattern, locale).format(args));
+					assertThat(render(() -> template.format(args)))
+							.as("%s with %s in %s", pattern, Arrays.toString(args), locale)
+							.isEqualTo(expected);
+				}
+			}
+		}
+	}
+
+	@Test
+	void rendersTheSameFromManyThreads() throws Exception {
+		MessageTemplate template = MessageTemplate.compile("{0} on {1}", Locale.GERMANY);
+		Object[] args = {1234567.891, new Date(1_700_000_000_000L)};
+		String expected = new MessageFormat("{0} on {1}", Locale.GERMANY).format(args);
+		Thread[] threads = new Thread[8];
+		String[] failures = new String[threads.length];
+		for (int t = 0; t < threads.length; t++) {
+			int index = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10_000 && failures[index] == null; i++) {
+					String rendered = template.format(args);
+					if (!expected.equals(rendered)) {
+						failures[index] = rendered;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(failures).containsOnlyNulls();
+	}
+
+	@Test
+	void onlyMessagesWithBracesOrQuotesNeedFormatting() {
+		assertThat(MessageTemplate.needsFormatting("Plain text")).isFalse();
+		assertThat(MessageTemplate.needsFormatting("Hello {0}")).isTrue();
+		assertThat(MessageTemplate.needsFormatting("It''s")).isTrue();
+	}
+}
@@ -0,0 +1,186 @@
+package io.etcd.springi18n.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapMessageStoreTest {
+
+	private static Map<String, String> contents(MessageStore store, String prefix) {
+		Map<String, String> contents = new LinkedHashMap<>();
+		store.forEachWithPrefix(prefix, contents::put);
+		return contents;
+	}
+
+	private static Map<String, String> sorted(Map<String, String> messages, String prefix) {
+		Map<String, String> sorted = new LinkedHashMap<>();
+		new TreeMap<>(messages).forEach((code, message) -> {
+			if (code.startsWith(prefix)) {
+				sorted.put(code, message);
+			}
+		});
+		return sorted;
+	}
+
+	private static Map<String, String> changes(Object... codesAndMessages) {
+		Map<String, String> changes = new HashMap<>();
+		for (int i = 0; i < codesAndMessages.length; i += 2) {
+			changes.put((String) codesAndMessages[i], (String) codesAndMessages[i + 1]);
+		}
+		return changes;
+	}
+
+	@Test
+	void findsEveryMessageByItsCode() {
+		Map<String, String> messages = new HashMap<>();
+		for (int i = 0; i < 1_000; i++) {
+			messages.put("service.code" + i, "Message " + i);
+		}
+		messages.put("service.grüße", "Grüße ✓");
+
+		OffHeapMessageStore store = OffHeapMessageStore.of(messages, Locale.ENGLISH);
+
+		assertThat(store.size()).isEqualTo(messages.size());
+		messages.forEach((code, message) -> assertThat(store.get(code)).isEqualTo(message));
+		assertThat(store.get("service.code1000")).isNull();
+		assertThat(store.get("service.grüsse")).isNull();
+		assertThat(store.get("")).isNull();
+	}
+
+	@Test
+	void tellsApartCodesWithTheSameHashCode() {
+		// "Aa" and "BB" share their hash code, so do all codes built from them
+		List<String> codes = List.of("AaAa", "AaBB", "BBAa", "BBBB");
+		assertThat(codes).extracting(String::hashCode).containsOnly("AaAa".hashCode());
+		Map<String, String> messages = new HashMap<>();
+		codes.forEach(code -> messages.put(code, "message of " + code));
+		messages.put("Aa", "message of Aa");
+
+		OffHeapMessageStore store = OffHeapMessageStore.of(messages, Locale.ENGLISH);
+
+		messages.forEach((code, message) -> assertThat(store.get(code)).isEqualTo(message));
+		assertThat(store.get("BB")).isNull();
+		assertThat(store.get("AaAaAa")).isNull();
+	}
+
+	@Test
+	void probesPastOccupiedSlotsAcrossTheEndOfTheIndex() {
+		// a full load factor of colliding and adjacent hashes forces long probe sequences that wrap around
+		Map<String, String> messages = new HashMap<>();
+		List<String> codes = new ArrayList<>();
+		for (String first : List.of("Aa", "BB")) {
+			for (String second : List.of("Aa", "BB")) {
+				for (String third : List.of("Aa", "BB")) {
+					for (char last = 'a'; last <= 'z'; last++) {
+						codes.add(first + second + third + last);
+					}
+				}
+			}
+		}
+		codes.forEach(code -> messages.put(code, code.toUpperCase(Locale.ROOT)));
+
+		OffHeapMessageStore store = OffHeapMessageStore.of(messages, Locale.ENGLISH);
+
+		codes.forEach(code -> assertThat(store.get(code)).isEqualTo(code.toUpperCase(Locale.ROOT)));
+		assertThat(store.get("AaAaAa{")).isNull();
+		assertThat(store.get("AaAaAb")).isNull();
+	}
+
+	@Test
+	void scansTheCodesOfAPrefixInOrder() {
+		Map<String, String> messages = Map.of(
+				"a", "1",
+				"service.greet", "2",
+				"service.greet.bye", "3",
+				"service.greet.hello", "4",
+				"service.greeting", "5",
+				"service.grüße", "6",
+				"shop.cart", "7");
+
+		OffHeapMessageStore store = OffHeapMessageStore.of(messages, Locale.ENGLISH);
+
+		for (String prefix : List.of("", "a", "service.", "service.greet", "service.greet.", "service.gr", "shop.cart", "x", "service.greet.hello.")) {
+			assertThat(contents(store, prefix)).containsExactlyEntriesOf(sorted(messages, prefix));
+		}
+		Map<String, String> all = new HashMap<>();
+		store.forEach(all::put);
+		assertThat(all).isEqualTo(messages);
+	}
+
+	@Test
+	void appliesChangesOnTopOfTheSharedArena() {
+		Map<String, String> messages = Map.of(
+				"service.greet.bye", "Bye",
+				"service.greet.hello", "Hello {0}",
+				"shop.cart", "Cart");
+		OffHeapMessageStore store = OffHeapMessageStore.of(messages, Locale.ENGLISH);
+		assertThat(store.format("service.greet.hello", new Object[]{"Ana"})).isEqualTo("Hello Ana");
+
+		OffHeapMessageStore changed = (OffHeapMessageStore) store.withChanges(changes(
+				"service.greet.hello", "Hi {0}",
+				"service.greet.bye", null,
+				"service.greet.morning", "Morning",
+				"service.unknown", null), null);
+
+		assertThat(changed.offHeapBytes()).isEqualTo(store.offHeapBytes());
+		assertThat(changed.overlaySize()).isEqualTo(3);
+		assertThat(changed.size()).isEqualTo(3);
+		assertThat(changed.get("service.greet.hello")).isEqualTo("Hi {0}");
+		assertThat(changed.format("service.greet.hello", new Object[]{"Ana"})).isEqualTo("Hi Ana");
+		assertThat(changed.get("service.greet.bye")).isNull();
+		assertThat(changed.get("service.greet.morning")).isEqualTo("Morning");
+		assertThat(changed.get("service.unknown")).isNull();
+		assertThat(contents(changed, "service.")).containsExactly(
+				Map.entry("service.greet.hello", "Hi {0}"),
+				Map.entry("service.greet.morning", "Morning"));
+		assertThat(contents(changed, "")).containsExactly(
+				Map.entry("service.greet.hello", "Hi {0}"),
+				Map.entry("service.greet.morning", "Morning"),
+				Map.entry("shop.cart", "Cart"));
+		// the store the changes were applied to is left as it was
+		assertThat(store.get("service.greet.bye")).isEqualTo("Bye");
+		assertThat(store.format("service.greet.hello", new Object[]{"Ana"})).isEqualTo("Hello Ana");
+	}
+
+	@Test
+	void dropsAnAddedCodeFromTheOverlayWhenItIsRemovedAgain() {
+		OffHeapMessageStore store = OffHeapMessageStore.of(Map.of("shop.cart", "Cart"), Locale.ENGLISH);
+
+		MessageStore added = store.withChanges(changes("shop.checkout", "Checkout"), null);
+		OffHeapMessageStore removed = (OffHeapMessageStore) added.withChanges(changes("shop.checkout", null), null);
+
+		assertThat(added.size()).isEqualTo(2);
+		assertThat(removed.size()).isEqualTo(1);
+		assertThat(removed.overlaySize()).isZero();
+		assertThat(contents(removed, "")).containsExactly(Map.entry("shop.cart", "Cart"));
+	}
+
+	@Test
+	void mergesALargeOverlayIntoANewArena() {
+		Map<String, String> messages = new HashMap<>();
+		for (int i = 0; i < 100; i++) {
+			messages.put("service.code" + i, "Message " + i);
+		}
+		MessageStore store = OffHeapMessageStore.of(messages, Locale.ENGLISH);
+
+		for (int i = 0; i < OffHeapMessageStore.MIN_OVERLAY_COMPACTION_SIZE; i++) {
+			store = store.withChanges(changes("service.added" + i, "Added " + i), null);
+			messages.put("service.added" + i, "Added " + i);
+		}
+		assertThat(((OffHeapMessageStore) store).overlaySize()).isEqualTo(OffHeapMessageStore.MIN_OVERLAY_COMPACTION_SIZE);
+		store = store.withChanges(changes("service.code0", null), null);
+		messages.remove("service.code0");
+
+		assertThat(((OffHeapMessageStore) store).overlaySize()).isZero();
+		assertThat(store.size()).isEqualTo(messages.size());
+		assertThat(contents(store, "service.")).containsExactlyEntriesOf(sorted(messages, "service."));
+	}
+}
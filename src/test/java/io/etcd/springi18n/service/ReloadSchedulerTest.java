@@ -0,0 +1,125 @@
+package io.etcd.springi18n.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class ReloadSchedulerTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	/**
+	 * The reloads started, each completed by the test.
+	 */
+	private final List<CompletableFuture<Boolean>> reloads = new CopyOnWriteArrayList<>();
+
+	private final AtomicInteger running = new AtomicInteger();
+
+	private final AtomicInteger maxRunning = new AtomicInteger();
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private ReloadScheduler scheduler(long quietPeriodMillis, long maxDelayMillis) {
+		return new ReloadScheduler(() -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			CompletableFuture<Boolean> reload = new CompletableFuture<>();
+			reloads.add(reload);
+			return reload.whenComplete((published, throwable) -> running.decrementAndGet());
+		}, executor, quietPeriodMillis, maxDelayMillis);
+	}
+
+	@Test
+	void coalescesABurstIntoOneReloadAfterTheQuietPeriod() throws Exception {
+		ReloadScheduler scheduler = scheduler(100, 5_000);
+
+		CompletableFuture<Boolean> first = scheduler.requestReload();
+		for (int i = 0; i < 20; i++) {
+			assertThat(scheduler.requestReload()).isSameAs(first);
+		}
+		assertThat(reloads).isEmpty();
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> reloads.size() == 1);
+		reloads.get(0).complete(true);
+		assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+		Thread.sleep(300);
+		assertThat(reloads).hasSize(1);
+	}
+
+	@Test
+	void startsAReloadNoLaterThanTheMaxDelay() {
+		ReloadScheduler scheduler = scheduler(200, 400);
+		long startNanos = System.nanoTime();
+
+		while (reloads.isEmpty() && System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5)) {
+			scheduler.requestReload();
+			Thread.onSpinWait();
+		}
+
+		assertThat(reloads).hasSize(1);
+		assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(2));
+	}
+
+	@Test
+	void queuesAtMostOneReloadBehindTheOneInFlight() throws Exception {
+		ReloadScheduler scheduler = scheduler(0, 0);
+		CompletableFuture<Boolean> inFlight = scheduler.reloadNow();
+		assertThat(reloads).hasSize(1);
+
+		CompletableFuture<Boolean> queued = scheduler.reloadNow();
+		for (int i = 0; i < 20; i++) {
+			assertThat(scheduler.reloadNow()).isSameAs(queued);
+		}
+		assertThat(scheduler.requestReload()).isSameAs(queued);
+		Thread.sleep(100);
+		assertThat(reloads).hasSize(1);
+
+		reloads.get(0).complete(false);
+		assertThat(inFlight.get(5, TimeUnit.SECONDS)).isFalse();
+		await().atMost(Duration.ofSeconds(5)).until(() -> reloads.size() == 2);
+		assertThat(queued).isNotDone();
+		reloads.get(1).complete(true);
+		assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(maxRunning.get()).isEqualTo(1);
+	}
+
+	@Test
+	void reloadNowServesTheRequestsWaitingForTheirQuietPeriod() throws Exception {
+		ReloadScheduler scheduler = scheduler(200, 5_000);
+		CompletableFuture<Boolean> requested = scheduler.requestReload();
+
+		CompletableFuture<Boolean> now = scheduler.reloadNow();
+
+		assertThat(now).isSameAs(requested);
+		assertThat(reloads).hasSize(1);
+		reloads.get(0).complete(true);
+		assertThat(requested.get(5, TimeUnit.SECONDS)).isTrue();
+		Thread.sleep(400);
+		assertThat(reloads).hasSize(1);
+	}
+
+	@Test
+	void reportsAFailedReloadAsNotPublished() throws Exception {
+		ReloadScheduler scheduler = scheduler(0, 0);
+		CompletableFuture<Boolean> reload = scheduler.reloadNow();
+
+		reloads.get(0).completeExceptionally(new IllegalStateException("etcd unavailable"));
+
+		assertThat(reload.get(5, TimeUnit.SECONDS)).isFalse();
+		scheduler.reloadNow();
+		assertThat(reloads).hasSize(2);
+	}
+}
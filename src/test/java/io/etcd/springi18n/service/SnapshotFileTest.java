@@ -0,0 +1,99 @@
+package io.etcd.springi18n.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotFileTest {
+
+	private static final String BASE_DIR = "/translations";
+
+	private static final String LOCALES_KEY = "/translations/locales";
+
+	@TempDir
+	Path tempDir;
+
+	private static MessageSnapshot snapshot(boolean offHeap) {
+		Map<Locale, LocaleBundle> bundles = new LinkedHashMap<>();
+		bundles.put(Locale.ENGLISH, LocaleBundle.of(Locale.ENGLISH, "/translations/en/",
+				Map.of("/translations/en/service.greet.hello", "Hello {0}", "/translations/en/service.greet.bye", "Bye"), offHeap));
+		bundles.put(Locale.GERMAN, LocaleBundle.of(Locale.GERMAN, "/translations/de/",
+				Map.of("/translations/de/service.greet.hello", "Grüß dich {0} ✓"), offHeap));
+		bundles.put(Locale.FRENCH, LocaleBundle.unloaded(Locale.FRENCH, "/translations/fr/"));
+		return new MessageSnapshot(42, bundles);
+	}
+
+	@Test
+	void restoresTheSnapshotItWrote() throws IOException {
+		Path file = tempDir.resolve("messages.snapshot");
+		SnapshotFile.write(file, snapshot(false), BASE_DIR, LOCALES_KEY);
+
+		for (boolean offHeap : new boolean[]{false, true}) {
+			MessageSnapshot restored = SnapshotFile.read(file, BASE_DIR, LOCALES_KEY, offHeap);
+
+			assertThat(restored.getRevision()).isEqualTo(42);
+			assertThat(restored.getBundles().keySet()).containsExactly(Locale.ENGLISH, Locale.GERMAN, Locale.FRENCH);
+			LocaleBundle english = restored.getBundles().get(Locale.ENGLISH);
+			assertThat(english.getDir()).isEqualTo("/translations/en/");
+			assertThat(english.size()).isEqualTo(2);
+			assertThat(english.getMessage("service.greet.hello")).isEqualTo("Hello {0}");
+			assertThat(english.getMessage("service.greet.bye")).isEqualTo("Bye");
+			assertThat(restored.getBundles().get(Locale.GERMAN).getMessage("service.greet.hello")).isEqualTo("Grüß dich {0} ✓");
+			assertThat(restored.getBundles().get(Locale.FRENCH).isLoaded()).isFalse();
+		}
+	}
+
+	@Test
+	void writesOffHeapBundles() throws IOException {
+		Path file = tempDir.resolve("messages.snapshot");
+		SnapshotFile.write(file, snapshot(true), BASE_DIR, LOCALES_KEY);
+
+		MessageSnapshot restored = SnapshotFile.read(file, BASE_DIR, LOCALES_KEY, false);
+
+		assertThat(restored.getBundles().get(Locale.ENGLISH).getMessage("service.greet.bye")).isEqualTo("Bye");
+		assertThat(restored.getBundles().get(Locale.GERMAN).getMessage("service.greet.hello")).isEqualTo("Grüß dich {0} ✓");
+	}
+
+	@Test
+	void ignoresAMissingFileOrOneOfAnotherConfiguration() throws IOException {
+		Path file = tempDir.resolve("messages.snapshot");
+		assertThat(SnapshotFile.read(file, BASE_DIR, LOCALES_KEY, false)).isNull();
+
+		SnapshotFile.write(file, snapshot(false), BASE_DIR, LOCALES_KEY);
+
+		assertThat(SnapshotFile.read(file, "/other", LOCALES_KEY, false)).isNull();
+		assertThat(SnapshotFile.read(file, BASE_DIR, "/other/locales", false)).isNull();
+	}
+
+	@Test
+	void rejectsAFileThatIsNoSnapshot() throws IOException {
+		Path file = tempDir.resolve("messages.snapshot");
+		Files.writeString(file, "service.greet.hello=Hello");
+
+		assertThatThrownBy(() -> SnapshotFile.read(file, BASE_DIR, LOCALES_KEY, false))
+				.isInstanceOf(IOException.class)
+				.hasMessageContaining("snapshot file");
+	}
+
+	@Test
+	void rejectsATruncatedFile() throws IOException {
+		Path file = tempDir.resolve("messages.snapshot");
+		SnapshotFile.write(file, snapshot(false), BASE_DIR, LOCALES_KEY);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+
+		assertThatThrownBy(() -> SnapshotFile.read(file, BASE_DIR, LOCALES_KEY, false))
+				.isInstanceOf(IOException.class)
+				.hasMessageContaining("corrupt");
+	}
+}
@@ -0,0 +1,121 @@
+package io.etcd.springi18n.service.impl;
+
+import com.google.protobuf.ByteString;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.api.KeyValue;
+import io.etcd.jetcd.api.RangeResponse;
+import io.etcd.jetcd.api.ResponseHeader;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.springi18n.service.EtcdKeyValues;
+import io.etcd.springi18n.service.EtcdTranslatorMetrics;
+import io.etcd.springi18n.service.ReadConsistency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EtcdClientImplTest {
+
+	private static final String KEY = "/messages/en/service.greet.hello";
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	private Client leader;
+
+	private KV leaderKv;
+
+	private Client slowMember;
+
+	private KV slowMemberKv;
+
+	private Client member;
+
+	private KV memberKv;
+
+	private EtcdClientImpl client;
+
+	@BeforeEach
+	void setUp() {
+		leaderKv = mock(KV.class);
+		leader = client(leaderKv);
+		slowMemberKv = mock(KV.class);
+		slowMember = client(slowMemberKv);
+		memberKv = mock(KV.class);
+		member = client(memberKv);
+		when(slowMemberKv.get(any(), any())).thenReturn(new CompletableFuture<>());
+		client = new EtcdClientImpl(new EtcdClientImpl.Clients(leader, List.of(slowMember, member)), executor,
+				EtcdTranslatorMetrics.noop(), ReadConsistency.SERIALIZABLE, 50);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static Client client(KV kv) {
+		Client client = mock(Client.class);
+		when(client.getKVClient()).thenReturn(kv);
+		when(client.getWatchClient()).thenReturn(mock(Watch.class));
+		return client;
+	}
+
+	private static CompletableFuture<GetResponse> response(long revision, String key, String value) {
+		RangeResponse range = RangeResponse.newBuilder()
+				.setHeader(ResponseHeader.newBuilder().setRevision(revision))
+				.addKvs(KeyValue.newBuilder().setKey(ByteString.copyFromUtf8(key)).setValue(ByteString.copyFromUtf8(value)))
+				.setCount(1)
+				.build();
+		return CompletableFuture.completedFuture(new GetResponse(range, ByteSequence.EMPTY));
+	}
+
+	@Test
+	void readsFromTheNextHostWhenAHostTimesOut() throws Exception {
+		when(memberKv.get(any(), argThat(GetOption::isSerializable))).thenReturn(response(7, KEY, "Hello"));
+
+		EtcdKeyValues keyValues = client.getByKeyWithRevisionAsync(KEY, false, 0).get(5, TimeUnit.SECONDS);
+
+		assertThat(keyValues.revision()).isEqualTo(7);
+		assertThat(keyValues.kvPairs()).isEqualTo(Map.of(KEY, "Hello"));
+		verify(slowMemberKv).get(any(), any());
+		verify(leaderKv, never()).get(any(), any());
+	}
+
+	@Test
+	void readsThroughTheLeaderWhenEveryHostTimesOut() throws Exception {
+		when(memberKv.get(any(), any())).thenReturn(new CompletableFuture<>());
+		when(leaderKv.get(any(), argThat(option -> !option.isSerializable()))).thenReturn(response(7, KEY, "Hello"));
+
+		EtcdKeyValues keyValues = client.getByKeyWithRevisionAsync(KEY, false, 0).get(5, TimeUnit.SECONDS);
+
+		assertThat(keyValues.kvPairs()).isEqualTo(Map.of(KEY, "Hello"));
+		verify(slowMemberKv).get(any(), any());
+		verify(memberKv).get(any(), any());
+	}
+
+	@Test
+	void closesTheClientOfEveryHost() {
+		client.close();
+
+		verify(leader).close();
+		verify(slowMember).close();
+		verify(member).close();
+	}
+}
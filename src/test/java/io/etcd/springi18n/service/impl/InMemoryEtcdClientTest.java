@@ -0,0 +1,83 @@
+package io.etcd.springi18n.service.impl;
+
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import io.etcd.springi18n.service.EtcdKeyValues;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class InMemoryEtcdClientTest {
+
+	private final InMemoryEtcdClient client = new InMemoryEtcdClient();
+
+	@Test
+	void readsPrefixesAtRevisions() throws Exception {
+		long first = client.put("/m/en/a", "A");
+		client.putAll(Map.of("/m/en/a", "A2", "/m/en/b", "B", "/m/de/a", "DA"));
+		client.delete("/m/en/b");
+
+		assertThat(client.getByKeyWithRevisionAsync("/m/en/", true, first).get())
+				.isEqualTo(new EtcdKeyValues(first, Map.of("/m/en/a", "A")));
+		assertThat(client.getByKeyPrefixAsync("/m/en/").get()).isEqualTo(Map.of("/m/en/a", "A2"));
+		assertThat(client.getByKey("/m/de/a")).isEqualTo("DA");
+		assertThat(client.getRevision()).isEqualTo(first + 2);
+	}
+
+	@Test
+	void failsReadsOfCompactedRevisions() throws Exception {
+		long first = client.put("/m/en/a", "A");
+		client.put("/m/en/a", "A2");
+		client.compact(client.getRevision());
+
+		assertThatThrownBy(() -> client.getByKeyWithRevisionAsync("/m/en/", true, first).get())
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(CompactedException.class);
+		assertThat(client.getByKeyPrefixAsync("/m/en/").get()).isEqualTo(Map.of("/m/en/a", "A2"));
+	}
+
+	@Test
+	void replaysAndStreamsWatchEventsInOrder() {
+		long first = client.put("/m/en/a", "A");
+		client.put("/other", "X");
+		client.put("/m/en/b", "B");
+		List<String> events = new CopyOnWriteArrayList<>();
+
+		client.watchByKeyPrefix("/m/", first, response -> record(response, events), e -> events.add("error"));
+		client.delete("/m/en/a");
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> events.size() == 3);
+		assertThat(events).containsExactly("PUT /m/en/a", "PUT /m/en/b", "DELETE /m/en/a");
+	}
+
+	@Test
+	void failsWatchesFromCompactedRevisions() {
+		long first = client.put("/m/en/a", "A");
+		client.put("/m/en/a", "A2");
+		client.compact(client.getRevision());
+		AtomicReference<Throwable> error = new AtomicReference<>();
+
+		client.watchByKeyPrefix("/m/", first, response -> {
+		}, error::set);
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> error.get() != null);
+		assertThat(error.get()).isInstanceOf(CompactedException.class);
+		assertThat(client.getWatchCount()).isZero();
+	}
+
+	private static void record(WatchResponse response, List<String> events) {
+		for (WatchEvent event : response.getEvents()) {
+			events.add(event.getEventType() + " " + event.getKeyValue().getKey());
+		}
+	}
+}
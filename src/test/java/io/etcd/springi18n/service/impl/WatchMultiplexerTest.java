@@ -0,0 +1,243 @@
+package io.etcd.springi18n.service.impl;
+
+import com.google.protobuf.ByteString;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.api.Event;
+import io.etcd.jetcd.api.KeyValue;
+import io.etcd.jetcd.api.ResponseHeader;
+import io.etcd.jetcd.common.exception.EtcdExceptionFactory;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WatchMultiplexerTest {
+
+	private static final ByteSequence TRANSLATIONS = bytes("/translations/");
+
+	private static final ByteSequence SHOP = bytes("/translations/shop");
+
+	private static final ByteSequence BILLING = bytes("/translations/billing");
+
+	private Watch watchClient;
+
+	private WatchMultiplexer multiplexer;
+
+	private final List<Watch.Watcher> watchers = new ArrayList<>();
+
+	private final List<WatchResponse> shopResponses = new ArrayList<>();
+
+	private final List<Throwable> shopErrors = new ArrayList<>();
+
+	private final List<WatchResponse> billingResponses = new ArrayList<>();
+
+	private final List<Throwable> billingErrors = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		watchClient = mock(Watch.class);
+		when(watchClient.watch(any(), any(), any(Watch.Listener.class))).thenAnswer(invocation -> {
+			Watch.Watcher watcher = mock(Watch.Watcher.class);
+			watchers.add(watcher);
+			return watcher;
+		});
+		multiplexer = new WatchMultiplexer(watchClient);
+	}
+
+	private static ByteSequence bytes(String key) {
+		return ByteSequence.from(key.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return a response at the revision with a put of every key at it
+	 */
+	private static WatchResponse response(long revision, String... keys) {
+		io.etcd.jetcd.api.WatchResponse.Builder response = io.etcd.jetcd.api.WatchResponse.newBuilder()
+				.setHeader(ResponseHeader.newBuilder().setRevision(revision));
+		for (String key : keys) {
+			response.addEvents(Event.newBuilder()
+					.setType(Event.EventType.PUT)
+					.setKv(KeyValue.newBuilder()
+							.setKey(ByteString.copyFromUtf8(key))
+							.setValue(ByteString.copyFromUtf8("value"))
+							.setModRevision(revision)));
+		}
+		return new WatchResponse(response.build());
+	}
+
+	private static List<String> keys(List<WatchResponse> responses) {
+		return responses.stream()
+				.flatMap(response -> response.getEvents().stream())
+				.map(event -> event.getKeyValue().getKey().toString())
+				.toList();
+	}
+
+	private void registerShop(long fromRevision) {
+		multiplexer.register("/translations/shop", fromRevision, shopResponses::add, shopErrors::add);
+	}
+
+	private void registerBilling(long fromRevision) {
+		multiplexer.register("/translations/billing", fromRevision, billingResponses::add, billingErrors::add);
+	}
+
+	/**
+	 * @return the listener of the latest watch of the prefix, after checking how many were started and the options of the latest
+	 */
+	private Watch.Listener watched(ByteSequence prefix, long fromRevision, int watches) {
+		ArgumentCaptor<WatchOption> option = ArgumentCaptor.forClass(WatchOption.class);
+		ArgumentCaptor<Watch.Listener> listener = ArgumentCaptor.forClass(Watch.Listener.class);
+		verify(watchClient, times(watches)).watch(eq(prefix), option.capture(), listener.capture());
+		WatchOption watchOption = option.getValue();
+		assertThat(watchOption.getRevision()).isEqualTo(fromRevision);
+		assertThat(watchOption.isPrefix()).isTrue();
+		assertThat(watchOption.isProgressNotify()).isTrue();
+		return listener.getValue();
+	}
+
+	/**
+	 * Registers both prefixes and returns the listener of the shared watch of their parent, after it reached the revision.
+	 */
+	private Watch.Listener watchBothAt(long revision) {
+		registerShop(5);
+		registerBilling(5);
+		Watch.Listener shared = watched(TRANSLATIONS, 5, 1);
+		shared.onNext(response(revision));
+		shopResponses.clear();
+		billingResponses.clear();
+		return shared;
+	}
+
+	@Test
+	void routesTheEventsOfOneSharedWatchByPrefix() {
+		registerShop(5);
+		registerBilling(5);
+
+		// the watch of the first prefix is replaced by one of the common parent before it delivered anything
+		Watch.Listener shared = watched(TRANSLATIONS, 5, 1);
+		verify(watchers.get(0)).close();
+		shared.onNext(response(7, "/translations/shop/en/cart", "/translations/billing/en/invoice", "/translations/other/en/x"));
+
+		assertThat(keys(shopResponses)).containsExactly("/translations/shop/en/cart");
+		assertThat(keys(billingResponses)).containsExactly("/translations/billing/en/invoice");
+		assertThat(shopResponses.get(0).getHeader().getRevision()).isEqualTo(7);
+		assertThat(multiplexer.getLatestRevision()).isEqualTo(7);
+
+		// another prefix under the parent joins the running watch
+		List<WatchResponse> supportResponses = new ArrayList<>();
+		multiplexer.register("/translations/support", 8, supportResponses::add, e -> {
+		});
+		shared.onNext(response(8, "/translations/support/en/help"));
+
+		assertThat(keys(supportResponses)).containsExactly("/translations/support/en/help");
+		verify(watchClient, times(2)).watch(any(), any(), any(Watch.Listener.class));
+		assertThat(watchers).hasSize(2);
+		verify(watchers.get(1), never()).close();
+	}
+
+	@Test
+	void catchesUpALaggingPrefixWithoutRestartingTheSharedWatch() {
+		Watch.Listener shared = watchBothAt(10);
+
+		// the billing root resumes from an older revision after a failure
+		registerBilling(4);
+		Watch.Listener catchUp = watched(BILLING, 4, 1);
+		shared.onNext(response(11, "/translations/shop/en/cart", "/translations/billing/en/invoice"));
+
+		assertThat(keys(shopResponses)).containsExactly("/translations/shop/en/cart");
+		assertThat(billingResponses).isEmpty();
+
+		catchUp.onNext(response(11, "/translations/billing/en/invoice"));
+		// the catch-up watch reached the shared one, which goes on with the prefix
+		verify(watchers.get(2)).close();
+		catchUp.onNext(response(12, "/translations/billing/en/late"));
+		shared.onNext(response(11, "/translations/billing/en/invoice"));
+		shared.onNext(response(12, "/translations/billing/en/refund"));
+
+		assertThat(keys(billingResponses)).containsExactly("/translations/billing/en/invoice", "/translations/billing/en/refund");
+		verify(watchers.get(1), never()).close();
+	}
+
+	@Test
+	void failsOnlyThePrefixWhoseRevisionWasCompacted() {
+		Watch.Listener shared = watchBothAt(10);
+		registerBilling(3);
+		Watch.Listener catchUp = watched(BILLING, 3, 1);
+
+		Throwable compacted = EtcdExceptionFactory.newCompactedException(9);
+		catchUp.onError(compacted);
+
+		assertThat(billingErrors).containsExactly(compacted);
+		assertThat(shopErrors).isEmpty();
+		verify(watchers.get(1), never()).close();
+
+		// the root reloads its messages and resumes watching after the revision it reloaded at
+		registerBilling(12);
+		shared.onNext(response(12, "/translations/billing/en/invoice", "/translations/shop/en/cart"));
+
+		assertThat(keys(billingResponses)).containsExactly("/translations/billing/en/invoice");
+		assertThat(keys(shopResponses)).containsExactly("/translations/shop/en/cart");
+		assertThat(watchers).hasSize(3);
+	}
+
+	@Test
+	void restartsACompactedSharedWatchForThePrefixesThatDontNeedTheCompactedRevisions() {
+		registerShop(3);
+		registerBilling(3);
+		registerShop(12);
+		Watch.Listener shared = watched(TRANSLATIONS, 3, 1);
+
+		Throwable compacted = EtcdExceptionFactory.newCompactedException(9);
+		shared.onError(compacted);
+
+		assertThat(billingErrors).containsExactly(compacted);
+		assertThat(shopErrors).isEmpty();
+		watched(SHOP, 12, 2).onNext(response(12, "/translations/shop/en/cart"));
+		assertThat(keys(shopResponses)).containsExactly("/translations/shop/en/cart");
+	}
+
+	@Test
+	void unregisteringStopsOnlyThatPrefix() {
+		Watch.Listener shared = watchBothAt(10);
+
+		multiplexer.unregister("/translations/shop");
+		shared.onNext(response(11, "/translations/shop/en/cart", "/translations/billing/en/invoice"));
+
+		assertThat(shopResponses).isEmpty();
+		assertThat(keys(billingResponses)).containsExactly("/translations/billing/en/invoice");
+		verify(watchers.get(1), never()).close();
+
+		multiplexer.unregister("/translations/billing");
+
+		verify(watchers.get(1)).close();
+	}
+
+	@Test
+	void closeStopsEveryWatch() {
+		Watch.Listener shared = watchBothAt(10);
+		registerBilling(4);
+		Watch.Listener catchUp = watched(BILLING, 4, 1);
+
+		multiplexer.close();
+
+		watchers.forEach(watcher -> verify(watcher).close());
+		shared.onNext(response(11, "/translations/shop/en/cart"));
+		catchUp.onNext(response(11, "/translations/billing/en/invoice"));
+		assertThat(shopResponses).isEmpty();
+		assertThat(billingResponses).isEmpty();
+	}
+}